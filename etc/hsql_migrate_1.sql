@@ -0,0 +1,50 @@
+-- Migration 1: schema versioning and join indexes.
+--
+-- HSQLDB already indexes every FOREIGN KEY column on its own, so the
+-- indexes below cover the lookups that the FK indexes do not:
+-- composite (parent, child) lookups used by the per-entry queries and
+-- the joins on columns that carry no constraint at all.
+
+-- The version is recorded after this script; if the script is
+-- interrupted it is run again, and the table it left holds no version
+-- yet. Indexes left by an earlier attempt are not created again.
+DROP TABLE SCHEMA_VERSION IF EXISTS;
+
+-- SCHEMA_VERSION Table
+--   VERSION:           Migration number applied to this database
+--   APPLIED:           When the migration was applied
+CREATE TABLE SCHEMA_VERSION (
+        VERSION INTEGER NOT NULL,
+        APPLIED DATETIME,
+        UNIQUE(VERSION)
+);
+
+-- FORM_GROUP lookups by view and entry (GET_GROUPS, GET_THRESHOLD_GROUPS,
+-- GET_GROUP_DONE_COUNT, DELETE_UNUSED_GROUPS)
+CREATE INDEX IDX_FORM_GROUP_VIEW_ENTRY ON FORM_GROUP (VIEW_KEY, ENTRY_KEY);
+
+-- DATAVIEW_MEMBER lookups by view and variety (Alignment.CREATE,
+-- REMOVE_VIEW_MEMBER, UPDATE_VIEW_MEMBER)
+CREATE INDEX IDX_DATAVIEW_MEMBER_VIEW_VARIETY ON DATAVIEW_MEMBER (VIEW_KEY, VARIETY_KEY);
+
+-- DATUM lookups by entry (GET_DATA, GET_ALIGNMENTS, GET_SUMMARY_DATUMS)
+CREATE INDEX IDX_DATUM_ENTRY_VARIETY ON DATUM (ENTRY_KEY, VARIETY_KEY);
+
+-- ALIGNMENT lookups by datum (GET_ALIGNMENTS, GET_SUMMARY_DATUMS)
+CREATE INDEX IDX_ALIGNMENT_DATUM_MEMBER ON ALIGNMENT (DATUM_KEY, VIEW_MEMBER_KEY);
+
+-- ENTRY lookups by collection in entry number order (GET_ENTRIES,
+-- GET_ENTRIES_FROM_ENTRY_NUM)
+CREATE INDEX IDX_ENTRY_COL_NUM ON ENTRY (COL_KEY, ENTRY_NUM);
+
+-- PROTOSEGMENT joins to ZONE (GET_PROTOSEGMENTS, GET_REFINE_TABLE); ZONE_KEY
+-- has no foreign key and so no index of its own
+CREATE INDEX IDX_PROTOSEGMENT_ZONE ON PROTOSEGMENT (ZONE_KEY);
+CREATE INDEX IDX_PROTOSEGMENT_VIEW_ZONE ON PROTOSEGMENT (VIEW_KEY, ZONE_KEY);
+
+-- CLUSTER lookups by protosegment and environment (GET_ENVIRONMENT_CLUSTERS,
+-- GET_REFINE_MERGE_CLUSTERS_ROW)
+CREATE INDEX IDX_CLUSTER_PROTO_ENVIRONMENT ON CLUSTER (PROTO_KEY, ENVIRONMENT);
+
+-- ZONE lookups by chart position (GET_ZONE)
+CREATE INDEX IDX_ZONE_ROW_COL ON ZONE (ZONE_ROW, ZONE_COL);
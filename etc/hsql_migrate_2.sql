@@ -0,0 +1,15 @@
+-- Migration 2: citation counts on CLUSTER and PROTOSEGMENT.
+--
+-- CITATION_COUNT holds the number of citations in a cluster's
+-- correspondence sets, and in all of a protosegment's clusters. The
+-- counts are kept current as citations, sets and clusters are saved and
+-- deleted, so reading one no longer needs a join over CITATION.
+--
+-- Columns added by an interrupted earlier attempt are not added again,
+-- and the counts are computed afresh.
+
+ALTER TABLE CLUSTER ADD COLUMN CITATION_COUNT INTEGER DEFAULT 0;
+ALTER TABLE PROTOSEGMENT ADD COLUMN CITATION_COUNT INTEGER DEFAULT 0;
+
+UPDATE CLUSTER SET CITATION_COUNT = (SELECT COUNT(CITATION_KEY) FROM CORRESPONDENCE_SET AS CSET, CITATION WHERE CSET.CLUSTER_KEY = CLUSTER.CLUSTER_KEY AND CSET.SET_KEY = CITATION.SET_KEY);
+UPDATE PROTOSEGMENT SET CITATION_COUNT = (SELECT COUNT(CITATION_KEY) FROM CLUSTER, CORRESPONDENCE_SET AS CSET, CITATION WHERE CLUSTER.PROTO_KEY = PROTOSEGMENT.PROTO_KEY AND CLUSTER.CLUSTER_KEY = CSET.CLUSTER_KEY AND CSET.SET_KEY = CITATION.SET_KEY);
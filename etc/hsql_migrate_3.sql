@@ -0,0 +1,27 @@
+-- Migration 3: grapheme cluster occurrences.
+--
+-- GRAPHEME_CLUSTER lists, for each alignment whose vector tags grapheme
+-- clusters, the distinct clusters it tags in its datum. It is kept
+-- current as alignments and data are saved, so listing a view's clusters
+-- or finding the alignments to undefine one no longer scans every vector
+-- of the view. Existing alignments are entered once the table exists.
+
+-- The table is filled after this script, before the version is recorded;
+-- if that is interrupted the migration is run again, so drop any table
+-- left by an earlier attempt.
+DROP TABLE GRAPHEME_CLUSTER IF EXISTS;
+
+-- GRAPHEME_CLUSTER Table
+--   ALIGNMENT_KEY:     Alignment tagging the cluster
+--   VIEW_KEY:          View of the alignment
+--   GRAPHEME_CLUSTER:  Characters of the datum in the cluster
+CREATE TABLE GRAPHEME_CLUSTER (
+        ALIGNMENT_KEY INTEGER NOT NULL,
+        VIEW_KEY INTEGER NOT NULL,
+        GRAPHEME_CLUSTER VARCHAR(140) NOT NULL,
+        FOREIGN KEY (ALIGNMENT_KEY) REFERENCES ALIGNMENT ON DELETE CASCADE
+);
+
+-- GRAPHEME_CLUSTER lookups by view and cluster (GET_GRAPHEME_CLUSTERS,
+-- GET_UNDEFINE_GRAPHEME_CLUSTERS, DELETE_VIEW_GRAPHEME_CLUSTER)
+CREATE INDEX IDX_GRAPHEME_CLUSTER_VIEW ON GRAPHEME_CLUSTER (VIEW_KEY, GRAPHEME_CLUSTER);
@@ -111,6 +111,21 @@ public abstract class AbstractPersistent implements Persistent, DatabaseObject {
         _dirty = false;
     }
 
+    /**
+     * Get the current thread's instance of the given object from the
+     * identity map. The object is reverted and mapped if it has not been
+     * loaded before, or has since been dropped from the map.
+     **/
+    static Persistent lookup(AbstractPersistent object) throws DatabaseException {
+        Database db = object.getDatabase();
+        Persistent mapped = db.getMappedObject(object.getClass(), object.getID());
+        if (mapped == null) {
+            object.revert();
+            mapped = db.mapObject(object);
+        }
+        return mapped;
+    }
+
     /**
      * Is this object dirty?
      **/
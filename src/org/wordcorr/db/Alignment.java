@@ -5,8 +5,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents an alignment entry in the database.
@@ -64,9 +65,20 @@ public class Alignment extends AbstractPersistent {
      **/
     public void setVector(String v) {
         _vector = v;
+        _alignmentVector = null;
         setDirty();
     }
 
+    /**
+     * Get the parsed value of vector.
+     **/
+    public AlignmentVector getAlignmentVector() {
+        if (_alignmentVector == null) {
+            _alignmentVector = AlignmentVector.valueOf(getVector());
+        }
+        return _alignmentVector;
+    }
+
     /**
      * Get the text representation of metathesis composite.
      **/
@@ -241,44 +253,14 @@ public class Alignment extends AbstractPersistent {
      * Get the aligned datum.
      **/
     public String getAlignedDatum() {
-        return getDatum().fuseWithAlignment(getVector());
+        return getAlignmentVector().fuse(getDatum().getName());
     }
 
     /**
      * Get the aligned datum in character List to account for grapheme clusters.
      **/
     public List getAlignedDatumList() {
-    	String alignedDatum = getAlignedDatum();
-    	ArrayList alignedDatumList = new ArrayList();
-    	
-        boolean gc = false;
-        String gcvalue = "";
-        int pos = 0;
-        int width = 0;
-        for (int i = 0; i < alignedDatum.length(); i++) {
-        	String ch = alignedDatum.charAt(i) + "";
-            switch (alignedDatum.charAt(i)) {
-                case Alignment.GRAPHEME_CLUSTER_START :
-                	gc = true;
-                    break;
-                case Alignment.GRAPHEME_CLUSTER_END :
-               		alignedDatumList.add(Alignment.GRAPHEME_CLUSTER_START + gcvalue
-               			+ Alignment.GRAPHEME_CLUSTER_END);
-                    gc = false;
-                    gcvalue = "";
-                    break;
-                default :
-                	if (!gc) {
-                   		alignedDatumList.add(ch);
-                	} else {
-                		// grapheme cluster
-                		gcvalue += ch;
-                	}
-                    break;
-            }
-        }
-    	
-        return alignedDatumList;
+        return getAlignmentVector().getAlignedDatumList(getDatum().getName());
     }
 
     /**
@@ -346,11 +328,39 @@ public class Alignment extends AbstractPersistent {
     // Persistent Methods
     //---------------------------------------------------------------//
 
+    /**
+     * Override of save to also maintain the grapheme cluster table when
+     * the vector changes.
+     **/
+    public synchronized void save() throws DatabaseException {
+        boolean changed =
+            isNew()
+                ? GraphemeClusters.hasGraphemeClusters(_vector)
+                : !getVector().equals(_savedVector)
+                    && (GraphemeClusters.hasGraphemeClusters(_vector)
+                        || GraphemeClusters.hasGraphemeClusters(_savedVector));
+        super.save();
+        if (changed) {
+            GraphemeClusters.update(this);
+        }
+        _savedVector = getVector();
+    }
+
     /**
      * Update the object based on a result set.
      **/
     public void updateObject(ResultSet rs) throws SQLException {
+        updateObject(rs, Collections.EMPTY_MAP);
+    }
+
+    /**
+     * Update the object based on a result set, taking its group from the
+     * given groups by id if it is there, and from the identity map if not.
+     **/
+    void updateObject(ResultSet rs, Map groups) throws SQLException {
         _vector = rs.getString(3);
+        _savedVector = getVector();
+        _alignmentVector = null;
         _metathesis1 = getInt(rs, 4);
         _length1 = getInt(rs, 5);
         _metathesis2 = getInt(rs, 6);
@@ -359,10 +369,11 @@ public class Alignment extends AbstractPersistent {
         long gid = rs.getLong(9);
         if (rs.wasNull()) {
             _group = null;
+        } else if (groups.containsKey(new Long(gid))) {
+            _group = (Group) groups.get(new Long(gid));
         } else {
             try {
-                _group = new Group(getDatabase(), gid, _view, _datum.getEntry());
-                _group.revert();
+                _group = (Group) lookup(new Group(getDatabase(), gid, _view, _datum.getEntry()));
             } catch (DatabaseException e) {
                 e.printStackTrace();
                 throw new SQLException(e.getRootCause().getMessage());
@@ -428,6 +439,8 @@ public class Alignment extends AbstractPersistent {
     private Integer _length1;
     private Integer _length2;
     private String _vector;
+    private String _savedVector;
+    private AlignmentVector _alignmentVector;
     private String _observations;
     private Group _group;
     private final Datum _datum;
@@ -0,0 +1,387 @@
+package org.wordcorr.db;
+
+import java.util.*;
+
+/**
+ * A parsed alignment vector. The vector string of holds, indels,
+ * excludes and grapheme cluster tags is parsed once into the positions
+ * of its holds, its aligned positions and its grapheme clusters, so that
+ * a datum can be fused with it or split into aligned positions without
+ * parsing it again. Instances are immutable and shared.
+ **/
+public final class AlignmentVector {
+
+    // number of parsed vectors kept for reuse
+    private static final int CACHE_SIZE = 4096;
+
+    private static final Map CACHE = new LinkedHashMap(256, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Get the parsed form of a vector.
+     * @param vector The vector string.
+     **/
+    public static AlignmentVector valueOf(String vector) {
+        synchronized (CACHE) {
+            AlignmentVector parsed = (AlignmentVector) CACHE.get(vector);
+            if (parsed == null) {
+                parsed = new AlignmentVector(vector);
+                CACHE.put(vector, parsed);
+            }
+            return parsed;
+        }
+    }
+
+    /**
+     * Constructor.
+     **/
+    private AlignmentVector(String vector) {
+        _vector = vector;
+        int length = vector.length();
+        _holdIndex = new int[length];
+        int[] holds = new int[length];
+        int[] positionStart = new int[length];
+        int[] positionEnd = new int[length];
+        boolean[] positionCluster = new boolean[length];
+        int[] clusterOpen = new int[length];
+        int[] clusterClose = new int[length];
+        int[] clusterHoldStart = new int[length];
+        int[] clusterHoldEnd = new int[length];
+        int[] clusterStart = new int[length];
+        int[] clusterEnd = new int[length];
+        StringBuffer unbracketed = new StringBuffer(length);
+
+        int holdCount = 0;
+        int positionCount = 0;
+        int clusterCount = 0;
+        boolean inCluster = false;
+        int open = -1;
+        int contentStart = 0;
+        int holdStart = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            _holdIndex[i] = holdCount;
+            switch (vector.charAt(i)) {
+                case Alignment.GRAPHEME_CLUSTER_START :
+                    if (!inCluster) {
+                        contentStart = i + 1;
+                    }
+                    inCluster = true;
+                    open = i;
+                    holdStart = holdCount;
+                    start = unbracketed.length();
+                    break;
+                case Alignment.GRAPHEME_CLUSTER_END :
+                    positionStart[positionCount] = inCluster ? contentStart : i;
+                    positionEnd[positionCount] = i;
+                    positionCluster[positionCount] = true;
+                    positionCount++;
+
+                    // a stray end tag has no start tag to remove
+                    clusterOpen[clusterCount] = inCluster ? open : -1;
+                    inCluster = false;
+                    open = -1;
+                    clusterClose[clusterCount] = i;
+                    clusterHoldStart[clusterCount] = holdStart;
+                    clusterHoldEnd[clusterCount] = holdCount;
+                    clusterStart[clusterCount] = start;
+                    clusterEnd[clusterCount] = unbracketed.length();
+                    clusterCount++;
+                    break;
+                case Alignment.HOLD_SYMBOL :
+                    holds[holdCount++] = i;
+                    // fall through
+                default :
+                    if (!inCluster) {
+                        positionStart[positionCount] = i;
+                        positionEnd[positionCount] = i + 1;
+                        positionCount++;
+                    }
+                    unbracketed.append(vector.charAt(i));
+                    break;
+            }
+        }
+
+        _holds = trim(holds, holdCount);
+        _positionStart = trim(positionStart, positionCount);
+        _positionEnd = trim(positionEnd, positionCount);
+        _positionCluster = new boolean[positionCount];
+        System.arraycopy(positionCluster, 0, _positionCluster, 0, positionCount);
+        _clusterOpen = trim(clusterOpen, clusterCount);
+        _clusterClose = trim(clusterClose, clusterCount);
+        _clusterHoldStart = trim(clusterHoldStart, clusterCount);
+        _clusterHoldEnd = trim(clusterHoldEnd, clusterCount);
+        _clusterStart = trim(clusterStart, clusterCount);
+        _clusterEnd = trim(clusterEnd, clusterCount);
+        _openAtEnd = inCluster;
+        _unbracketed = unbracketed.toString();
+    }
+
+    /**
+     * Get the vector string.
+     **/
+    public String toString() {
+        return _vector;
+    }
+
+    /**
+     * Get the vector without grapheme cluster tags.
+     **/
+    public String getUnbracketedVector() {
+        return _unbracketed;
+    }
+
+    /**
+     * Get the number of hold symbols.
+     **/
+    public int getHoldCount() {
+        return _holds.length;
+    }
+
+    /**
+     * Get the number of aligned positions. A grapheme cluster is one
+     * position.
+     **/
+    public int getPositionCount() {
+        return _positionStart.length;
+    }
+
+    /**
+     * Fuse a datum with this vector: each hold is replaced by the next
+     * character of the datum, holds past the end of the datum are dropped
+     * and any characters of the datum left over are appended.
+     * @param datum The raw datum.
+     **/
+    public String fuse(String datum) {
+        int holdCount = _holds.length;
+        int datumLength = datum.length();
+        if (datumLength < holdCount) {
+            StringBuffer buf = new StringBuffer(_vector.length());
+            for (int i = 0; i < _vector.length(); i++) {
+                char ch = _vector.charAt(i);
+                if (ch != Alignment.HOLD_SYMBOL) {
+                    buf.append(ch);
+                } else if (_holdIndex[i] < datumLength) {
+                    buf.append(datum.charAt(_holdIndex[i]));
+                }
+            }
+            return buf.toString();
+        }
+
+        int vectorLength = _vector.length();
+        char[] fused = new char[vectorLength + datumLength - holdCount];
+        _vector.getChars(0, vectorLength, fused, 0);
+        for (int i = 0; i < holdCount; i++) {
+            fused[_holds[i]] = datum.charAt(i);
+        }
+        datum.getChars(holdCount, datumLength, fused, vectorLength);
+        return new String(fused);
+    }
+
+    /**
+     * Get a datum fused with this vector as a List of the aligned
+     * positions, with each grapheme cluster as one tagged position.
+     * @param datum The raw datum.
+     **/
+    public List getAlignedDatumList(String datum) {
+        int holdCount = _holds.length;
+        int datumLength = datum.length();
+        if (datumLength < holdCount
+            || datum.indexOf(Alignment.GRAPHEME_CLUSTER_START) >= 0
+            || datum.indexOf(Alignment.GRAPHEME_CLUSTER_END) >= 0) {
+            // holds and tags would not line up with the vector
+            return parseAlignedDatum(fuse(datum));
+        }
+
+        List positions = new ArrayList(_positionStart.length + datumLength - holdCount);
+        for (int p = 0; p < _positionStart.length; p++) {
+            if (!_positionCluster[p]) {
+                positions.add(String.valueOf(getFusedChar(datum, _positionStart[p])));
+                continue;
+            }
+            StringBuffer buf = new StringBuffer(_positionEnd[p] - _positionStart[p] + 2);
+            buf.append(Alignment.GRAPHEME_CLUSTER_START);
+            for (int i = _positionStart[p]; i < _positionEnd[p]; i++) {
+                if (_vector.charAt(i) != Alignment.GRAPHEME_CLUSTER_START) {
+                    buf.append(getFusedChar(datum, i));
+                }
+            }
+            buf.append(Alignment.GRAPHEME_CLUSTER_END);
+            positions.add(buf.toString());
+        }
+
+        // left over characters, unless swallowed by an unterminated cluster
+        if (!_openAtEnd) {
+            for (int i = holdCount; i < datumLength; i++) {
+                positions.add(String.valueOf(datum.charAt(i)));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Get the character of a fused datum at a vector position.
+     **/
+    private char getFusedChar(String datum, int i) {
+        char ch = _vector.charAt(i);
+        return (ch == Alignment.HOLD_SYMBOL) ? datum.charAt(_holdIndex[i]) : ch;
+    }
+
+    /**
+     * Get the number of grapheme clusters.
+     **/
+    public int getGraphemeClusterCount() {
+        return _clusterClose.length;
+    }
+
+    /**
+     * Get the characters of a datum in a grapheme cluster. Holds past the
+     * end of the datum are dropped, as in fuse().
+     * @param datum The raw datum.
+     * @param cluster The index of the grapheme cluster.
+     **/
+    public String getGraphemeCluster(String datum, int cluster) {
+        int end = Math.min(_clusterHoldEnd[cluster], datum.length());
+        return datum.substring(Math.min(_clusterHoldStart[cluster], end), end);
+    }
+
+    /**
+     * Get the start of a grapheme cluster in the unbracketed vector.
+     * @param cluster The index of the grapheme cluster.
+     **/
+    public int getGraphemeClusterStart(int cluster) {
+        return _clusterStart[cluster];
+    }
+
+    /**
+     * Get the end of a grapheme cluster in the unbracketed vector.
+     * @param cluster The index of the grapheme cluster.
+     **/
+    public int getGraphemeClusterEnd(int cluster) {
+        return _clusterEnd[cluster];
+    }
+
+    /**
+     * Get this vector with the tags removed from each grapheme cluster
+     * of a datum equal to the given cluster.
+     * @param datum The raw datum.
+     * @param graphemeCluster The grapheme cluster to undefine.
+     * @return The new vector, or this vector if there was no such cluster.
+     **/
+    public AlignmentVector undefineGraphemeCluster(String datum, String graphemeCluster) {
+        StringBuffer buf = null;
+        int copied = 0;
+        for (int k = 0; k < _clusterClose.length; k++) {
+            if (_clusterOpen[k] < 0 || !getGraphemeCluster(datum, k).equals(graphemeCluster))
+                continue;
+            if (buf == null) {
+                buf = new StringBuffer(_vector.length());
+            }
+            buf.append(_vector.substring(copied, _clusterOpen[k]));
+            buf.append(_vector.substring(_clusterOpen[k] + 1, _clusterClose[k]));
+            copied = _clusterClose[k] + 1;
+        }
+        if (buf == null)
+            return this;
+        buf.append(_vector.substring(copied));
+        return valueOf(buf.toString());
+    }
+
+    /**
+     * Split a fused datum into aligned positions, with each grapheme
+     * cluster as one tagged position.
+     **/
+    private static List parseAlignedDatum(String alignedDatum) {
+        List positions = new ArrayList();
+        boolean gc = false;
+        StringBuffer gcvalue = new StringBuffer();
+        for (int i = 0; i < alignedDatum.length(); i++) {
+            char ch = alignedDatum.charAt(i);
+            switch (ch) {
+                case Alignment.GRAPHEME_CLUSTER_START :
+                    gc = true;
+                    break;
+                case Alignment.GRAPHEME_CLUSTER_END :
+                    positions.add(
+                        Alignment.GRAPHEME_CLUSTER_START
+                            + gcvalue.toString()
+                            + Alignment.GRAPHEME_CLUSTER_END);
+                    gc = false;
+                    gcvalue.setLength(0);
+                    break;
+                default :
+                    if (!gc) {
+                        positions.add(String.valueOf(ch));
+                    } else {
+                        // grapheme cluster
+                        gcvalue.append(ch);
+                    }
+                    break;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Get the number of characters at each aligned position of an aligned
+     * datum or correspondence set: 1 for a single character and the
+     * length of a grapheme cluster, but at least 1, for a cluster.
+     * @param aligned The aligned datum or correspondence set.
+     **/
+    public static int[] getPositionWidths(String aligned) {
+        int[] widths = new int[aligned.length()];
+        boolean gc = false;
+        int pos = 0;
+        int width = 0;
+        for (int i = 0; i < aligned.length(); i++) {
+            switch (aligned.charAt(i)) {
+                case Alignment.GRAPHEME_CLUSTER_START :
+                    gc = true;
+                    break;
+                case Alignment.GRAPHEME_CLUSTER_END :
+                    widths[pos++] = Math.max(width, 1);
+                    width = 0;
+                    gc = false;
+                    break;
+                default :
+                    if (!gc) {
+                        widths[pos++] = 1;
+                    } else {
+                        // grapheme cluster
+                        width++;
+                    }
+                    break;
+            }
+        }
+        return trim(widths, pos);
+    }
+
+    /**
+     * Copy the first elements of an array.
+     **/
+    private static int[] trim(int[] values, int length) {
+        if (values.length == length)
+            return values;
+        int[] trimmed = new int[length];
+        System.arraycopy(values, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    private final String _vector;
+    private final String _unbracketed;
+    private final int[] _holds;
+    private final int[] _holdIndex;
+    private final int[] _positionStart;
+    private final int[] _positionEnd;
+    private final boolean[] _positionCluster;
+    private final int[] _clusterOpen;
+    private final int[] _clusterClose;
+    private final int[] _clusterHoldStart;
+    private final int[] _clusterHoldEnd;
+    private final int[] _clusterStart;
+    private final int[] _clusterEnd;
+    private final boolean _openAtEnd;
+}
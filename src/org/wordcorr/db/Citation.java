@@ -132,6 +132,30 @@ public class Citation extends AbstractPersistent {
     // Persistent Methods
     //---------------------------------------------------------------//
 
+    /**
+     * Override of save to also maintain citation counts.
+     **/
+    public synchronized void save() throws DatabaseException {
+        boolean created = isNew();
+        boolean moved = !created && _correspondenceSet.getID() != _correspondenceSetID;
+        if (moved) {
+            CitationCounts.subtract(getDatabase(), CitationCounts.CITATION, new long[] { getID() });
+        }
+        super.save();
+        if (created || moved) {
+            CitationCounts.add(getDatabase(), CitationCounts.CITATION, new long[] { getID() });
+        }
+        _correspondenceSetID = _correspondenceSet.getID();
+    }
+
+    /**
+     * Override of delete to also maintain citation counts.
+     **/
+    public synchronized void delete() throws DatabaseException {
+        CitationCounts.subtract(getDatabase(), CitationCounts.CITATION, new long[] { getID() });
+        super.delete();
+    }
+
     /**
      * Update the object based on a result set.
      **/
@@ -143,8 +167,8 @@ public class Citation extends AbstractPersistent {
         // load correspondence set if null
         if (_correspondenceSet == null) {
 	        try {
-		    	_correspondenceSet = new CorrespondenceSet(getDatabase(), _correspondenceSetID, null);
-		    	_correspondenceSet.revert();
+		    	_correspondenceSet = (CorrespondenceSet) lookup(
+		    	    new CorrespondenceSet(getDatabase(), _correspondenceSetID, null));
 	        } catch (DatabaseException e) {
 	            e.printStackTrace();
 	            throw new SQLException(e.getRootCause().getMessage());
@@ -0,0 +1,164 @@
+package org.wordcorr.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Maintains the CITATION_COUNT columns of the CLUSTER and PROTOSEGMENT
+ * tables. Before citations leave a cluster they are subtracted, and after
+ * they arrive they are added, so reading a count is a single column fetch.
+ * Each scope names a GET_CITATION_COUNTS_BY_&lt;scope&gt; query that
+ * returns the cluster, protosegment and citation count of the citations
+ * concerned.
+ **/
+final class CitationCounts {
+
+    // scopes
+    static final String CITATION      = "CITATION";
+    static final String SET           = "SET";
+    static final String CLUSTER       = "CLUSTER";
+    static final String ENTRY         = "ENTRY";
+    static final String UNUSED_GROUPS = "UNUSED_GROUPS";
+
+    private CitationCounts() {}
+
+    /**
+     * Add the citations of the given scope to their cluster and
+     * protosegment counts.
+     **/
+    static void add(Database db, String scope, long[] keys) throws DatabaseException {
+        adjust(db, scope, keys, 1);
+    }
+
+    /**
+     * Subtract the citations of the given scope from their cluster and
+     * protosegment counts.
+     **/
+    static void subtract(Database db, String scope, long[] keys)
+        throws DatabaseException {
+        adjust(db, scope, keys, -1);
+    }
+
+    /**
+     * Move the count of a protosegment to another when all its clusters
+     * move there. Cluster counts are unchanged.
+     **/
+    static void move(Database db, final long fromKey, long toKey) throws DatabaseException {
+        List counts = db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_PROTOSEGMENT_CITATION_COUNT";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, fromKey);
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return new Long(rs.getLong(1));
+            }
+        });
+        long count = ((Long) counts.get(0)).longValue();
+        if (count != 0) {
+            execute(db, "ADD_PROTOSEGMENT_CITATION_COUNT", new long[] { -count, fromKey });
+            execute(db, "ADD_PROTOSEGMENT_CITATION_COUNT", new long[] { count, toKey });
+        }
+    }
+
+    /**
+     * Adjust counts by the citations of the given scope.
+     **/
+    private static void adjust(Database db, final String scope, final long[] keys, int sign)
+        throws DatabaseException {
+        List counts = db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_CITATION_COUNTS_BY_" + scope;
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                for (int i = 0; i < keys.length; i++) {
+                    stmt.setLong(i + 1, keys[i]);
+                }
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                // an empty group yields a single row of nulls
+                int count = rs.getInt(3);
+                return (count == 0) ? null : new long[] { rs.getLong(1), rs.getLong(2), count };
+            }
+        });
+
+        for (Iterator it = counts.iterator(); it.hasNext();) {
+            long[] count = (long[]) it.next();
+            execute(db, "ADD_CLUSTER_CITATION_COUNT", new long[] { sign * count[2], count[0] });
+            execute(db, "ADD_PROTOSEGMENT_CITATION_COUNT", new long[] { sign * count[2], count[1] });
+        }
+    }
+
+    /**
+     * Check the stored counts of a view against its citations.
+     * @param rebuild Recount the clusters and protosegments that are off.
+     * @return The number of clusters and protosegments found off.
+     **/
+    static int verify(View view, boolean rebuild) throws DatabaseException {
+        Database db = view.getDatabase();
+        List clusters = getDrift(view, "GET_CLUSTER_CITATION_COUNT_DRIFT");
+        List protosegments = getDrift(view, "GET_PROTOSEGMENT_CITATION_COUNT_DRIFT");
+        if (rebuild) {
+            for (Iterator it = clusters.iterator(); it.hasNext();) {
+                execute(db, "RECOUNT_CLUSTER_CITATIONS", new long[] { ((Long) it.next()).longValue() });
+            }
+            for (Iterator it = protosegments.iterator(); it.hasNext();) {
+                execute(db, "RECOUNT_PROTOSEGMENT_CITATIONS", new long[] { ((Long) it.next()).longValue() });
+            }
+        }
+        return clusters.size() + protosegments.size();
+    }
+
+    /**
+     * Get the keys whose stored count differs from the citations.
+     **/
+    private static List getDrift(final View view, final String sqlkey)
+        throws DatabaseException {
+        return view.getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return sqlkey;
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, view.getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return new Long(rs.getLong(1));
+            }
+        });
+    }
+
+    /**
+     * Run a count update.
+     **/
+    private static void execute(Database db, final String sqlkey, final long[] params)
+        throws DatabaseException {
+        db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return sqlkey;
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setLong(i + 1, params[i]);
+                }
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return null;
+            }
+        });
+    }
+}
@@ -130,6 +130,27 @@ public class Cluster extends AbstractPersistent {
         });
     }
 
+    /**
+     * Get number of correspondence sets.
+     **/
+    public int getCorrespondenceSetCount() throws DatabaseException {
+        List list = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_CORRESPONDENCE_SET_COUNT";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return new Integer(rs.getInt(1));
+            }
+        });
+        return ((Integer) list.get(0)).intValue();
+    }
+
     /**
      * Get maximum correspondence set order.
      **/
@@ -202,13 +223,13 @@ public class Cluster extends AbstractPersistent {
      * Get summary element representing this cluster.
      **/
     public Element getSummaryElement(
-        View view,
+        final View view,
         float minFrantz,
-        int maxReconstructions,
-        String displayFrantz,
+        final int maxReconstructions,
+        final String displayFrantz,
         boolean includeResidue,
-        String gloss) {
-        Element element = new Element("cluster");
+        final String gloss) {
+        final Element element = new Element("cluster");
 
         // set attributes
         element.setAttribute("environment", getEnvironment());
@@ -216,16 +237,20 @@ public class Cluster extends AbstractPersistent {
         element.setAttribute(
             "cluster-order",
             (order == null) ? "" : order.intValue() + "");
+        if (maxReconstructions <= 0)
+            return element;
         try {
-            // groups
-            int i = 0;
-            for (Iterator it =
-                view.getSummaryClusterGroups(this, minFrantz, displayFrantz).iterator();
-                it.hasNext();
-                ) {
-                // check maximum number of reconstructions per cluster
-                if (++i > maxReconstructions)
-                    break;
+            // groups, stopping at the maximum number of reconstructions
+            // per cluster; they are read before summarizing so the
+            // cursor's connection is not held across the groups' reads
+            final List groups = new ArrayList();
+            view.visitSummaryClusterGroups(this, minFrantz, displayFrantz, new ObjectVisitor() {
+                public boolean visit(Object object) {
+                    groups.add(object);
+                    return groups.size() < maxReconstructions;
+                }
+            });
+            for (Iterator it = groups.iterator(); it.hasNext();) {
                 Group group = (Group) it.next();
                 element.addContent(group.getSummaryElement(view, displayFrantz, gloss));
             }
@@ -236,78 +261,123 @@ public class Cluster extends AbstractPersistent {
         return element;
     }
 
+    /**
+     * Get an index of this cluster's correspondence sets.
+     **/
+    public ConformabilityIndex getConformabilityIndex() throws DatabaseException {
+        return new ConformabilityIndex(getCorrespondenceSets());
+    }
+
     /**
      * Add correspondence set to existing sets if identical or conformable.
      * @param fromSet Correspondence set to add.
      **/
     public boolean addCorrespondenceSet(CorrespondenceSet fromSet)
+        throws DatabaseException {
+        return addCorrespondenceSet(fromSet, getConformabilityIndex());
+    }
+
+    /**
+     * Add correspondence set to existing sets if identical or conformable.
+     * @param fromSet Correspondence set to add.
+     * @param index Index of this cluster's sets, updated if the set is moved.
+     **/
+    public boolean addCorrespondenceSet(
+        CorrespondenceSet fromSet,
+        ConformabilityIndex index)
         throws DatabaseException {
         Cluster fromCluster = fromSet.getCluster();
+        if (!moveCorrespondenceSet(fromSet, index))
+            return false;
+        if (fromCluster.getCorrespondenceSetCount() == 0) {
+            deleteMergedCluster(fromCluster);
+        }
+        return true;
+    }
 
-        // check for identical set to move citations to
-        boolean conformable = false;
-        List toSets = this.getCorrespondenceSets();
-        for (Iterator its = toSets.iterator(); its.hasNext();) {
-            CorrespondenceSet toSet = (CorrespondenceSet) its.next();
-            // check for identical set (include ignores)
-            if (fromSet.getSet().equals(toSet.getSet())) {
-                // move citations
-                for (Iterator itc = fromSet.getCitations().iterator(); itc.hasNext();) {
-                    Citation citation = (Citation) itc.next();
-                    citation.setCorrespondenceSet(toSet);
-                    citation.save();
-                }
-                // delete correspondence set after appending remarks
-                toSet.appendRemarks(fromSet.getRemarks());
-                toSet.save();
-                fromSet.delete();
-                // delete cluster if empty
-                if (fromCluster.getCorrespondenceSets().isEmpty()) {
-                    this.appendRemarks(fromCluster.getRemarks());
-                    this.save();
-                    Protosegment fromProtosegment = fromCluster.getProtosegment();
-                    fromCluster.delete();
-                    fromProtosegment.reorderClusterOrder();
-                }
-                return true;
-                // check for nonconformable set (exclude ignores)
-            } else if (!toSet.isConformable(fromSet.getSet())) {
-                conformable = false;
-                break;
+    /**
+     * Merge the correspondence sets of another cluster into this one,
+     * each if identical or conformable. The other cluster is deleted,
+     * keeping its remarks in this cluster, if all its sets are merged.
+     * @param fromCluster Cluster to merge.
+     * @param index Index of this cluster's sets, updated as sets are moved.
+     * @return The number of correspondence sets merged.
+     **/
+    public int mergeCluster(Cluster fromCluster, ConformabilityIndex index)
+        throws DatabaseException {
+        List fromSets = fromCluster.getCorrespondenceSets();
+        int merged = 0;
+        for (Iterator it = fromSets.iterator(); it.hasNext();) {
+            if (moveCorrespondenceSet((CorrespondenceSet) it.next(), index)) {
+                merged++;
             }
-            conformable = true;
         }
+        if (merged == fromSets.size()) {
+            deleteMergedCluster(fromCluster);
+        }
+        return merged;
+    }
 
-        if (conformable) {
+    /**
+     * Move a correspondence set's citations to an identical set, or the
+     * set itself if it is conformable.
+     * @return False if the set is neither identical nor conformable.
+     **/
+    private boolean moveCorrespondenceSet(
+        CorrespondenceSet fromSet,
+        ConformabilityIndex index)
+        throws DatabaseException {
+        int[] symbols = fromSet.getSymbols();
+
+        // check for identical set (include ignores) to move citations to
+        CorrespondenceSet toSet = index.findIdentical(symbols);
+        if (toSet != null) {
+            fromSet.moveCitations(toSet);
+            // delete correspondence set after appending remarks
+            toSet.appendRemarks(fromSet.getRemarks());
+            toSet.save();
+            fromSet.delete();
+            return true;
+        }
+
+        // check for conformable set (exclude ignores)
+        if (index.isConformable(symbols)) {
             // move correspondence set
             fromSet.setCluster(this);
             fromSet.save();
-            // delete cluster if empty
-            if (fromCluster.getCorrespondenceSets().isEmpty()) {
-                this.appendRemarks(fromCluster.getRemarks());
-                this.save();
-                Protosegment fromProtosegment = fromCluster.getProtosegment();
-                fromCluster.delete();
-                fromProtosegment.reorderClusterOrder();
-            }
+            index.add(fromSet);
             return true;
         }
         return false;
     }
 
+    /**
+     * Delete a cluster whose correspondence sets were all moved here,
+     * keeping its remarks in this cluster.
+     **/
+    private void deleteMergedCluster(Cluster fromCluster) throws DatabaseException {
+        this.appendRemarks(fromCluster.getRemarks());
+        this.save();
+        Protosegment fromProtosegment = fromCluster.getProtosegment();
+        fromCluster.delete();
+        fromProtosegment.reorderClusterOrder();
+    }
+
     /**
      * Checks to see if idential or conformable correspondence set exists.
      * @param fromSet Correspondence set to add.
      **/
     public boolean hasConformable(CorrespondenceSet fromSet)
         throws DatabaseException {
+        // a single check stops at the first match, which is cheaper than
+        // indexing the sets
+        int[] symbols = fromSet.getSymbols();
         List toSets = this.getCorrespondenceSets();
         for (Iterator its = toSets.iterator(); its.hasNext();) {
             CorrespondenceSet toSet = (CorrespondenceSet) its.next();
             // check for identical set (include ignores)
-            // or check for nonconformable set (exclude ignores)
-            if (fromSet.getSet().equals(toSet.getSet())
-                || toSet.isConformable(fromSet.getSet())) {
+            // or check for conformable set (exclude ignores)
+            if (toSet.isIdentical(symbols) || toSet.isConformable(symbols)) {
                 return true;
             }
         }
@@ -330,6 +400,30 @@ public class Cluster extends AbstractPersistent {
     // Persistent Methods
     //---------------------------------------------------------------//
 
+    /**
+     * Override of save to also maintain citation counts when the cluster
+     * moves to another protosegment.
+     **/
+    public synchronized void save() throws DatabaseException {
+        boolean moved = !isNew() && _protosegment.getID() != _protosegmentID;
+        if (moved) {
+            CitationCounts.subtract(getDatabase(), CitationCounts.CLUSTER, new long[] { getID() });
+        }
+        super.save();
+        if (moved) {
+            CitationCounts.add(getDatabase(), CitationCounts.CLUSTER, new long[] { getID() });
+        }
+        _protosegmentID = _protosegment.getID();
+    }
+
+    /**
+     * Override of delete to also maintain citation counts.
+     **/
+    public synchronized void delete() throws DatabaseException {
+        CitationCounts.subtract(getDatabase(), CitationCounts.CLUSTER, new long[] { getID() });
+        super.delete();
+    }
+
     /**
      * Update the object based on a result set.
      **/
@@ -342,8 +436,8 @@ public class Cluster extends AbstractPersistent {
         // load protosegment if null
         if (_protosegment == null) {
             try {
-                _protosegment = new Protosegment(getDatabase(), _protosegmentID, null, null);
-                _protosegment.revert();
+                _protosegment = (Protosegment) lookup(
+                    new Protosegment(getDatabase(), _protosegmentID, null, null));
             } catch (DatabaseException e) {
                 e.printStackTrace();
                 throw new SQLException(e.getRootCause().getMessage());
@@ -0,0 +1,147 @@
+package org.wordcorr.db;
+
+import java.util.*;
+
+import org.jdom.Element;
+
+/**
+ * Imports a collection one element at a time, in document order: the
+ * collection header, each variety and entry, and for each view its
+ * header, annotations, protosegments and tabulated groups. Only the ids
+ * of imported entries and datums are kept; the datums of an entry are
+ * read back when its annotations arrive.
+ **/
+class CollectionImport {
+
+    /**
+     * Constructor.
+     * @param version The version of the WordCorr file.
+     **/
+    CollectionImport(WordCollection collection, double version) {
+        _collection = collection;
+        _version = version;
+    }
+
+    /**
+     * Set the collection's values from its element and save it. Child
+     * elements other than the metadata are ignored.
+     **/
+    void addCollection(Element element) throws DatabaseException {
+        _collection.generateHeaderFromElement(element, _version);
+    }
+
+    /**
+     * Add a variety.
+     **/
+    void addVariety(Element element) throws DatabaseException {
+        Variety variety = _collection.makeVariety();
+        variety.generateFromElement(element, _version);
+        _varieties.put(variety.getShortName(), variety);
+    }
+
+    /**
+     * Add an entry and its datums.
+     **/
+    void addEntry(Element element) throws DatabaseException {
+        Entry entry = _collection.makeEntry();
+        Map datums = entry.generateFromElement(element, _varieties);
+        String entryNumber = entry.getEntryNum().toString();
+        _entryIDs.put(entryNumber, new Long(entry.getID()));
+        for (Iterator it = datums.entrySet().iterator(); it.hasNext();) {
+            Map.Entry datum = (Map.Entry) it.next();
+            _datumIDs.put(
+                entryNumber + ":" + datum.getKey(),
+                new Long(((Datum) datum.getValue()).getID()));
+        }
+    }
+
+    /**
+     * Start a view. Its annotations, protosegments and tabulated groups
+     * follow, then endView().
+     **/
+    void addView(Element element) throws DatabaseException {
+        _view = _collection.makeView();
+        _view.generateHeaderFromElement(element, _varieties);
+        _groups = new HashMap();
+        _tabulatedGroups = new HashSet();
+    }
+
+    /**
+     * Add an annotated datum to the current view.
+     **/
+    void addAnnotation(Element element) throws DatabaseException {
+        String entryNumber = element.getAttributeValue("entry-number");
+        Datum datum = getDatum(entryNumber, element.getAttributeValue("datum-number"));
+        _view.generateAnnotationFromElement(element, _groups, _entry, datum);
+    }
+
+    /**
+     * Add a protosegment to the current view.
+     **/
+    void addProtosegment(Element element) throws DatabaseException {
+        _view.generateProtosegmentFromElement(element, _groups, _tabulatedGroups);
+    }
+
+    /**
+     * Add a tabulated group to the current view.
+     **/
+    void addTabulatedGroup(Element element) {
+        _view.addTabulatedGroupFromElement(element, _groups, _tabulatedGroups);
+    }
+
+    /**
+     * End the current view.
+     **/
+    void endView() throws DatabaseException {
+        _view.markTabulatedGroups(_tabulatedGroups);
+        _view = null;
+        _groups = null;
+        _tabulatedGroups = null;
+        _entryNumber = null;
+        _entry = null;
+        _datums = null;
+    }
+
+    /**
+     * End the collection.
+     **/
+    void end() throws DatabaseException {
+        // reorder all entry numbers
+        _collection.reorderEntries(0, 1);
+    }
+
+    /**
+     * Get an imported datum by its entry and datum numbers in the file.
+     * Annotations come an entry at a time, so only the datums of the
+     * last entry asked for are held. The entry kept for new groups does
+     * not hold its data, so the view's groups do not pin any datums.
+     **/
+    private Datum getDatum(String entryNumber, String datumNumber) {
+        if (!entryNumber.equals(_entryNumber)) {
+            long entryID = ((Long) _entryIDs.get(entryNumber)).longValue();
+            Database db = _collection.getDatabase();
+            _entry = new Entry(db, entryID, _collection);
+            _datums = new HashMap();
+            for (Iterator it = new Entry(db, entryID, _collection).getData().iterator();
+                it.hasNext();
+                ) {
+                Datum datum = (Datum) it.next();
+                _datums.put(new Long(datum.getID()), datum);
+            }
+            _entryNumber = entryNumber;
+        }
+        return (Datum) _datums.get(_datumIDs.get(entryNumber + ":" + datumNumber));
+    }
+
+    private final WordCollection _collection;
+    private final double _version;
+    private final Map _varieties = new HashMap();
+    private final Map _entryIDs = new HashMap();
+    private final Map _datumIDs = new HashMap();
+    private String _entryNumber;
+    private Entry _entry;
+    private Map _datums;
+    private View _view;
+    private Map _groups;
+    private Set _tabulatedGroups;
+}
@@ -0,0 +1,162 @@
+package org.wordcorr.db;
+
+import java.util.*;
+
+/**
+ * In-memory index of the correspondence sets of a cluster, for finding
+ * identical and conformable sets without comparing against every set.
+ * The sets are kept in a trie over their segment symbols: an identical
+ * set is found by following one path, and conformable sets by following
+ * the ignore branch as well at each symbol. An index is built for one
+ * operation, such as a merge or a tabulation, and must be told of sets
+ * the operation adds to the cluster.
+ **/
+public final class ConformabilityIndex {
+
+    /**
+     * Constructor for an empty index.
+     **/
+    public ConformabilityIndex() {
+    }
+
+    /**
+     * Constructor.
+     * @param sets The cluster's correspondence sets, in order.
+     **/
+    public ConformabilityIndex(List sets) {
+        for (Iterator it = sets.iterator(); it.hasNext();) {
+            add((CorrespondenceSet) it.next());
+        }
+    }
+
+    /**
+     * Get the correspondence sets, in the order they were added.
+     **/
+    public List getCorrespondenceSets() {
+        return Collections.unmodifiableList(_sets);
+    }
+
+    /**
+     * Get the number of correspondence sets.
+     **/
+    public int size() {
+        return _sets.size();
+    }
+
+    /**
+     * Check whether there are no correspondence sets.
+     **/
+    public boolean isEmpty() {
+        return _sets.isEmpty();
+    }
+
+    /**
+     * Add a correspondence set after the others.
+     **/
+    public void add(CorrespondenceSet set) {
+        int[] symbols = set.getSymbols();
+        Node node = _root;
+        for (int i = 0; i < symbols.length; i++) {
+            node = node.getChild(symbols[i], true);
+        }
+        if (node.sets == null) {
+            node.sets = new ArrayList(1);
+        }
+        node.sets.add(set);
+        _sets.add(set);
+    }
+
+    /**
+     * Find the set identical (include ignores) to the given set, as the
+     * cluster's sets are searched in order: the first identical set, if
+     * no nonconformable set comes before it.
+     * @param symbols Value to find, encoded with the view's segment symbols.
+     * @return The identical set, or null if none.
+     **/
+    public CorrespondenceSet findIdentical(int[] symbols) {
+        Node node = _root;
+        for (int i = 0; i < symbols.length && node != null; i++) {
+            node = node.getChild(symbols[i], false);
+        }
+        if (node == null || node.sets == null || node.sets.isEmpty())
+            return null;
+        if (countConformable(_root, symbols, 0) == _sets.size())
+            return (CorrespondenceSet) node.sets.get(0);
+
+        // some set is nonconformable; check which comes first
+        for (Iterator it = _sets.iterator(); it.hasNext();) {
+            CorrespondenceSet set = (CorrespondenceSet) it.next();
+            if (set.isIdentical(symbols))
+                return set;
+            if (!set.isConformable(symbols))
+                return null;
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the given set is conformable (exclude ignores) with
+     * every correspondence set. False if there are no sets.
+     * @param symbols Value to check, encoded with the view's segment symbols.
+     **/
+    public boolean isConformable(int[] symbols) {
+        return !_sets.isEmpty() && countConformable(_root, symbols, 0) == _sets.size();
+    }
+
+    /**
+     * Count the sets below a node that are conformable with the given
+     * set from the given position on.
+     **/
+    private static int countConformable(Node node, int[] symbols, int pos) {
+        if (pos == symbols.length)
+            return (node.sets == null) ? 0 : node.sets.size();
+
+        int symbol = symbols[pos];
+        int count = 0;
+        for (int i = 0; i < node.size; i++) {
+            int childSymbol = node.symbols[i];
+            if (symbol == childSymbol
+                || symbol == SegmentSymbols.IGNORE
+                || childSymbol == SegmentSymbols.IGNORE) {
+                count += countConformable(node.children[i], symbols, pos + 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A trie node: the sets that end here and the children by symbol.
+     **/
+    private static final class Node {
+        Node getChild(int symbol, boolean create) {
+            for (int i = 0; i < size; i++) {
+                if (symbols[i] == symbol)
+                    return children[i];
+            }
+            if (!create)
+                return null;
+
+            if (size == symbols.length) {
+                int[] newSymbols = new int[size * 2];
+                Node[] newChildren = new Node[size * 2];
+                System.arraycopy(symbols, 0, newSymbols, 0, size);
+                System.arraycopy(children, 0, newChildren, 0, size);
+                symbols = newSymbols;
+                children = newChildren;
+            }
+            Node child = new Node();
+            symbols[size] = symbol;
+            children[size] = child;
+            size++;
+            return child;
+        }
+
+        int[] symbols = new int[2];
+        Node[] children = new Node[2];
+        int size;
+        List sets;
+    }
+
+    private final Node _root = new Node();
+    private final List _sets = new ArrayList();
+}
@@ -49,7 +49,7 @@ public class CorrespondenceSet extends AbstractPersistent {
      **/
     public void setSet(String v) {
         _set = v;
-        _setCharacters = stringToCharacters(_set);
+        _symbols = null;
         
         setVarietyCount();
     }
@@ -71,7 +71,7 @@ public class CorrespondenceSet extends AbstractPersistent {
             if (_set.charAt(i) == '.')
                 cnt++;
         }
-        _varietyCount = new Integer(_setCharacters.size() - cnt);
+        _varietyCount = new Integer(SegmentSymbols.getLength(_set) - cnt);
     }
 
     /**
@@ -113,6 +113,35 @@ public class CorrespondenceSet extends AbstractPersistent {
         _order = v;
     }
 
+    /**
+     * Move all citations of this correspondence set to another set in
+     * one update.
+     * @param toSet Correspondence set to move the citations to.
+     **/
+    public void moveCitations(final CorrespondenceSet toSet) throws DatabaseException {
+        Database db = getDatabase();
+        long[] keys = new long[] { getID() };
+        long[] toKeys = new long[] { toSet.getID() };
+        CitationCounts.subtract(db, CitationCounts.SET, keys);
+        CitationCounts.subtract(db, CitationCounts.SET, toKeys);
+        db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "MOVE_SET_CITATIONS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, toSet.getID());
+                stmt.setLong(2, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return null;
+            }
+        });
+        CitationCounts.add(db, CitationCounts.SET, toKeys);
+    }
+
     /**
      * Get citations of this correspondence set.
      **/
@@ -143,7 +172,7 @@ public class CorrespondenceSet extends AbstractPersistent {
 
         // set attributes
         Integer varietyCount = getVarietyCount();
-        int glyphCount = _setCharacters.size();
+        int glyphCount = SegmentSymbols.getLength(getSet());
         element.setAttribute(
             "ignore-count",
             (varietyCount == null) ? "" : glyphCount - varietyCount.intValue() + "");
@@ -180,84 +209,98 @@ public class CorrespondenceSet extends AbstractPersistent {
     }
 
     /**
-     * Check to see if correspondence set is conformable (exclude ignores) with input set.
-     * @param set Value to compare to.
+     * Get the correspondence set as numbers from its view's segment
+     * symbol table.
      **/
-    public boolean isConformable(String set) {
-        List set1 = _setCharacters;
-        List set2 = stringToCharacters(set);
-
-        // check lengths
-        if (set1.size() != set2.size())
-            return false;
-
-        // check each character
-        for (int i = 0; i < set1.size(); i++) {
-            String ch1 = (String) set1.get(i);
-            String ch2 = (String) set2.get(i);
-            // skip ignores
-            if (ch1.equals(".") || ch2.equals("."))
-                continue;
-            // check character
-            if (ch1.equals(ch2))
-                continue;
-            return false;
+    public int[] getSymbols() {
+        if (_symbols == null) {
+            _symbols = getSegmentSymbols().encode(getSet());
         }
-        return true;
+        return _symbols;
     }
 
     /**
-     * Break set string to List of characters to account for grapheme clusters.
-     * @param val Value to convert.
+     * Get the segment symbol table of this correspondence set's view.
      **/
-    private List stringToCharacters(String val) {
-        List chars = new ArrayList();
-        String gc = "";
-        boolean gc_build = false;
-        for (int i = 0; i < val.length(); i++) {
-            String ch = val.substring(i, i + 1);
-            switch (val.charAt(i)) {
-                case Alignment.GRAPHEME_CLUSTER_START :
-                    gc_build = true;
-                    break;
-                case Alignment.GRAPHEME_CLUSTER_END :
-                    chars.add(gc);
-                    gc = "";
-                    gc_build = false;
-                    break;
-                default :
-                    if (!gc_build) {
-                        chars.add(ch);
-                    } else {
-                        // build grapheme cluster
-                        gc += ch;
-                    }
-                    break;
-            }
-        }
-        return chars;
+    public SegmentSymbols getSegmentSymbols() {
+        return _cluster.getProtosegment().getView().getSegmentSymbols();
+    }
+
+    /**
+     * Check to see if correspondence set is identical (include ignores) with input set.
+     * @param symbols Value to compare to, encoded with getSegmentSymbols().
+     **/
+    public boolean isIdentical(int[] symbols) {
+        return SegmentSymbols.isIdentical(getSymbols(), symbols);
+    }
+
+    /**
+     * Check to see if correspondence set is conformable (exclude ignores) with input set.
+     * @param symbols Value to compare to, encoded with getSegmentSymbols().
+     **/
+    public boolean isConformable(int[] symbols) {
+        return SegmentSymbols.isConformable(getSymbols(), symbols);
+    }
+
+    /**
+     * Check to see if correspondence set is conformable (exclude ignores) with input set.
+     * @param set Value to compare to.
+     **/
+    public boolean isConformable(String set) {
+        return isConformable(getSegmentSymbols().encode(set));
     }
 
     //---------------------------------------------------------------//
     // Persistent Methods
     //---------------------------------------------------------------//
 
+    /**
+     * Override of save to also maintain citation counts when the set
+     * moves to another cluster.
+     **/
+    public synchronized void save() throws DatabaseException {
+        boolean moved = !isNew() && _cluster.getID() != _clusterID;
+        if (moved) {
+            CitationCounts.subtract(getDatabase(), CitationCounts.SET, new long[] { getID() });
+        }
+        super.save();
+        if (moved) {
+            CitationCounts.add(getDatabase(), CitationCounts.SET, new long[] { getID() });
+        }
+        _clusterID = _cluster.getID();
+    }
+
+    /**
+     * Override of delete to also maintain citation counts.
+     **/
+    public synchronized void delete() throws DatabaseException {
+        CitationCounts.subtract(getDatabase(), CitationCounts.SET, new long[] { getID() });
+        super.delete();
+    }
+
     /**
      * Update the object based on a result set.
      **/
     public void updateObject(ResultSet rs) throws SQLException {
-        _clusterID = rs.getLong(2);
-        _set = rs.getString(3);
-        _setCharacters = stringToCharacters(_set);
-        _varietyCount = getInt(rs, 4);
-        _remarks = rs.getString(5);
-        _order = getInt(rs, 6);
+        updateObject(rs, 0);
+    }
+
+    /**
+     * Update the object based on a result set in which the correspondence
+     * set columns follow the given number of other columns.
+     **/
+    void updateObject(ResultSet rs, int offset) throws SQLException {
+        _clusterID = rs.getLong(offset + 2);
+        _set = rs.getString(offset + 3);
+        _symbols = null;
+        _varietyCount = getInt(rs, offset + 4);
+        _remarks = rs.getString(offset + 5);
+        _order = getInt(rs, offset + 6);
 
         // load cluster if null
         if (_cluster == null) {
             try {
-                _cluster = new Cluster(getDatabase(), _clusterID, null);
-                _cluster.revert();
+                _cluster = (Cluster) lookup(new Cluster(getDatabase(), _clusterID, null));
             } catch (DatabaseException e) {
                 e.printStackTrace();
                 throw new SQLException(e.getRootCause().getMessage());
@@ -334,6 +377,6 @@ public class CorrespondenceSet extends AbstractPersistent {
     private Integer _varietyCount;
     private String _remarks;
     private String _set;
-    private List _setCharacters;
+    private int[] _symbols;
     private Cluster _cluster;
 }
\ No newline at end of file
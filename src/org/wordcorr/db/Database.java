@@ -12,6 +12,9 @@ public interface Database {
     int STATUS_CURRENT       = 0;
     int STATUS_UNINITIALIZED = 1;
     int STATUS_OLD           = 2;
+
+    // rows fetched at a time by visitObjects()
+    int DEFAULT_FETCH_SIZE = 256;
 
     /**
      * Get the name of this database.
@@ -68,6 +71,16 @@ public interface Database {
      **/
     List retrieveObjects(RetrieveAllParameters params) throws DatabaseException;
 
+    /**
+     * Read objects of the given type one at a time, giving each to the
+     * visitor as it is read instead of collecting them in a list.
+     * Reading stops early if the visitor returns false.
+     * @param fetchSize The number of rows to fetch at a time, or 0 for
+     * the driver's default.
+     **/
+    void visitObjects(RetrieveAllParameters params, int fetchSize, ObjectVisitor visitor)
+        throws DatabaseException;
+
     /**
      * Add a database object.
      **/
@@ -88,6 +101,85 @@ public interface Database {
      **/
     void revertObject(DatabaseObject object) throws DatabaseException;
 
+    /**
+     * Begin a batch on the current thread. Until the matching
+     * commitBatch(), all work done by this thread, including save()
+     * calls, shares one connection and one transaction. Batches nest;
+     * only the outermost commitBatch() commits.
+     **/
+    void beginBatch() throws DatabaseException;
+
+    /**
+     * Commit the current thread's batch.
+     **/
+    void commitBatch() throws DatabaseException;
+
+    /**
+     * Roll back the current thread's batch, including any enclosing
+     * batches. Does nothing if no batch is in progress or if the
+     * innermost batch has committed, so it may be called unconditionally
+     * from a finally block.
+     **/
+    void rollbackBatch();
+
+    /**
+     * Get the object of the given type and id from the current thread's
+     * identity map, or null if no such object has been mapped. Each
+     * thread has its own bounded identity map, so mapped objects are not
+     * shared between threads.
+     **/
+    Persistent getMappedObject(Class cl, long id);
+
+    /**
+     * Add an object to the current thread's identity map. If an object
+     * of the same type and id is already mapped, that object is kept.
+     * @return The mapped object.
+     **/
+    Persistent mapObject(DatabaseObject object);
+
+    /**
+     * Remove all objects of the given type from the identity maps of all
+     * threads.
+     **/
+    void unmapObjects(Class cl);
+
+    /**
+     * Get the number of statements executed against this database.
+     **/
+    long getRoundTripCount();
+
+    /**
+     * Get the number of lookups answered by the identity map.
+     **/
+    long getMappedObjectHitCount();
+
+    /**
+     * Get the number of transactions rolled back on this database, so
+     * data read from other connections while they were open can be
+     * dropped.
+     **/
+    long getRollbackCount();
+
+    /**
+     * Get the per SQL key statistics of the statements executed against
+     * this database.
+     **/
+    QueryStatistics getQueryStatistics();
+
+    /**
+     * Get the number of worker threads, up to the given limit, that can
+     * read this database at once without running out of connections.
+     * Connections are kept back for the Swing and prefetch threads.
+     * @param connectionsPerWorker The most connections a worker holds at
+     * once, counting nested reads.
+     **/
+    int getWorkerThreads(int limit, int connectionsPerWorker);
+
+    /**
+     * Get the segment symbol table of a view's correspondence sets.
+     **/
+    SegmentSymbols getSegmentSymbols(long viewID);
+
     /**
      * Link an object to other objects with an optional order.
      **/
@@ -34,6 +34,7 @@ public class Datum extends AbstractPersistent {
      **/
     public void setVariety(Variety v) {
         _variety = v;
+        setDirty();
     }
 
     /**
@@ -142,23 +143,7 @@ public class Datum extends AbstractPersistent {
         if (vector == null) {
             return raw;
         }
-
-        StringBuffer ret = new StringBuffer();
-        int rawIndex = 0;
-        for (int i = 0; i < vector.length(); i++) {
-            if (vector.charAt(i) == Alignment.HOLD_SYMBOL) {
-                if (rawIndex < raw.length()) {
-                    ret.append(raw.charAt(rawIndex++));
-                }
-            } else {
-                ret.append(vector.charAt(i));
-            }
-        }
-
-        if (rawIndex < raw.length()) {
-            ret.append(raw.substring(rawIndex));
-        }
-        return ret.toString();
+        return AlignmentVector.valueOf(vector).fuse(raw);
     }
 
     //---------------------------------------------------------------//
@@ -166,7 +151,8 @@ public class Datum extends AbstractPersistent {
     //---------------------------------------------------------------//
 
     /**
-     * Override of save to also extract out alignment.
+     * Override of save to also extract out alignment, and to refresh the
+     * grapheme clusters of its alignments when the datum changes.
      **/
     public synchronized void save() throws DatabaseException {
         if (getID() == UNDEFINED_ID && !_imported) {
@@ -194,8 +180,14 @@ public class Datum extends AbstractPersistent {
 	        alignment.setGroup(originalView.getGroup("?", _entry));
 	        alignment.save();
         } else {
-        	super.save();
+            boolean renamed = _savedName != null && !_savedName.equals(getName());
+            super.save();
+            if (renamed) {
+                // grapheme clusters are read from the datum
+                GraphemeClusters.update(this);
+            }
         }
+        _savedName = getName();
     }
 
     /**
@@ -203,13 +195,13 @@ public class Datum extends AbstractPersistent {
      **/
     public void updateObject(ResultSet rs) throws SQLException {
         setName(rs.getString(2));
+        _savedName = getName();
         long vid = rs.getLong(3);
         if (rs.wasNull()) {
             _variety = null;
         } else {
             try {
-                _variety = new Variety(getDatabase(), vid, _entry.getCollection());
-                _variety.revert();
+                _variety = (Variety) lookup(new Variety(getDatabase(), vid, _entry.getCollection()));
             } catch (DatabaseException e) {
                 e.printStackTrace();
                 throw new SQLException(e.getRootCause().getMessage());
@@ -272,6 +264,7 @@ public class Datum extends AbstractPersistent {
 
     private boolean _deleted = false;
     private boolean _imported = false;
+    private String _savedName;
     private String _specialSemantics;
     private String _remarks;
     private Variety _variety;
@@ -138,9 +138,25 @@ public class Entry extends AbstractPersistent {
      * Delete this object.
      **/
     public void delete() throws DatabaseException {
+        // citations of the entry's groups are deleted with it
+        CitationCounts.subtract(getDatabase(), CitationCounts.ENTRY, new long[] { getID() });
         getDatabase().deleteObject(this);
     }
 
+    /**
+     * Make another instance of this entry with its values but not its
+     * data, so that the data can be read on another thread without
+     * touching this instance.
+     **/
+    public Entry copyEntry() {
+        Entry entry = new Entry(getDatabase(), getID(), _collection);
+        entry.setName(getName());
+        entry._gloss2 = _gloss2;
+        entry._entryNum = _entryNum;
+        entry.clearDirty();
+        return entry;
+    }
+
     /**
      * Make a datum object. This does not add anything to the
      * database. The returned object must be saved to be made
@@ -161,19 +177,27 @@ public class Entry extends AbstractPersistent {
         super.save();
 
         if (!_imported) {
-            // datums are not deleted by replacing _data list
-            // but by flagging each datum as deleted to allow access.
-            int count = 0;
-            for (Iterator it = getData().iterator(); it.hasNext(); count++) {
-                Datum datum = (Datum) it.next();
-                if (datum.isDeleted()) {
-                    datum.delete();
-                } else {
-                    datum.save();
+            // data never read has nothing to save
+            if (_dataLoaded) {
+                // datums are not deleted by replacing _data list
+                // but by flagging each datum as deleted to allow access.
+                boolean reload = false;
+                for (Iterator it = _data.iterator(); it.hasNext();) {
+                    Datum datum = (Datum) it.next();
+                    if (datum.isDeleted()) {
+                        datum.delete();
+                        it.remove();
+                    } else {
+                        // new or changed datums may change the order
+                        reload |= datum.isNew() || datum.isDirty();
+                        datum.save();
+                    }
+                }
+                // update data _list.
+                if (reload) {
+                    loadData();
                 }
             }
-            // update data _list.
-            loadData();
             clearDirty();
         }
     }
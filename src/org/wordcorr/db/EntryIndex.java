@@ -0,0 +1,125 @@
+package org.wordcorr.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Keys and entry numbers of a list of entries, in entry number order.
+ * The index is read without building the entries, so a long list can be
+ * sized and searched up front and its entries read as they are needed.
+ **/
+public final class EntryIndex {
+
+    /**
+     * Constructor.
+     **/
+    EntryIndex() {}
+
+    /**
+     * Get the number of entries.
+     **/
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Get the key of the entry at the given row.
+     **/
+    public long getKey(int row) {
+        return _keys[row];
+    }
+
+    /**
+     * Check whether the entry at the given row has an entry number.
+     **/
+    public boolean hasEntryNum(int row) {
+        return !_nullNums[row];
+    }
+
+    /**
+     * Get the entry number of the entry at the given row, or 0 if it
+     * has none.
+     **/
+    public int getEntryNum(int row) {
+        return _nums[row];
+    }
+
+    /**
+     * Get the row of the entry with the given key, or -1 if it is not
+     * in the index.
+     **/
+    public int indexOf(long key) {
+        for (int i = 0; i < _size; i++) {
+            if (_keys[i] == key)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read an entry index.
+     * @param key Key of the collection or view, as the query takes.
+     **/
+    static EntryIndex read(Database db, final String sqlkey, final long key)
+        throws DatabaseException {
+        final EntryIndex index = new EntryIndex();
+        db.visitObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return sqlkey;
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, key);
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                // rows are read into the index
+                index.add(rs);
+                return null;
+            }
+        }, Database.DEFAULT_FETCH_SIZE, new ObjectVisitor() {
+            public boolean visit(Object object) {
+                return true;
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Add the current row of an entry index query.
+     **/
+    void add(ResultSet rs) throws SQLException {
+        if (_size == _keys.length) {
+            grow();
+        }
+        _keys[_size] = rs.getLong(1);
+        _nums[_size] = rs.getInt(2);
+        _nullNums[_size] = rs.wasNull();
+        _size++;
+    }
+
+    /**
+     * Double the capacity of the columns.
+     **/
+    private void grow() {
+        int capacity = _keys.length * 2;
+        long[] keys = new long[capacity];
+        int[] nums = new int[capacity];
+        boolean[] nullNums = new boolean[capacity];
+        System.arraycopy(_keys, 0, keys, 0, _size);
+        System.arraycopy(_nums, 0, nums, 0, _size);
+        System.arraycopy(_nullNums, 0, nullNums, 0, _size);
+        _keys = keys;
+        _nums = nums;
+        _nullNums = nullNums;
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int _size;
+    private long[] _keys = new long[INITIAL_CAPACITY];
+    private int[] _nums = new int[INITIAL_CAPACITY];
+    private boolean[] _nullNums = new boolean[INITIAL_CAPACITY];
+}
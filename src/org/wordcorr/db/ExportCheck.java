@@ -0,0 +1,91 @@
+package org.wordcorr.db;
+
+import java.io.File;
+import java.util.*;
+
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+/**
+ * Checks that the annotations XML export writes for each view, read with
+ * one cursor over the view, match those read entry by entry with
+ * View.getAlignments(). Every view of every collection in a local
+ * database is checked; the exit status is 1 if any view differs.
+ **/
+public class ExportCheck {
+
+    public static void main(String[] args) throws DatabaseException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Use: java " + ExportCheck.class.getName() + " database");
+        }
+        Database db = DatabaseFactory.openLocalDatabase(new File(args[0]));
+        if (db.test() != Database.STATUS_CURRENT) {
+            System.err.println("Open the database in WordCorr first to bring it up to date.");
+            System.exit(2);
+        }
+
+        int views = 0;
+        int failed = 0;
+        for (Iterator it = db.getUsers().iterator(); it.hasNext();) {
+            User user = (User) it.next();
+            for (Iterator it2 = user.getCollections().iterator(); it2.hasNext();) {
+                WordCollection collection = (WordCollection) it2.next();
+                for (Iterator it3 = collection.getViews().iterator(); it3.hasNext();) {
+                    views++;
+                    if (!check((View) it3.next())) {
+                        failed++;
+                    }
+                }
+            }
+        }
+        System.out.println(views + " views checked, " + failed + " differ.");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Compare the exported annotations of a view with those read entry
+     * by entry, and report the result.
+     * @return true if they match.
+     **/
+    private static boolean check(View view) throws DatabaseException {
+        final XMLOutputter out = new XMLOutputter(Format.getCompactFormat());
+        final List exported = new ArrayList();
+        view.visitAnnotations(new ObjectVisitor() {
+            public boolean visit(Object object) {
+                exported.add(out.outputString(((Alignment) object).getElement()));
+                return true;
+            }
+        });
+
+        int count = 0;
+        String difference = null;
+        for (Iterator it = view.getCollection().getEntries().iterator(); it.hasNext();) {
+            Entry entry = (Entry) it.next();
+            for (Iterator it2 = view.getAlignments(entry).iterator(); it2.hasNext();) {
+                Alignment alignment = (Alignment) it2.next();
+                // unannotated datums are not exported
+                if (alignment.getGroup() == null) {
+                    continue;
+                }
+                String expected = out.outputString(alignment.getElement());
+                if (difference == null) {
+                    if (count >= exported.size()) {
+                        difference = "missing " + expected;
+                    } else if (!expected.equals(exported.get(count))) {
+                        difference = "expected " + expected + " but got " + exported.get(count);
+                    }
+                }
+                count++;
+            }
+        }
+        if (difference == null && count < exported.size()) {
+            difference = "extra " + exported.get(count);
+        }
+
+        System.out.println(
+            view.getCollection().getName() + " / " + view.getName() + ": "
+                + exported.size() + " exported, " + count + " read by entry"
+                + ((difference == null) ? ", same" : ", first difference: " + difference));
+        return difference == null;
+    }
+}
@@ -0,0 +1,196 @@
+package org.wordcorr.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Computes the Frantz strength of a view's tabulated groups. All of the
+ * view's citations are loaded with one query, cluster and protosegment
+ * citation counts are tallied from them in memory, and the groups are
+ * saved in a single batch.
+ **/
+class FrantzStrength {
+
+    /**
+     * Constructor.
+     **/
+    FrantzStrength(View view) {
+        _view = view;
+    }
+
+    /**
+     * Compute Frantz strength for tabulated groups in view and update.
+     * @return The Frantz strength group count.
+     **/
+    public int update() throws DatabaseException {
+        int frantzN = _view.getFrantzStrengthGroupCount();
+
+        // N minimum set to 50
+        double n =
+            Math.rint(
+                ((Math.log(((frantzN < 50) ? 50 : frantzN) / 100.) / Math.log(10.)) * 21) + 9);
+
+        // index groups by id
+        Map groups = new HashMap();
+        for (Iterator it = _view.getTabulatedThresholdGroups().iterator(); it.hasNext();) {
+            Group group = (Group) it.next();
+            groups.put(new Long(group.getID()), group);
+        }
+
+        // load citations and count them by cluster and protosegment
+        List citations = getCitations();
+        Map clusterCounts = new HashMap();
+        Map protoCounts = new HashMap();
+        for (Iterator it = citations.iterator(); it.hasNext();) {
+            CitationRow row = (CitationRow) it.next();
+            count(clusterCounts, row.clusterID);
+            count(protoCounts, row.protoID);
+        }
+
+        // accumulate each group's citations, which arrive in position order
+        List changed = new ArrayList();
+        Group group = null;
+        int pcount = 0;
+        double acluster = 0.;
+        double aproto = 0.;
+        StringBuffer reconstruction = new StringBuffer();
+        boolean allCitationsWithResidue = true;
+        for (Iterator it = citations.iterator(); it.hasNext();) {
+            CitationRow row = (CitationRow) it.next();
+            if (group == null || group.getID() != row.groupID) {
+                if (group != null) {
+                    setStrength(group, pcount, acluster, aproto, reconstruction,
+                        allCitationsWithResidue);
+                    changed.add(group);
+                }
+
+                // init accumulators
+                group = (Group) groups.get(new Long(row.groupID));
+                pcount = 0;
+                acluster = 0.;
+                aproto = 0.;
+                reconstruction.setLength(0);
+                allCitationsWithResidue = true;
+            }
+            if (group == null) {
+                // not a tabulated group
+                continue;
+            }
+
+            pcount++;
+            reconstruction.append(row.protosegment);
+            acluster = getFrantzAccumulator(getCount(clusterCounts, row.clusterID), acluster, n);
+            aproto = getFrantzAccumulator(getCount(protoCounts, row.protoID), aproto, n);
+
+            // check residue protosegments
+            if (!"RES".equals(row.zoneAbbreviation))
+                allCitationsWithResidue = false;
+        }
+        if (group != null) {
+            setStrength(group, pcount, acluster, aproto, reconstruction,
+                allCitationsWithResidue);
+            changed.add(group);
+        }
+
+        // save groups together
+        Database db = _view.getDatabase();
+        db.beginBatch();
+        try {
+            for (Iterator it = changed.iterator(); it.hasNext();) {
+                ((Group) it.next()).save();
+            }
+            db.commitBatch();
+        } finally {
+            db.rollbackBatch();
+        }
+        return frantzN;
+    }
+
+    /**
+     * Get the view's citations ordered by group and position.
+     **/
+    private List getCitations() throws DatabaseException {
+        return _view.getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_FRANTZ_STRENGTH_CITATIONS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, _view.getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                CitationRow row = new CitationRow();
+                row.groupID = rs.getLong(1);
+                row.clusterID = rs.getLong(2);
+                row.protoID = rs.getLong(3);
+                row.protosegment = rs.getString(4);
+                row.zoneAbbreviation = rs.getString(5);
+                return row;
+            }
+        });
+    }
+
+    /**
+     * Set the computed strength on a group.
+     **/
+    private static void setStrength(Group group, int pcount, double acluster,
+        double aproto, StringBuffer reconstruction, boolean allCitationsWithResidue) {
+        group.setReconstruction(reconstruction.toString());
+        group.setFrantzCluster(acluster / pcount);
+        group.setFrantzProtosegment(aproto / pcount);
+        group.setAllCitationsWithResidue(allCitationsWithResidue);
+    }
+
+    /**
+     * Increment the count for an id.
+     **/
+    private static void count(Map counts, long id) {
+        Long key = new Long(id);
+        int[] count = (int[]) counts.get(key);
+        if (count == null) {
+            counts.put(key, new int[] { 1 });
+        } else {
+            count[0]++;
+        }
+    }
+
+    /**
+     * Get the count for an id.
+     **/
+    private static double getCount(Map counts, long id) {
+        return ((int[]) counts.get(new Long(id)))[0];
+    }
+
+    /**
+     * Compute Frantz strenth accumulator.
+     **/
+    static double getFrantzAccumulator(double c, double a, double n) {
+        double acc = a;
+        if (c >= n)
+            acc += 1.0;
+        if ((c < n) && (c > 2))
+            acc += c / n;
+        if (c == 2.)
+            acc -= 0.5;
+        if (c == 1.)
+            acc -= 1.0;
+        return acc;
+    }
+
+    /**
+     * One citation with its cluster and protosegment.
+     **/
+    private static final class CitationRow {
+        long groupID;
+        long clusterID;
+        long protoID;
+        String protosegment;
+        String zoneAbbreviation;
+    }
+
+    private final View _view;
+}
@@ -0,0 +1,171 @@
+package org.wordcorr.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Maintains the GRAPHEME_CLUSTER table, which lists the distinct grapheme
+ * clusters each alignment tags in its datum. An alignment's rows are
+ * replaced when its vector or its datum changes, and go with it when it
+ * is deleted, so a view's clusters can be listed and undefined without
+ * scanning its vectors.
+ **/
+final class GraphemeClusters {
+
+    private GraphemeClusters() {}
+
+    /**
+     * Check whether a vector tags any grapheme clusters.
+     **/
+    static boolean hasGraphemeClusters(String vector) {
+        return vector != null && vector.indexOf(Alignment.GRAPHEME_CLUSTER_START) >= 0;
+    }
+
+    /**
+     * Replace the rows of a saved alignment.
+     **/
+    static void update(Alignment alignment) throws DatabaseException {
+        write(alignment.getDatabase(),
+            alignment.getID(),
+            alignment.getView().getID(),
+            alignment.getAlignmentVector(),
+            alignment.getDatum().getName(),
+            true);
+    }
+
+    /**
+     * Replace the rows of the alignments of a saved datum.
+     **/
+    static void update(final Datum datum) throws DatabaseException {
+        Database db = datum.getDatabase();
+        List alignments = db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_DATUM_GRAPHEME_CLUSTER_ALIGNMENTS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, datum.getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return new Object[] {
+                    new Long(rs.getLong(1)), new Long(rs.getLong(2)), rs.getString(3)};
+            }
+        });
+
+        for (Iterator it = alignments.iterator(); it.hasNext();) {
+            Object[] row = (Object[]) it.next();
+            write(db,
+                ((Long) row[0]).longValue(),
+                ((Long) row[1]).longValue(),
+                AlignmentVector.valueOf((String) row[2]),
+                datum.getName(),
+                true);
+        }
+    }
+
+    /**
+     * Rebuild the table from every alignment's vector and datum.
+     **/
+    static void rebuild(Database db) throws DatabaseException {
+        db.beginBatch();
+        try {
+            execute(db, "DELETE_ALL_GRAPHEME_CLUSTERS", new Object[0]);
+            List alignments = db.retrieveObjects(new RetrieveAllParameters() {
+                public String getRetrieveAllSQLKey() {
+                    return "GET_ALL_GRAPHEME_CLUSTER_ALIGNMENTS";
+                }
+
+                public void setRetrieveAllParameters(PreparedStatement stmt)
+                    throws SQLException {}
+
+                public Object createObject(Database db, ResultSet rs) throws SQLException {
+                    return new Object[] {
+                        new Long(rs.getLong(1)),
+                        new Long(rs.getLong(2)),
+                        rs.getString(3),
+                        rs.getString(4)};
+                }
+            });
+
+            for (Iterator it = alignments.iterator(); it.hasNext();) {
+                Object[] row = (Object[]) it.next();
+                write(db,
+                    ((Long) row[0]).longValue(),
+                    ((Long) row[1]).longValue(),
+                    AlignmentVector.valueOf((String) row[2]),
+                    (String) row[3],
+                    false);
+            }
+            db.commitBatch();
+        } finally {
+            db.rollbackBatch();
+        }
+    }
+
+    /**
+     * Remove a grapheme cluster of a view from every alignment.
+     **/
+    static void remove(View view, String graphemeCluster) throws DatabaseException {
+        execute(view.getDatabase(),
+            "DELETE_VIEW_GRAPHEME_CLUSTER",
+            new Object[] { new Long(view.getID()), graphemeCluster });
+    }
+
+    /**
+     * Write the rows of an alignment.
+     * @param replace Delete the alignment's existing rows first.
+     **/
+    private static void write(
+        Database db,
+        long alignmentID,
+        long viewID,
+        AlignmentVector vector,
+        String datum,
+        boolean replace)
+        throws DatabaseException {
+        Long alignmentKey = new Long(alignmentID);
+        if (replace) {
+            execute(db, "DELETE_ALIGNMENT_GRAPHEME_CLUSTERS", new Object[] { alignmentKey });
+        }
+
+        Set clusters = new HashSet();
+        Long viewKey = new Long(viewID);
+        for (int i = 0; i < vector.getGraphemeClusterCount(); i++) {
+            String cluster = vector.getGraphemeCluster(datum, i);
+            if (clusters.add(cluster)) {
+                execute(db, "ADD_GRAPHEME_CLUSTER", new Object[] { alignmentKey, viewKey, cluster });
+            }
+        }
+    }
+
+    /**
+     * Run a table update.
+     **/
+    private static void execute(Database db, final String sqlkey, final Object[] params)
+        throws DatabaseException {
+        db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return sqlkey;
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                for (int i = 0; i < params.length; i++) {
+                    if (params[i] instanceof Long) {
+                        stmt.setLong(i + 1, ((Long) params[i]).longValue());
+                    } else {
+                        stmt.setString(i + 1, (String) params[i]);
+                    }
+                }
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return null;
+            }
+        });
+    }
+}
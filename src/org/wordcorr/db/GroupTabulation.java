@@ -0,0 +1,301 @@
+package org.wordcorr.db;
+
+import java.util.*;
+
+/**
+ * The correspondence sets of a group, each with the protosegment and
+ * environment to tabulate it under.
+ **/
+public final class GroupTabulation {
+
+    /**
+     * Chooses which of a variety's alignments in a group to tabulate.
+     **/
+    public interface AlignmentChooser {
+
+        /**
+         * Choose an alignment.
+         * @param alignments The variety's alignments in the group, more
+         * than one.
+         * @return the alignment to use, or null to leave the group.
+         **/
+        Alignment choose(Group group, Variety variety, List alignments);
+    }
+
+    /**
+     * Build the correspondence sets of a group from an entry's
+     * alignments, one for each aligned position, with an ignore for each
+     * view member with no alignment in the group. Sets with fewer
+     * segments than the view's threshold are left out.
+     * @return the sets, or null if the group's alignments differ in
+     * length or the chooser left the group.
+     **/
+    public static List getCorrespondenceSets(
+        View view,
+        Group group,
+        List alignments,
+        AlignmentChooser chooser) {
+        List sets = new ArrayList();
+        boolean first = true;
+        int firstGroupsSkipped = 0;
+        int len = 0;
+        for (Iterator it = view.getMembers().iterator(); it.hasNext();) {
+            Variety variety = (Variety) it.next();
+            List found = new ArrayList();
+            for (Iterator ita = alignments.iterator(); ita.hasNext();) {
+                Alignment alignment = (Alignment) ita.next();
+                if (alignment.getGroup() != null
+                    && group.getID() == alignment.getGroup().getID()
+                    && variety.getID() == alignment.getDatum().getVariety().getID()) {
+                    found.add(alignment);
+                }
+            }
+            Alignment alignment = null;
+            if (found.size() == 1) {
+                alignment = (Alignment) found.get(0);
+            } else if (found.size() > 1) {
+                alignment = chooser.choose(group, variety, found);
+                if (alignment == null)
+                    return null;
+            }
+
+            if (first && alignment == null) {
+                ++firstGroupsSkipped;
+            } else if (first) {
+                first = false;
+                List alignedDatum = alignment.getMetatheticallyAlignedDatumList();
+                len = alignedDatum.size();
+                for (int j = 0; j < len; j++) {
+                    StringBuffer set = new StringBuffer();
+                    for (int k = 0; k < firstGroupsSkipped; k++) {
+                        set.append('.');
+                    }
+                    set.append((String) alignedDatum.get(j));
+                    sets.add(set);
+                }
+            } else if (alignment == null) {
+                // no alignment for variety, use ignores
+                for (int j = 0; j < len; j++) {
+                    ((StringBuffer) sets.get(j)).append('.');
+                }
+            } else {
+                List alignedDatum = alignment.getMetatheticallyAlignedDatumList();
+                if (len != alignedDatum.size())
+                    return null;
+                for (int j = 0; j < len; j++) {
+                    ((StringBuffer) sets.get(j)).append((String) alignedDatum.get(j));
+                }
+            }
+        }
+
+        // drop sets below the threshold
+        int threshold = view.getThresholdValue();
+        List ret = new ArrayList();
+        for (Iterator it = sets.iterator(); it.hasNext();) {
+            String set = it.next().toString();
+            int segments = 0;
+            for (int i = 0; i < set.length(); i++) {
+                if (set.charAt(i) != '.')
+                    segments++;
+            }
+            if (segments >= threshold)
+                ret.add(set);
+        }
+        return ret;
+    }
+
+    /**
+     * Constructor.
+     **/
+    public GroupTabulation(View view, Group group) {
+        _view = view;
+        _group = group;
+    }
+
+    /**
+     * Get the group.
+     **/
+    public Group getGroup() {
+        return _group;
+    }
+
+    /**
+     * Add the next correspondence set.
+     **/
+    public void addSet(
+        String set,
+        String remarks,
+        Protosegment protosegment,
+        String environment) {
+        _sets.add(set);
+        _remarks.add(remarks);
+        _protosegments.add(protosegment);
+        _environments.add(environment);
+    }
+
+    /**
+     * Add each correspondence set to a cluster with an identical or
+     * conformable set, or to a new cluster, and mark the group done.
+     * The clusters of each protosegment involved are read once and
+     * matched in memory.
+     **/
+    public void tabulate() throws DatabaseException {
+        // candidate clusters by protosegment, and their sets, indexed
+        // when first matched against
+        Map clusterSets = new HashMap();
+        Map clusterIndexes = new HashMap();
+        Map protosegmentClusters = new HashMap();
+        for (Iterator it = _protosegments.iterator(); it.hasNext();) {
+            Protosegment protosegment = (Protosegment) it.next();
+            Long key = new Long(protosegment.getID());
+            if (!protosegmentClusters.containsKey(key)) {
+                Map sets = protosegment.getClusterCorrespondenceSets();
+                protosegmentClusters.put(key, new ArrayList(sets.keySet()));
+                clusterSets.putAll(sets);
+            }
+        }
+        Set reorder = new HashSet();
+        SegmentSymbols symbolTable = _view.getSegmentSymbols();
+
+        // process each correspondence set
+        dataSetLoop : for (int i = 0; i < _sets.size(); i++) {
+            String set = (String) _sets.get(i);
+            String remarks = (String) _remarks.get(i);
+            Protosegment protosegment = (Protosegment) _protosegments.get(i);
+            String environment = (String) _environments.get(i);
+            int[] symbols = symbolTable.encode(set);
+            Integer pos = new Integer(i + 1);
+            List clusters = getClusters(protosegmentClusters, protosegment);
+
+            // process clusters with same environment
+            clusterLoop : for (Iterator itc = new ArrayList(clusters).iterator();
+                itc.hasNext();
+                ) {
+                Cluster cluster = (Cluster) itc.next();
+                if (!cluster.getEnvironment().equals(environment))
+                    continue clusterLoop;
+                ConformabilityIndex index = (ConformabilityIndex) clusterIndexes.get(cluster);
+                if (index == null) {
+                    index = new ConformabilityIndex((List) clusterSets.remove(cluster));
+                    clusterIndexes.put(cluster, index);
+                }
+                if (index.isEmpty()) {
+                    // delete bad cluster
+                    clusters.remove(cluster);
+                    clusterIndexes.remove(cluster);
+                    cluster.delete();
+                    continue clusterLoop;
+                }
+
+                // check for identical set (include ignores)
+                CorrespondenceSet cset = index.findIdentical(symbols);
+                if (cset != null) {
+                    // append remarks
+                    cset.appendRemarks(remarks);
+                    cset.save();
+                    // add citation
+                    Citation citation = cset.makeCitation(_group);
+                    citation.setPosition(pos);
+                    citation.save();
+                    continue dataSetLoop;
+                }
+                // process conformable (exclude ignores) if identical not found
+                if (index.isConformable(symbols)) {
+                    index.add(addCorrespondenceSetAndCitation(cluster, set, remarks, pos));
+                    continue dataSetLoop;
+                }
+            }
+
+            // create new cluster if no matches found
+            Cluster cluster = protosegment.makeCluster();
+            cluster.setEnvironment(environment);
+            cluster.setOrder(new Integer(getMaxClusterOrder(clusters) + 1));
+            cluster.save();
+            clusters.add(cluster);
+            ConformabilityIndex index = new ConformabilityIndex();
+            clusterIndexes.put(cluster, index);
+            reorder.add(protosegment);
+            index.add(addCorrespondenceSetAndCitation(cluster, set, remarks, pos));
+        }
+
+        // number the clusters of protosegments with new clusters
+        // from one
+        for (Iterator it = reorder.iterator(); it.hasNext();) {
+            List clusters =
+                new ArrayList(getClusters(protosegmentClusters, (Protosegment) it.next()));
+            Collections.sort(clusters, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    int order1 = ((Cluster) o1).getOrder().intValue();
+                    int order2 = ((Cluster) o2).getOrder().intValue();
+                    return (order1 < order2) ? -1 : (order1 > order2) ? 1 : 0;
+                }
+            });
+            int id = 0;
+            for (Iterator itc = clusters.iterator(); itc.hasNext();) {
+                Cluster cluster = (Cluster) itc.next();
+                if (cluster.getOrder().intValue() != ++id) {
+                    cluster.setOrder(new Integer(id));
+                    cluster.save();
+                }
+            }
+        }
+
+        // set group as done
+        _group.setDone(true);
+        _group.save();
+    }
+
+    /**
+     * Get the list of a protosegment's clusters from a map of lists,
+     * adding an empty list if there is none.
+     **/
+    private static List getClusters(Map protosegmentClusters, Protosegment protosegment) {
+        Long key = new Long(protosegment.getID());
+        List clusters = (List) protosegmentClusters.get(key);
+        if (clusters == null) {
+            clusters = new ArrayList();
+            protosegmentClusters.put(key, clusters);
+        }
+        return clusters;
+    }
+
+    /**
+     * Get the highest order of the given clusters, or 0 if there are none.
+     **/
+    private static int getMaxClusterOrder(List clusters) {
+        int max = 0;
+        for (Iterator it = clusters.iterator(); it.hasNext();) {
+            Integer order = ((Cluster) it.next()).getOrder();
+            if (order != null && order.intValue() > max)
+                max = order.intValue();
+        }
+        return max;
+    }
+
+    private CorrespondenceSet addCorrespondenceSetAndCitation(
+        Cluster cluster,
+        String set,
+        String remarks,
+        Integer pos)
+        throws DatabaseException {
+        // create correspondence set
+        CorrespondenceSet correspondenceSet = cluster.makeCorrespondenceSet();
+        correspondenceSet.setOrder(pos);
+        correspondenceSet.setSet(set);
+        correspondenceSet.setRemarks(remarks);
+        correspondenceSet.save();
+
+        // create citation
+        Citation citation = correspondenceSet.makeCitation(_group);
+        citation.setPosition(pos);
+        citation.save();
+        return correspondenceSet;
+    }
+
+    private final View _view;
+    private final Group _group;
+    private final List _sets = new ArrayList();
+    private final List _remarks = new ArrayList();
+    private final List _protosegments = new ArrayList();
+    private final List _environments = new ArrayList();
+}
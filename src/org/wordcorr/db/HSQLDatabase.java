@@ -4,8 +4,11 @@ import java.io.*;
 import java.lang.reflect.Constructor;
 import java.sql.*;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.dbcp.*;
 import org.apache.commons.pool.impl.GenericObjectPool;
+import org.wordcorr.AppProperties;
 import org.wordcorr.sqlrunner.SQLRunner;
 
 /**
@@ -14,6 +17,28 @@ import org.wordcorr.sqlrunner.SQLRunner;
  **/
 class HSQLDatabase implements Database {
 
+    /**
+     * Current schema version. Each version above 0 has a matching
+     * hsql_migrate_&lt;version&gt;.sql script.
+     **/
+    static final int SCHEMA_VERSION = 3;
+
+    // connections kept back from worker pools for the Swing thread and
+    // the prefetch thread, each of which may nest reads
+    private static final int RESERVED_CONNECTIONS = 6;
+
+    // wait for a free connection before failing instead of blocking forever
+    private static final long CONNECTION_WAIT_MILLIS = 60000;
+
+    // statements of a migration script that an interrupted run may have
+    // applied already
+    private static final Pattern CREATE_INDEX =
+        Pattern.compile("CREATE INDEX (\\w+) ON (\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ADD_COLUMN =
+        Pattern.compile("ALTER TABLE (\\w+) ADD COLUMN (\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DROP_TABLE =
+        Pattern.compile("DROP TABLE (\\w+)", Pattern.CASE_INSENSITIVE);
+
     private static final Properties _props = new Properties();
     private static final Class[] PERSISTENT_CONS_ARGS =
         { Database.class, Long.TYPE };
@@ -33,18 +58,30 @@ class HSQLDatabase implements Database {
         _file = file;
         try {
             GenericObjectPool pool = new GenericObjectPool(null);
+            pool.setMaxActive(getConnectionPoolSize());
+            pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+            pool.setMaxWait(CONNECTION_WAIT_MILLIS);
             DriverManagerConnectionFactory factory =
                 new DriverManagerConnectionFactory(
                     "jdbc:hsqldb:" + _file.getAbsolutePath(),
                     "sa",
                     "");
+            int poolSize = getStatementPoolSize();
+            _poolStatements = poolSize > 0;
             PoolableConnectionFactory conFactory =
-                new PoolableConnectionFactory(factory, pool, null, null, false, true);
+                new PoolableConnectionFactory(
+                    factory,
+                    pool,
+                    _poolStatements ? new StatementPoolFactory(poolSize, _statistics) : null,
+                    null,
+                    false,
+                    true);
             PoolingDriver driver = new PoolingDriver();
             driver.registerPool(file.getAbsolutePath(), pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
+        _statistics.register(file.getAbsolutePath());
     }
 
     /**
@@ -78,13 +115,10 @@ class HSQLDatabase implements Database {
             }
 
             // check for the current version
-            try {
-                stmt = con.createStatement();
-                stmt.executeQuery(_props.getProperty("TEST_CURRENT_DATABASE"));
-            } catch (SQLException e) {
+            if (getSchemaVersion(con) < SCHEMA_VERSION) {
                 return STATUS_OLD;
             }
-
+            warmStatements(con);
             return STATUS_CURRENT;
         } finally {
             cleanup(stmt, con);
@@ -97,29 +131,254 @@ class HSQLDatabase implements Database {
     public void init() throws DatabaseException {
         try {
             // create tables
-            InputStream in = getClass().getResourceAsStream("/hsql_create_tables.sql");
-            SQLRunner sql = new SQLRunner(getConnection());
-            sql.setIn(new BufferedReader(new InputStreamReader(in)));
-            StringWriter wrt = new StringWriter();
-            sql.setOut(new PrintWriter(wrt));
-            sql.interact();
+            runScript("/hsql_create_tables.sql");
 
             // initialize db
-            in = getClass().getResourceAsStream("/hsql_initialize.sql");
-            sql = new SQLRunner(getConnection());
-            sql.setIn(new BufferedReader(new InputStreamReader(in)));
-            wrt = new StringWriter();
-            sql.setOut(new PrintWriter(wrt));
-            sql.interact();
+            runScript("/hsql_initialize.sql");
+        } catch (Exception e) {
+            throw new DatabaseException(e);
+        }
+
+        // bring the new tables up to the current schema version
+        migrate();
+    }
+
+    /**
+     * Migrate this database to the current schema version by running,
+     * in order, each hsql_migrate_&lt;version&gt;.sql script newer than
+     * the version recorded in the SCHEMA_VERSION table.
+     **/
+    public void migrate() throws DatabaseException {
+        Connection con = null;
+        PreparedStatement stmt = null;
+        try {
+            con = getConnection();
+            int version = getSchemaVersion(con);
+            while (version < SCHEMA_VERSION) {
+                version++;
+                runScript(readMigration(con, "/hsql_migrate_" + version + ".sql"));
+                migrateData(version);
+
+                // record the migration
+                stmt = con.prepareStatement(_props.getProperty("SET_SCHEMA_VERSION"));
+                stmt.setInt(1, version);
+                stmt.executeUpdate();
+                stmt.close();
+                stmt = null;
+            }
+            warmStatements(con);
         } catch (Exception e) {
             throw new DatabaseException(e);
+        } finally {
+            cleanup(stmt, con);
+        }
+    }
+
+    /**
+     * Fill the tables of a migration from existing rows where that
+     * takes more than SQL.
+     **/
+    private void migrateData(int version) throws DatabaseException {
+        switch (version) {
+            case 3 :
+                GraphemeClusters.rebuild(this);
+                break;
+            default :
+                break;
+        }
+    }
+
+    /**
+     * Get the most connections open at once, from the ConnectionPoolSize
+     * application property.
+     **/
+    private static int getConnectionPoolSize() {
+        try {
+            return Integer.parseInt(AppProperties.getProperty("ConnectionPoolSize", "16").trim());
+        } catch (NumberFormatException e) {
+            return 16;
+        }
+    }
+
+    /**
+     * Get the number of idle statements pooled for each SQL statement on
+     * each connection, from the StatementPoolSize application property.
+     * Statements are not pooled if it is 0, the default: HSQLDB 1.7
+     * parses a prepared statement each time it is executed, so pooling
+     * saves nothing with it.
+     **/
+    private static int getStatementPoolSize() {
+        try {
+            return Integer.parseInt(AppProperties.getProperty("StatementPoolSize", "0").trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Prepare the statements run once per object, so that the pool of
+     * the connection opened first, which is the one reused, holds them
+     * before they are needed. These are the create, retrieve, update,
+     * delete and timestamp statements and GET_LAST_IDENTITY.
+     **/
+    private synchronized void warmStatements(Connection con) {
+        if (!_poolStatements || _warmed) {
+            return;
+        }
+        _warmed = true;
+        for (Iterator it = _props.keySet().iterator(); it.hasNext();) {
+            String sqlkey = (String) it.next();
+            if (sqlkey.endsWith(".CREATE")
+                || sqlkey.endsWith(".RETRIEVE")
+                || sqlkey.endsWith(".UPDATE")
+                || sqlkey.endsWith(".DELETE")
+                || sqlkey.endsWith(".TIMESTAMP")
+                || sqlkey.equals("GET_LAST_IDENTITY")) {
+                try {
+                    con.prepareStatement(_props.getProperty(sqlkey)).close();
+                } catch (SQLException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Get the schema version recorded in the database. Databases created
+     * before versioning have no SCHEMA_VERSION table and are version 0.
+     **/
+    private int getSchemaVersion(Connection con) {
+        Statement stmt = null;
+        try {
+            stmt = con.createStatement();
+            ResultSet rs = stmt.executeQuery(_props.getProperty("TEST_CURRENT_DATABASE"));
+            int version = rs.next() ? rs.getInt(1) : 0;
+            rs.close();
+            return version;
+        } catch (SQLException e) {
+            return 0;
+        } finally {
+            cleanup(stmt, null);
+        }
+    }
+
+    /**
+     * Read a migration script, leaving out the indexes and columns that
+     * an interrupted earlier run of it added, so that the script can run
+     * again. Scripts drop their own tables with DROP TABLE IF EXISTS, but
+     * HSQLDB 1.7 has no IF EXISTS for indexes or columns, and cannot drop
+     * an index of a table with foreign keys.
+     **/
+    private BufferedReader readMigration(Connection con, String resource)
+        throws SQLException, IOException {
+        DatabaseMetaData meta = con.getMetaData();
+        BufferedReader in = openScript(resource);
+        StringBuffer script = new StringBuffer();
+        StringBuffer stmt = new StringBuffer();
+        Set dropped = new HashSet();
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.trim().startsWith("--")) {
+                    continue;
+                }
+                stmt.append(line).append('\n');
+                if (line.trim().endsWith(";")) {
+                    if (!isApplied(meta, stmt.toString().trim(), dropped)) {
+                        script.append(stmt);
+                    }
+                    stmt.setLength(0);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        script.append(stmt);
+        return new BufferedReader(new StringReader(script.toString()));
+    }
+
+    /**
+     * Is the statement of a migration script an index or column that
+     * already exists? Tables dropped by earlier statements of the script
+     * are added to the given set, as their indexes and columns go with
+     * them.
+     **/
+    private static boolean isApplied(DatabaseMetaData meta, String stmt, Set dropped)
+        throws SQLException {
+        Matcher m = DROP_TABLE.matcher(stmt);
+        if (m.lookingAt()) {
+            dropped.add(m.group(1).toUpperCase());
+            return false;
+        }
+        m = CREATE_INDEX.matcher(stmt);
+        if (m.lookingAt()) {
+            return !dropped.contains(m.group(2).toUpperCase())
+                && hasIndex(meta, m.group(2), m.group(1));
+        }
+        m = ADD_COLUMN.matcher(stmt);
+        if (m.lookingAt()) {
+            return !dropped.contains(m.group(1).toUpperCase())
+                && hasColumn(meta, m.group(1), m.group(2));
+        }
+        return false;
+    }
+
+    /**
+     * Does the table have the given index?
+     **/
+    private static boolean hasIndex(DatabaseMetaData meta, String table, String index)
+        throws SQLException {
+        ResultSet rs = meta.getIndexInfo(null, null, table.toUpperCase(), false, false);
+        try {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Does the table have the given column?
+     **/
+    private static boolean hasColumn(DatabaseMetaData meta, String table, String column)
+        throws SQLException {
+        ResultSet rs = meta.getColumns(null, null, table.toUpperCase(), column.toUpperCase());
+        try {
+            return rs.next();
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Open an SQL script resource.
+     **/
+    private BufferedReader openScript(String resource) throws IOException {
+        InputStream in = getClass().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing SQL script " + resource);
         }
+        return new BufferedReader(new InputStreamReader(in));
     }
 
     /**
-     * No migration to be done; this is for future use.
+     * Run an SQL script resource against this database.
      **/
-    public void migrate() {}
+    private void runScript(String resource) throws SQLException, IOException {
+        runScript(openScript(resource));
+    }
+
+    /**
+     * Run an SQL script against this database.
+     **/
+    private void runScript(BufferedReader in) throws SQLException, IOException {
+        SQLRunner sql = new SQLRunner(getConnection());
+        sql.setIn(in);
+        StringWriter wrt = new StringWriter();
+        sql.setOut(new PrintWriter(wrt));
+        sql.interact();
+    }
 
     /**
      * Return a list of all users in the database.
@@ -231,36 +490,70 @@ class HSQLDatabase implements Database {
      * Return a list of persistent objects.
      **/
     public List retrieveObjects(RetrieveAllParameters params)
+        throws DatabaseException {
+        final List list = new ArrayList();
+        visitObjects(params, 0, new ObjectVisitor() {
+            public boolean visit(Object object) {
+                list.add(object);
+                return true;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Read persistent objects one at a time. The connection is held
+     * until the visitor stops or the last row is read; time spent in
+     * the visitor is not counted in the query statistics.
+     **/
+    public void visitObjects(RetrieveAllParameters params, int fetchSize, ObjectVisitor visitor)
         throws DatabaseException {
         String sqlkey = params.getRetrieveAllSQLKey();
         String sql = _props.getProperty(sqlkey);
         if (sql == null) {
-            return Collections.EMPTY_LIST;
+            return;
         }
 
         Connection con = null;
         PreparedStatement stmt = null;
+        long start = System.nanoTime();
+        long connected = start;
+        long visiting = 0;
+        int rows = 0;
         try {
-            List list = new ArrayList();
             con = getConnection();
-            stmt = con.prepareStatement(sql);
+            connected = System.nanoTime();
+            stmt = prepareQuery(con, sql);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
             params.setRetrieveAllParameters(stmt);
             ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
+            countRoundTrips(1);
+            boolean more = true;
+            while (more && rs.next()) {
+                rows++;
                 Object object = params.createObject(this, rs);
                 if (object instanceof Persistent) {
                     ((Persistent) object).clearDirty();
                 }
                 if (object != null) {
-                    list.add(object);
+                    long visit = System.nanoTime();
+                    more = visitor.visit(object);
+                    visiting += System.nanoTime() - visit;
                 }
             }
             rs.close();
-            return list;
         } catch (SQLException e) {
             throw new DatabaseException(e);
         } finally {
             cleanup(stmt, con);
+            _statistics.record(
+                sqlkey,
+                connected - start,
+                System.nanoTime() - connected - visiting,
+                rows);
+            RoundTripTrace.countRows(rows);
         }
     }
 
@@ -277,27 +570,31 @@ class HSQLDatabase implements Database {
 
         Connection con = null;
         PreparedStatement stmt = null;
+        long start = System.nanoTime();
+        long connected = start;
+        int rows = 0;
         try {
             con = getConnection();
-            con.setAutoCommit(false);
-            stmt = con.prepareStatement(sql);
+            connected = System.nanoTime();
+            beginTransaction(con);
+            stmt = prepareShared(con, sql);
             object.setCreateParameters(stmt);
-            stmt.executeUpdate();
+            rows = stmt.executeUpdate();
             ResultSet rs = stmt.executeQuery(_props.getProperty("GET_LAST_IDENTITY"));
+            countRoundTrips(2);
             if (rs.next()) {
                 long id = rs.getLong(1);
-                con.commit();
+                commit(con);
                 return id;
             } else {
                 throw new SQLException("Could not find new object identity");
             }
         } catch (SQLException e) {
-            try {
-                con.rollback();
-            } catch (Exception ignored) {}
+            rollback(con);
             throw new DatabaseException(e);
         } finally {
             cleanup(stmt, con);
+            recordStatement(sqlkey, start, connected, rows);
         }
     }
 
@@ -305,6 +602,9 @@ class HSQLDatabase implements Database {
      * Save an object to the database.
      **/
     public void saveObject(DatabaseObject object) throws DatabaseException {
+        // a different instance mapped under the same id is now stale
+        unmapStaleObjects(object);
+
         String sqlkey = object.getClass().getName() + ".UPDATE";
         String sql = _props.getProperty(sqlkey);
         if (sql == null) {
@@ -313,15 +613,28 @@ class HSQLDatabase implements Database {
 
         Connection con = null;
         PreparedStatement stmt = null;
+        long start = System.nanoTime();
+        long connected = start;
+        int rows = 0;
         try {
             con = getConnection();
-            stmt = con.prepareStatement(sql);
+            connected = System.nanoTime();
+            stmt = prepareShared(con, sql);
             object.setUpdateParameters(stmt);
-            stmt.executeUpdate();
+            UnitOfWork work = getUnitOfWork();
+            if (work != null) {
+                // the update is run, and its time counted, by the next
+                // query or the commit
+                work.queueUpdate(stmt);
+            } else {
+                rows = stmt.executeUpdate();
+            }
+            countRoundTrips(1);
         } catch (Exception e) {
             throw new DatabaseException(e);
         } finally {
             cleanup(stmt, con);
+            recordStatement(sqlkey, start, connected, rows);
         }
     }
 
@@ -329,6 +642,8 @@ class HSQLDatabase implements Database {
      * Delete an object from database and set to new state.
      **/
     public void deleteObject(DatabaseObject object) throws DatabaseException {
+        unmapDeletedObject(object);
+
         String sqlkey = object.getClass().getName() + ".DELETE";
         String sql = _props.getProperty(sqlkey);
         if (sql == null) {
@@ -337,16 +652,21 @@ class HSQLDatabase implements Database {
 
         Connection con = null;
         PreparedStatement stmt = null;
+        long start = System.nanoTime();
+        long connected = start;
         try {
             con = getConnection();
-            stmt = con.prepareStatement(sql);
+            connected = System.nanoTime();
+            stmt = prepareQuery(con, sql);
             stmt.setLong(1, object.getID());
             ResultSet rs = stmt.executeQuery();
+            countRoundTrips(1);
             rs.close();
         } catch (Exception e) {
             throw new DatabaseException(e);
         } finally {
             cleanup(stmt, con);
+            recordStatement(sqlkey, start, connected, 0);
         }
     }
 
@@ -362,12 +682,18 @@ class HSQLDatabase implements Database {
 
         Connection con = null;
         PreparedStatement stmt = null;
+        long start = System.nanoTime();
+        long connected = start;
+        int rows = 0;
         try {
             con = getConnection();
-            stmt = con.prepareStatement(sql);
+            connected = System.nanoTime();
+            stmt = prepareQuery(con, sql);
             stmt.setLong(1, object.getID());
             ResultSet rs = stmt.executeQuery();
+            countRoundTrips(1);
             if (rs.next()) {
+                rows = 1;
                 object.updateObject(rs);
                 if (object instanceof Persistent) {
                     ((Persistent) object).clearDirty();
@@ -378,7 +704,229 @@ class HSQLDatabase implements Database {
             throw new DatabaseException(e);
         } finally {
             cleanup(stmt, con);
+            recordStatement(sqlkey, start, connected, rows);
+            RoundTripTrace.countRows(rows);
+        }
+    }
+
+    /**
+     * Get the object of the given type and id from the current thread's
+     * identity map, or null if no such object has been mapped.
+     **/
+    public synchronized Persistent getMappedObject(Class cl, long id) {
+        Map objects = (Map) getIdentityMap().get(cl);
+        Persistent object = (objects == null) ? null : (Persistent) objects.get(new Long(id));
+        if (object != null) {
+            _mappedObjectHits++;
+        }
+        return object;
+    }
+
+    /**
+     * Add an object to the current thread's identity map. If an object of
+     * the same type and id is already mapped, that object is kept.
+     * @return The mapped object.
+     **/
+    public synchronized Persistent mapObject(DatabaseObject object) {
+        Map identityMap = getIdentityMap();
+        Map objects = (Map) identityMap.get(object.getClass());
+        if (objects == null) {
+            objects = new MappedObjects(getIdentityMapSize());
+            identityMap.put(object.getClass(), objects);
+        }
+        Long key = new Long(object.getID());
+        Persistent mapped = (Persistent) objects.get(key);
+        if (mapped == null) {
+            mapped = (Persistent) object;
+            objects.put(key, mapped);
+        }
+        return mapped;
+    }
+
+    /**
+     * Remove all objects of the given type from the identity maps.
+     **/
+    public synchronized void unmapObjects(Class cl) {
+        for (Iterator it = _identityMaps.values().iterator(); it.hasNext();) {
+            ((Map) it.next()).remove(cl);
+        }
+    }
+
+    /**
+     * Remove any other instance of a saved object from the identity maps.
+     **/
+    private synchronized void unmapStaleObjects(DatabaseObject object) {
+        Long key = new Long(object.getID());
+        for (Iterator it = _identityMaps.values().iterator(); it.hasNext();) {
+            Map objects = (Map) ((Map) it.next()).get(object.getClass());
+            if (objects != null && objects.get(key) != object) {
+                objects.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted object from the identity maps, along with the
+     * mapped types its delete cascades to.
+     **/
+    private synchronized void unmapDeletedObject(DatabaseObject object) {
+        Class cl = object.getClass();
+        if (cl == WordCollection.class || cl == User.class) {
+            // everything hangs off a collection
+            clearMappedObjects();
+            return;
+        }
+
+        for (Iterator it = _identityMaps.values().iterator(); it.hasNext();) {
+            Map identityMap = (Map) it.next();
+            Map objects = (Map) identityMap.get(cl);
+            if (objects != null) {
+                objects.remove(new Long(object.getID()));
+            }
+            if (cl == View.class) {
+                identityMap.remove(Group.class);
+                identityMap.remove(Protosegment.class);
+            }
+            if (cl == Entry.class) {
+                identityMap.remove(Group.class);
+            }
+            if (cl == View.class || cl == Protosegment.class) {
+                identityMap.remove(Cluster.class);
+            }
+            if (cl == View.class || cl == Protosegment.class || cl == Cluster.class) {
+                identityMap.remove(CorrespondenceSet.class);
+            }
+        }
+    }
+
+    /**
+     * Remove all objects from the identity maps.
+     **/
+    private synchronized void clearMappedObjects() {
+        _identityMaps.clear();
+    }
+
+    /**
+     * Get the current thread's identity map, from classes to maps of ids
+     * to objects. Mapped objects are mutable, so each thread maps its own
+     * instances; the map goes when its thread does.
+     **/
+    private Map getIdentityMap() {
+        Thread thread = Thread.currentThread();
+        Map identityMap = (Map) _identityMaps.get(thread);
+        if (identityMap == null) {
+            identityMap = new HashMap();
+            _identityMaps.put(thread, identityMap);
+        }
+        return identityMap;
+    }
+
+    /**
+     * Get the most objects of one type kept in an identity map, from the
+     * IdentityMapSize application property.
+     **/
+    private static int getIdentityMapSize() {
+        try {
+            return Integer.parseInt(AppProperties.getProperty("IdentityMapSize", "1000").trim());
+        } catch (NumberFormatException e) {
+            return 1000;
+        }
+    }
+
+    /**
+     * The mapped objects of one type, by id. The least recently used
+     * object is dropped once the map is full.
+     **/
+    private static final class MappedObjects extends LinkedHashMap {
+        MappedObjects(int size) {
+            super(16, 0.75f, true);
+            _size = size;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > _size;
+        }
+
+        private final int _size;
+    }
+
+    /**
+     * Get the segment symbol table of a view's correspondence sets. The
+     * table is kept for the life of the database, so a set's symbols stay
+     * comparable after the identity map is cleared.
+     **/
+    public synchronized SegmentSymbols getSegmentSymbols(long viewID) {
+        Long key = new Long(viewID);
+        SegmentSymbols symbols = (SegmentSymbols) _segmentSymbols.get(key);
+        if (symbols == null) {
+            symbols = new SegmentSymbols();
+            _segmentSymbols.put(key, symbols);
+        }
+        return symbols;
+    }
+
+    /**
+     * Get the number of statements executed against this database.
+     **/
+    public synchronized long getRoundTripCount() {
+        return _roundTrips;
+    }
+
+    /**
+     * Get the number of lookups answered by the identity map.
+     **/
+    public synchronized long getMappedObjectHitCount() {
+        return _mappedObjectHits;
+    }
+
+    /**
+     * Get the number of transactions rolled back on this database.
+     **/
+    public synchronized long getRollbackCount() {
+        return _rollbacks;
+    }
+
+    /**
+     * Count a transaction rolled back.
+     **/
+    private synchronized void countRollback() {
+        _rollbacks++;
+    }
+
+    /**
+     * Get the number of worker threads, up to the given limit, that can
+     * read this database at once without running out of connections.
+     **/
+    public int getWorkerThreads(int limit, int connectionsPerWorker) {
+        int threads = (getConnectionPoolSize() - RESERVED_CONNECTIONS) / connectionsPerWorker;
+        return Math.max(1, Math.min(limit, threads));
+    }
+
+    /**
+     * Count statements executed against this database.
+     **/
+    private void countRoundTrips(int count) {
+        synchronized (this) {
+            _roundTrips += count;
         }
+        RoundTripTrace.countRoundTrips(count);
+    }
+
+    /**
+     * Get the per SQL key statistics of the statements executed against
+     * this database.
+     **/
+    public QueryStatistics getQueryStatistics() {
+        return _statistics;
+    }
+
+    /**
+     * Record a statement in the query statistics.
+     * @param start When the connection was requested.
+     * @param connected When the connection was obtained.
+     **/
+    private void recordStatement(String sqlkey, long start, long connected, int rows) {
+        _statistics.record(sqlkey, connected - start, System.nanoTime() - connected, rows);
     }
 
     /**
@@ -396,46 +944,47 @@ class HSQLDatabase implements Database {
         PreparedStatement updstmt = null;
         PreparedStatement linkstmt = null;
         PreparedStatement unlinkstmt = null;
+        long start = System.nanoTime();
+        long connected = start;
+        int rows = 0;
         try {
             con = getConnection();
-            con.setAutoCommit(false);
+            connected = System.nanoTime();
+            beginTransaction(con);
 
-            updstmt = con.prepareStatement(_props.getProperty(updkey));
-            linkstmt = con.prepareStatement(_props.getProperty(linkkey));
-            unlinkstmt = con.prepareStatement(_props.getProperty(unlinkkey));
+            updstmt = prepareShared(con, _props.getProperty(updkey));
+            linkstmt = prepareShared(con, _props.getProperty(linkkey));
+            unlinkstmt = prepareShared(con, _props.getProperty(unlinkkey));
             for (int i = 0; i < params.getLinkCount(); i++) {
                 if (params.isLinked(i)) {
                     // first try an update, then an insert
                     updstmt.clearParameters();
                     params.setUpdateParameters(updstmt, i);
                     int test = updstmt.executeUpdate();
+                    countRoundTrips(1);
                     if (test == 0) {
                         linkstmt.clearParameters();
                         params.setCreateParameters(linkstmt, i);
-                        linkstmt.executeUpdate();
+                        test = linkstmt.executeUpdate();
+                        countRoundTrips(1);
                     }
+                    rows += test;
                 } else {
                     unlinkstmt.clearParameters();
                     params.setRemoveParameters(unlinkstmt, i);
-                    unlinkstmt.executeUpdate();
+                    rows += unlinkstmt.executeUpdate();
+                    countRoundTrips(1);
                 }
             }
-            con.commit();
+            commit(con);
         } catch (Exception e) {
-            try {
-                con.rollback();
-            } catch (SQLException ignored) {}
+            rollback(con);
             throw new DatabaseException(e);
         } finally {
-            try {
-                if (updstmt != null)
-                    updstmt.close();
-            } catch (SQLException ignored) {}
-            try {
-                if (linkstmt != null)
-                    linkstmt.close();
-            } catch (SQLException ignored) {}
+            cleanup(updstmt, null);
+            cleanup(linkstmt, null);
             cleanup(unlinkstmt, con);
+            recordStatement(linkkey, start, connected, rows);
         }
     }
 
@@ -456,13 +1005,16 @@ class HSQLDatabase implements Database {
         PreparedStatement insertStmt = null;
         PreparedStatement queryStmt = null;
         PreparedStatement timestampStmt = null;
+        long start = System.nanoTime();
+        long connected = start;
         try {
             con = getConnection();
-            con.setAutoCommit(false);
-            insertStmt = con.prepareStatement(sql);
-            queryStmt = con.prepareStatement(_props.getProperty("GET_LAST_IDENTITY"));
+            connected = System.nanoTime();
+            beginTransaction(con);
+            insertStmt = prepareShared(con, sql);
+            queryStmt = prepareShared(con, _props.getProperty("GET_LAST_IDENTITY"));
             timestampStmt =
-                con.prepareStatement(
+                prepareShared(con,
                     _props.getProperty(parameters.getTable().toUpperCase() + ".TIMESTAMP"));
             while (parameters.hasNext()) {
                 // define query parameters and create new record
@@ -478,11 +1030,12 @@ class HSQLDatabase implements Database {
                     // query for timestamp
                     timestampStmt.setLong(1, id);
                     ResultSet rs2 = timestampStmt.executeQuery();
+                    countRoundTrips(3);
                     if (rs2.next()) {
                         // set new id and timestamp
                         data.setRemoteID(id);
                         data.setTimestamp(rs2.getTimestamp(1));
-                        con.commit();
+                        commit(con);
                         list.add(data);
                     }
                 } else {
@@ -490,14 +1043,13 @@ class HSQLDatabase implements Database {
                 }
             }
         } catch (SQLException e) {
-            try {
-                con.rollback();
-            } catch (Exception ignored) {}
+            rollback(con);
             throw new DatabaseException(e);
         } finally {
-            cleanup(insertStmt, con);
-            cleanup(queryStmt, con);
+            cleanup(insertStmt, null);
+            cleanup(queryStmt, null);
             cleanup(timestampStmt, con);
+            recordStatement(sqlkey.toUpperCase(), start, connected, list.size());
         }
         return list;
     }
@@ -518,12 +1070,15 @@ class HSQLDatabase implements Database {
         Connection con = null;
         PreparedStatement updateStmt = null;
         PreparedStatement timestampStmt = null;
+        long start = System.nanoTime();
+        long connected = start;
         try {
             con = getConnection();
-            con.setAutoCommit(false);
-            updateStmt = con.prepareStatement(sql);
+            connected = System.nanoTime();
+            beginTransaction(con);
+            updateStmt = prepareShared(con, sql);
             timestampStmt =
-                con.prepareStatement(
+                prepareShared(con,
                     _props.getProperty(parameters.getTable().toUpperCase() + ".TIMESTAMP"));
             while (parameters.hasNext()) {
                 // define query parameters and update record
@@ -534,31 +1089,165 @@ class HSQLDatabase implements Database {
                 // query for timestamp
                 timestampStmt.setLong(1, data.getID());
                 ResultSet rs = timestampStmt.executeQuery();
+                countRoundTrips(2);
                 if (rs.next()) {
                     // set timestamp
                     data.setTimestamp(rs.getTimestamp(1));
-                    con.commit();
+                    commit(con);
                     list.add(data);
                 } else {
                     throw new SQLException("Could not get timestamp");
                 }
             }
         } catch (SQLException e) {
-            try {
-                con.rollback();
-            } catch (Exception ignored) {}
+            rollback(con);
             throw new DatabaseException(e);
         } finally {
-            cleanup(updateStmt, con);
+            cleanup(updateStmt, null);
             cleanup(timestampStmt, con);
+            recordStatement(sqlkey.toUpperCase(), start, connected, list.size());
         }
         return list;
     }
 
+    /**
+     * Begin a batch on the current thread.
+     **/
+    public void beginBatch() throws DatabaseException {
+        UnitOfWork work = getUnitOfWork();
+        try {
+            if (work == null) {
+                work = new UnitOfWork(getConnection());
+                _work.set(work);
+            }
+            work.begin();
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Commit the current thread's batch.
+     **/
+    public void commitBatch() throws DatabaseException {
+        UnitOfWork work = getUnitOfWork();
+        if (work == null) {
+            throw new DatabaseException("No batch in progress");
+        }
+        if (!work.end()) {
+            return;
+        }
+
+        _work.set(null);
+        try {
+            work.commit();
+        } catch (SQLException e) {
+            work.rollback();
+            countRollback();
+            clearMappedObjects();
+            throw new DatabaseException(e);
+        } finally {
+            work.close();
+        }
+    }
+
+    /**
+     * Roll back the current thread's batch. Does nothing for a nested
+     * batch that committed.
+     **/
+    public void rollbackBatch() {
+        UnitOfWork work = getUnitOfWork();
+        if (work == null || work.release()) {
+            return;
+        }
+
+        _work.set(null);
+        work.rollback();
+        work.close();
+        countRollback();
+
+        // mapped objects may hold rolled back changes
+        clearMappedObjects();
+    }
+
+    /**
+     * Get the current thread's unit of work, or null if no batch is in
+     * progress.
+     **/
+    private UnitOfWork getUnitOfWork() {
+        return (UnitOfWork) _work.get();
+    }
+
+    /**
+     * Prepare a query, first running any updates queued by the current
+     * unit of work.
+     **/
+    private PreparedStatement prepareQuery(Connection con, String sql)
+        throws SQLException {
+        UnitOfWork work = getUnitOfWork();
+        if (work != null && con == work.getConnection()) {
+            work.flush();
+        }
+        return con.prepareStatement(sql);
+    }
+
+    /**
+     * Prepare a statement that is not reentered while in use. Within a
+     * unit of work the statement is kept for the rest of the batch.
+     **/
+    private PreparedStatement prepareShared(Connection con, String sql)
+        throws SQLException {
+        UnitOfWork work = getUnitOfWork();
+        if (work != null && con == work.getConnection()) {
+            return work.prepareStatement(sql);
+        }
+        return con.prepareStatement(sql);
+    }
+
+    /**
+     * Begin a transaction unless the connection belongs to a unit of
+     * work. HSQLDB commits whenever the auto-commit mode is set, so the
+     * unit of work's transaction must not be touched.
+     **/
+    private void beginTransaction(Connection con) throws SQLException {
+        UnitOfWork work = getUnitOfWork();
+        if (work == null || con != work.getConnection()) {
+            con.setAutoCommit(false);
+        }
+    }
+
+    /**
+     * Commit a transaction unless it belongs to a unit of work.
+     **/
+    private void commit(Connection con) throws SQLException {
+        UnitOfWork work = getUnitOfWork();
+        if (work == null || con != work.getConnection()) {
+            con.commit();
+        }
+    }
+
+    /**
+     * Roll back a transaction unless it belongs to a unit of work, which
+     * is rolled back as a whole by rollbackBatch().
+     **/
+    private void rollback(Connection con) {
+        UnitOfWork work = getUnitOfWork();
+        if (con != null && (work == null || con != work.getConnection())) {
+            try {
+                con.rollback();
+            } catch (SQLException ignored) {}
+            countRollback();
+        }
+    }
+
     /**
      * Get a connection for this database.
      **/
     Connection getConnection() throws SQLException {
+        UnitOfWork work = getUnitOfWork();
+        if (work != null) {
+            return work.getConnection();
+        }
         return DriverManager.getConnection(
             "jdbc:apache:commons:dbcp:" + _file.getAbsolutePath());
         //return DriverManager.getConnection("jdbc:hsqldb:" + _file.getAbsolutePath(), "sa", "");
@@ -568,11 +1257,14 @@ class HSQLDatabase implements Database {
      * Cleanup a statement and connection.
      **/
     void cleanup(Statement stmt, Connection con) {
-        if (stmt != null)
+        // statements and connection shared by a unit of work are
+        // released when it ends
+        UnitOfWork work = getUnitOfWork();
+        if (stmt != null && (work == null || !work.isShared(stmt)))
             try {
                 stmt.close();
             } catch (SQLException e) {}
-        if (con != null)
+        if (con != null && (work == null || con != work.getConnection()))
             try {
                 con.close();
             } catch (SQLException e) {}
@@ -581,4 +1273,13 @@ class HSQLDatabase implements Database {
     private final File _file;
     private Setting _currentSetting;
     private List _zones = null;
+    private final Map _identityMaps = new WeakHashMap();
+    private final Map _segmentSymbols = new HashMap();
+    private final ThreadLocal _work = new ThreadLocal();
+    private long _roundTrips = 0;
+    private long _mappedObjectHits = 0;
+    private long _rollbacks = 0;
+    private final QueryStatistics _statistics = new QueryStatistics();
+    private boolean _poolStatements = false;
+    private boolean _warmed = false;
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package org.wordcorr.db;
+
+/**
+ * Receives objects one at a time as they are read from the database.
+ **/
+public interface ObjectVisitor {
+
+    /**
+     * Visit an object.
+     * @return true to read the next object, false to stop.
+     **/
+    boolean visit(Object object) throws DatabaseException;
+}
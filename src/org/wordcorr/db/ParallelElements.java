@@ -0,0 +1,106 @@
+package org.wordcorr.db;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jdom.Element;
+
+/**
+ * Creates the elements for a list of items on a bounded pool of worker
+ * threads and hands them to a sink in list order, so output does not
+ * depend on which worker finishes first. At most two elements per worker
+ * are held waiting for the sink. Each worker's queries take their own
+ * pooled connections, so there are no more workers than the database's
+ * connections allow.
+ **/
+abstract class ParallelElements {
+
+    // upper bound on workers; the in-process database serializes statements
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * Constructor using one worker per processor.
+     * @param connectionsPerWorker The most connections createElement()
+     * holds at once.
+     **/
+    ParallelElements(Database db, int connectionsPerWorker) {
+        this(db.getWorkerThreads(
+            Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS),
+            connectionsPerWorker));
+    }
+
+    /**
+     * Constructor.
+     * @param threads The number of workers. With one worker, elements are
+     * created on the calling thread.
+     **/
+    ParallelElements(int threads) {
+        _threads = threads;
+    }
+
+    /**
+     * Create the element for an item. Called on a worker thread.
+     **/
+    abstract Element createElement(Object item);
+
+    /**
+     * Create the elements for the items and give them to the sink in order.
+     **/
+    void writeContent(List items, StreamingOutputter.ElementSink sink) throws IOException {
+        if (_threads <= 1 || items.size() <= 1) {
+            for (Iterator it = items.iterator(); it.hasNext();) {
+                sink.addContent(createElement(it.next()));
+            }
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(_threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Summary worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            LinkedList pending = new LinkedList();
+            for (Iterator it = items.iterator(); it.hasNext();) {
+                final Object item = it.next();
+                pending.add(pool.submit(new Callable() {
+                    public Object call() {
+                        return createElement(item);
+                    }
+                }));
+                if (pending.size() >= _threads * 2) {
+                    sink.addContent(get((Future) pending.removeFirst()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                sink.addContent(get((Future) pending.removeFirst()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for an element.
+     **/
+    private static Element get(Future future) throws IOException {
+        try {
+            return (Element) future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause.toString());
+        }
+    }
+
+    private final int _threads;
+}
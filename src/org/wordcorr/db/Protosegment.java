@@ -167,28 +167,97 @@ public class Protosegment extends AbstractPersistent {
         });
     }
 
+    /**
+     * Get clusters with their correspondence sets, in one query. Returns
+     * a map from each cluster, in the order the clusters were created,
+     * to the list of its correspondence sets; a cluster without sets
+     * maps to an empty list.
+     **/
+    public Map getClusterCorrespondenceSets() throws DatabaseException {
+        final Map clusters = new LinkedHashMap();
+        getDatabase().visitObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_CLUSTER_CORRESPONDENCE_SETS";
+            }
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                // rows of a cluster are adjacent
+                if (_cluster == null || _cluster.getID() != rs.getLong(1)) {
+                    _cluster = new Cluster(db, rs.getLong(1), Protosegment.this);
+                    _cluster.updateObject(rs);
+                }
+
+                // a cluster without sets has one row with no set
+                rs.getLong(6);
+                if (rs.wasNull())
+                    return _cluster;
+                CorrespondenceSet set = new CorrespondenceSet(db, rs.getLong(6), _cluster);
+                set.updateObject(rs, 5);
+                return set;
+            }
+
+            private Cluster _cluster;
+        }, Database.DEFAULT_FETCH_SIZE, new ObjectVisitor() {
+            public boolean visit(Object object) {
+                if (object instanceof Cluster) {
+                    clusters.put(object, new ArrayList());
+                } else {
+                    CorrespondenceSet set = (CorrespondenceSet) object;
+                    List sets = (List) clusters.get(set.getCluster());
+                    if (sets == null) {
+                        sets = new ArrayList();
+                        clusters.put(set.getCluster(), sets);
+                    }
+                    sets.add(set);
+                }
+                return true;
+            }
+        });
+        return clusters;
+    }
+
     /**
      * Move clusters from another protosegment.
      * @param fromProtosegment Protosegment to move clusters from.
      **/
     public boolean moveClustersFromProtosegment(Protosegment fromProtosegment)
         throws DatabaseException {
-        // move all clusters from protosegment
-        boolean moveSuccess = false;
-        List fromClusters = fromProtosegment.getClusters();
-        for (Iterator it = fromClusters.iterator(); it.hasNext();) {
-            Cluster fromCluster = (Cluster) it.next();
-            // move cluster
-            fromCluster.setProtosegment(this);
-            fromCluster.setOrder(new Integer(this.getMaxClusterOrder() + 1));
-            fromCluster.save();
-            moveSuccess = true;
-        }
-        // reorder if moved at least one
-        if (moveSuccess) {
-            this.reorderClusterOrder();
-        }
-        return moveSuccess;
+        if (fromProtosegment.getClusterCount() == 0)
+            return false;
+
+        // move all clusters from protosegment after this one's, in order
+        CitationCounts.move(getDatabase(), fromProtosegment.getID(), getID());
+        execute("MOVE_PROTOSEGMENT_CLUSTERS",
+            new long[] { getID(), getMaxClusterOrder(), fromProtosegment.getID() });
+        reorderClusterOrder();
+
+        // mapped clusters still name the old protosegment
+        getDatabase().unmapObjects(Cluster.class);
+        return true;
+    }
+
+    /**
+     * Get number of clusters.
+     **/
+    public int getClusterCount() throws DatabaseException {
+        List list = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_CLUSTER_COUNT";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return new Integer(rs.getInt(1));
+            }
+        });
+        return ((Integer) list.get(0)).intValue();
     }
 
     /**
@@ -213,18 +282,77 @@ public class Protosegment extends AbstractPersistent {
     }
 
     /**
-     * Reorder cluster order.
+     * Reorder cluster order. When the clusters out of place are all off
+     * by the same amount, as after a cluster is removed, they are moved
+     * up in one update.
      **/
     public void reorderClusterOrder() throws DatabaseException {
-        List list = getClusters();
-        int id = 0;
-        for (Iterator it = list.iterator(); it.hasNext();) {
-            Cluster cluster = (Cluster) it.next();
-            if (cluster.getOrder().intValue() != ++id) {
-                cluster.setOrder(new Integer(id));
-                cluster.save();
+        List orders = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_CLUSTER_ORDERS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return new long[] { rs.getLong(1), rs.getInt(2) };
+            }
+        });
+
+        // find first cluster out of place
+        int first = 0;
+        while (first < orders.size() && ((long[]) orders.get(first))[1] == first + 1) {
+            first++;
+        }
+        if (first == orders.size())
+            return;
+
+        // check for the same gap before each cluster from there on
+        long gap = ((long[]) orders.get(first))[1] - (first + 1);
+        boolean shift = gap > 0;
+        for (int i = first + 1; i < orders.size() && shift; i++) {
+            shift = ((long[]) orders.get(i))[1] - (i + 1) == gap;
+        }
+        if (shift) {
+            execute("SHIFT_CLUSTER_ORDERS",
+                new long[] { gap, getID(), ((long[]) orders.get(first))[1] });
+        } else {
+            for (int i = first; i < orders.size(); i++) {
+                long[] order = (long[]) orders.get(i);
+                if (order[1] != i + 1) {
+                    execute("UPDATE_CLUSTER_ORDER", new long[] { i + 1, order[0] });
+                }
             }
         }
+
+        // mapped clusters still have their old order
+        getDatabase().unmapObjects(Cluster.class);
+    }
+
+    /**
+     * Run an update of this protosegment's clusters.
+     **/
+    private void execute(final String sqlkey, final long[] params)
+        throws DatabaseException {
+        getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return sqlkey;
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setLong(i + 1, params[i]);
+                }
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return null;
+            }
+        });
     }
 
     /**
@@ -370,8 +498,7 @@ public class Protosegment extends AbstractPersistent {
         // load zone if null
         if (_zone == null) {
             try {
-                _zone = new Zone(getDatabase(), rs.getLong(1));
-                _zone.revert();
+                _zone = (Zone) lookup(new Zone(getDatabase(), rs.getLong(1)));
             } catch (DatabaseException e) {
                 e.printStackTrace();
                 throw new SQLException(e.getRootCause().getMessage());
@@ -0,0 +1,321 @@
+package org.wordcorr.db;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.wordcorr.AppProperties;
+
+/**
+ * Statistics of the statements run against a database, kept per SQL
+ * key: calls, rows, time spent waiting for a connection and a histogram
+ * of statement times. Statements slower than the SlowQueryThresholdMillis
+ * application property are logged.
+ **/
+public final class QueryStatistics implements QueryStatisticsMBean {
+
+    // upper bounds of the histogram buckets in milliseconds; the last
+    // bucket holds everything slower
+    private static final long[] BUCKETS =
+        { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /**
+     * Constructor.
+     **/
+    QueryStatistics() {
+        try {
+            _slowQueryThreshold =
+                Long.parseLong(AppProperties.getProperty("SlowQueryThresholdMillis", "-1").trim());
+        } catch (NumberFormatException e) {
+            _slowQueryThreshold = -1;
+        }
+    }
+
+    /**
+     * Register these statistics with the platform MBean server under
+     * the given database name, replacing any statistics registered for
+     * a database of the same name.
+     **/
+    void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName =
+                new ObjectName("org.wordcorr:type=QueryStatistics,name=" + quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Record a statement.
+     * @param sqlkey The SQL key of the statement.
+     * @param waitNanos The time spent getting a connection.
+     * @param elapsedNanos The time spent running the statement.
+     * @param rows The number of rows returned or changed.
+     **/
+    void record(String sqlkey, long waitNanos, long elapsedNanos, int rows) {
+        long threshold;
+        synchronized (this) {
+            Key key = (Key) _keys.get(sqlkey);
+            if (key == null) {
+                key = new Key(sqlkey);
+                _keys.put(sqlkey, key);
+            }
+            key.calls++;
+            key.rows += rows;
+            key.waitNanos += waitNanos;
+            key.totalNanos += elapsedNanos;
+            key.maxNanos = Math.max(key.maxNanos, elapsedNanos);
+            key.histogram[getBucket(elapsedNanos)]++;
+            threshold = _slowQueryThreshold;
+        }
+
+        if (threshold >= 0 && elapsedNanos > threshold * NANOS_PER_MILLI) {
+            System.err.println(
+                "Slow query "
+                    + sqlkey
+                    + ": "
+                    + millis(elapsedNanos)
+                    + " ms, "
+                    + rows
+                    + " rows, "
+                    + millis(waitNanos)
+                    + " ms connection wait");
+        }
+    }
+
+    /**
+     * Count a statement requested from a statement pool.
+     **/
+    synchronized void countStatementBorrow() {
+        _statementBorrows++;
+    }
+
+    /**
+     * Count a statement prepared for a statement pool.
+     **/
+    synchronized void countStatementPrepare() {
+        _statementPrepares++;
+    }
+
+    /**
+     * Get the number of statements recorded for all SQL keys.
+     **/
+    public synchronized long getCallCount() {
+        long calls = 0;
+        for (Iterator it = _keys.values().iterator(); it.hasNext();) {
+            calls += ((Key) it.next()).calls;
+        }
+        return calls;
+    }
+
+    /**
+     * Get the time spent in statements for all SQL keys, in milliseconds.
+     **/
+    public synchronized long getTotalMillis() {
+        long nanos = 0;
+        for (Iterator it = _keys.values().iterator(); it.hasNext();) {
+            nanos += ((Key) it.next()).totalNanos;
+        }
+        return millis(nanos);
+    }
+
+    /**
+     * Get the number of prepared statements taken from a statement pool.
+     **/
+    public synchronized long getStatementPoolHits() {
+        return _statementBorrows - _statementPrepares;
+    }
+
+    /**
+     * Get the number of statements prepared because none was pooled.
+     **/
+    public synchronized long getStatementPoolMisses() {
+        return _statementPrepares;
+    }
+
+    /**
+     * Get the SQL keys that have been recorded.
+     **/
+    public synchronized String[] getSQLKeys() {
+        String[] keys = (String[]) _keys.keySet().toArray(new String[_keys.size()]);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Get the statistics of all SQL keys as a table, slowest key first.
+     **/
+    public String getSummary() {
+        StringWriter out = new StringWriter();
+        write(new PrintWriter(out));
+        return out.toString();
+    }
+
+    /**
+     * Get the slow statement threshold in milliseconds.
+     **/
+    public synchronized long getSlowQueryThresholdMillis() {
+        return _slowQueryThreshold;
+    }
+
+    /**
+     * Set the slow statement threshold in milliseconds. A negative
+     * threshold turns off logging.
+     **/
+    public synchronized void setSlowQueryThresholdMillis(long millis) {
+        _slowQueryThreshold = millis;
+    }
+
+    /**
+     * Discard all recorded statistics.
+     **/
+    public synchronized void reset() {
+        _keys.clear();
+        _statementBorrows = 0;
+        _statementPrepares = 0;
+    }
+
+    /**
+     * Write the statistics of all SQL keys to a file.
+     **/
+    public void dump(String filename) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(filename));
+        try {
+            write(out);
+            if (out.checkError()) {
+                throw new IOException("Could not write " + filename);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the statistics as tab separated lines, slowest key first.
+     * Times are in milliseconds; each histogram column counts the
+     * statements no slower than its heading.
+     **/
+    private void write(PrintWriter out) {
+        List keys;
+        long hits;
+        long misses;
+        synchronized (this) {
+            hits = getStatementPoolHits();
+            misses = getStatementPoolMisses();
+            keys = new ArrayList();
+            for (Iterator it = _keys.values().iterator(); it.hasNext();) {
+                keys.add(((Key) it.next()).copy());
+            }
+        }
+        Collections.sort(keys, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                long t1 = ((Key) o1).totalNanos;
+                long t2 = ((Key) o2).totalNanos;
+                return (t1 > t2) ? -1 : (t1 < t2) ? 1 : 0;
+            }
+        });
+
+        out.print("SQL key\tcalls\trows\ttotal\tmean\tmax\twait");
+        for (int i = 0; i < BUCKETS.length; i++) {
+            out.print("\t<=" + BUCKETS[i]);
+        }
+        out.println("\t>" + BUCKETS[BUCKETS.length - 1]);
+
+        for (Iterator it = keys.iterator(); it.hasNext();) {
+            Key key = (Key) it.next();
+            out.print(key.sqlkey);
+            out.print("\t" + key.calls);
+            out.print("\t" + key.rows);
+            out.print("\t" + millis(key.totalNanos));
+            out.print("\t" + millis(key.totalNanos / key.calls));
+            out.print("\t" + millis(key.maxNanos));
+            out.print("\t" + millis(key.waitNanos));
+            for (int i = 0; i < key.histogram.length; i++) {
+                out.print("\t" + key.histogram[i]);
+            }
+            out.println();
+        }
+        out.println();
+        out.println("statement pool hits\t" + hits);
+        out.println("statement pool misses\t" + misses);
+        out.flush();
+    }
+
+    /**
+     * Get the histogram bucket of a statement time.
+     **/
+    private static int getBucket(long nanos) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (nanos <= BUCKETS[i] * NANOS_PER_MILLI) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds.
+     **/
+    private static long millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Quote a value for use in an object name.
+     **/
+    private static String quote(String value) {
+        StringBuffer buf = new StringBuffer("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\' || ch == '*' || ch == '?') {
+                buf.append('\\');
+            } else if (ch == '\n') {
+                buf.append("\\n");
+                continue;
+            }
+            buf.append(ch);
+        }
+        return buf.append('"').toString();
+    }
+
+    /**
+     * The statistics of one SQL key.
+     **/
+    private static final class Key {
+        Key(String sqlkey) {
+            this.sqlkey = sqlkey;
+        }
+
+        Key copy() {
+            Key key = new Key(sqlkey);
+            key.calls = calls;
+            key.rows = rows;
+            key.waitNanos = waitNanos;
+            key.totalNanos = totalNanos;
+            key.maxNanos = maxNanos;
+            System.arraycopy(histogram, 0, key.histogram, 0, histogram.length);
+            return key;
+        }
+
+        final String sqlkey;
+        final long[] histogram = new long[BUCKETS.length + 1];
+        long calls;
+        long rows;
+        long waitNanos;
+        long totalNanos;
+        long maxNanos;
+    }
+
+    private final Map _keys = new HashMap();
+    private long _slowQueryThreshold;
+    private long _statementBorrows = 0;
+    private long _statementPrepares = 0;
+}
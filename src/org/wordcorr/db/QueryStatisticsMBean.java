@@ -0,0 +1,63 @@
+package org.wordcorr.db;
+
+import java.io.IOException;
+
+/**
+ * Management interface for the query statistics of a database.
+ **/
+public interface QueryStatisticsMBean {
+
+    /**
+     * Get the number of statements recorded for all SQL keys.
+     **/
+    long getCallCount();
+
+    /**
+     * Get the time spent in statements for all SQL keys, in milliseconds.
+     **/
+    long getTotalMillis();
+
+    /**
+     * Get the number of prepared statements taken from a connection's
+     * statement pool.
+     **/
+    long getStatementPoolHits();
+
+    /**
+     * Get the number of statements that had to be prepared because none
+     * was pooled.
+     **/
+    long getStatementPoolMisses();
+
+    /**
+     * Get the SQL keys that have been recorded.
+     **/
+    String[] getSQLKeys();
+
+    /**
+     * Get the statistics of all SQL keys as a table, slowest key first.
+     **/
+    String getSummary();
+
+    /**
+     * Get the threshold above which a statement is logged as slow, in
+     * milliseconds, or a negative number if slow statements are not
+     * logged.
+     **/
+    long getSlowQueryThresholdMillis();
+
+    /**
+     * Set the slow statement threshold.
+     **/
+    void setSlowQueryThresholdMillis(long millis);
+
+    /**
+     * Discard all recorded statistics.
+     **/
+    void reset();
+
+    /**
+     * Write the statistics of all SQL keys to a file.
+     **/
+    void dump(String filename) throws IOException;
+}
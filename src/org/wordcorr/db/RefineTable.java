@@ -0,0 +1,170 @@
+package org.wordcorr.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Rows of a view's refine table, one per citation. The columns are kept
+ * in parallel arrays and the keys as numbers, so a large table is read
+ * without building an object or a key string for each row. A column value
+ * equal to the one in the row before is shared with it.
+ **/
+public final class RefineTable {
+
+    /**
+     * Constructor.
+     **/
+    RefineTable() {}
+
+    /**
+     * Get the number of rows.
+     **/
+    public int size() {
+        return _size;
+    }
+
+    public String getZone(int row) {
+        return _zones[row];
+    }
+
+    public String getProtosegment(int row) {
+        return _protosegments[row];
+    }
+
+    public String getEnvironment(int row) {
+        return _environments[row];
+    }
+
+    public int getClusterOrder(int row) {
+        return _clusterOrders[row];
+    }
+
+    public String getCorrespondenceSet(int row) {
+        return _correspondenceSets[row];
+    }
+
+    public String getCitation(int row) {
+        return _citations[row];
+    }
+
+    public boolean hasProtosegmentRemarks(int row) {
+        return _protosegmentRemarks[row];
+    }
+
+    public boolean hasClusterRemarks(int row) {
+        return _clusterRemarks[row];
+    }
+
+    public boolean hasCorrespondenceSetRemarks(int row) {
+        return _correspondenceSetRemarks[row];
+    }
+
+    public long getZoneKey(int row) {
+        return _zoneKeys[row];
+    }
+
+    public long getProtosegmentKey(int row) {
+        return _protosegmentKeys[row];
+    }
+
+    public long getClusterKey(int row) {
+        return _clusterKeys[row];
+    }
+
+    public long getCorrespondenceSetKey(int row) {
+        return _correspondenceSetKeys[row];
+    }
+
+    public long getCitationKey(int row) {
+        return _citationKeys[row];
+    }
+
+    public long getGroupKey(int row) {
+        return _groupKeys[row];
+    }
+
+    /**
+     * Add the current row of a refine table query.
+     **/
+    void add(ResultSet rs) throws SQLException {
+        if (_size == _zones.length) {
+            grow();
+        }
+        int row = _size++;
+        _zones[row] = repeat(_zones, row, rs.getString(1));
+        _protosegments[row] = repeat(_protosegments, row, rs.getString(2));
+        _environments[row] = repeat(_environments, row, rs.getString(3));
+        _clusterOrders[row] = rs.getInt(4);
+        _correspondenceSets[row] = repeat(_correspondenceSets, row, rs.getString(5));
+        _citations[row] = rs.getString(6);
+        _protosegmentRemarks[row] = hasRemarks(rs.getString(7));
+        _clusterRemarks[row] = hasRemarks(rs.getString(8));
+        _correspondenceSetRemarks[row] = hasRemarks(rs.getString(9));
+        _zoneKeys[row] = rs.getLong(10);
+        _protosegmentKeys[row] = rs.getLong(11);
+        _clusterKeys[row] = rs.getLong(12);
+        _correspondenceSetKeys[row] = rs.getLong(13);
+        _citationKeys[row] = rs.getLong(14);
+        _groupKeys[row] = rs.getLong(15);
+    }
+
+    /**
+     * Use the value of the row before if it is the same.
+     **/
+    private static String repeat(String[] column, int row, String value) {
+        return (row > 0 && value != null && value.equals(column[row - 1]))
+            ? column[row - 1]
+            : value;
+    }
+
+    private static boolean hasRemarks(String remarks) {
+        return !(remarks == null || remarks.equals(""));
+    }
+
+    /**
+     * Double the capacity of the columns.
+     **/
+    private void grow() {
+        int capacity = _zones.length * 2;
+        _zones = (String[]) copy(_zones, new String[capacity]);
+        _protosegments = (String[]) copy(_protosegments, new String[capacity]);
+        _environments = (String[]) copy(_environments, new String[capacity]);
+        _clusterOrders = (int[]) copy(_clusterOrders, new int[capacity]);
+        _correspondenceSets = (String[]) copy(_correspondenceSets, new String[capacity]);
+        _citations = (String[]) copy(_citations, new String[capacity]);
+        _protosegmentRemarks = (boolean[]) copy(_protosegmentRemarks, new boolean[capacity]);
+        _clusterRemarks = (boolean[]) copy(_clusterRemarks, new boolean[capacity]);
+        _correspondenceSetRemarks =
+            (boolean[]) copy(_correspondenceSetRemarks, new boolean[capacity]);
+        _zoneKeys = (long[]) copy(_zoneKeys, new long[capacity]);
+        _protosegmentKeys = (long[]) copy(_protosegmentKeys, new long[capacity]);
+        _clusterKeys = (long[]) copy(_clusterKeys, new long[capacity]);
+        _correspondenceSetKeys = (long[]) copy(_correspondenceSetKeys, new long[capacity]);
+        _citationKeys = (long[]) copy(_citationKeys, new long[capacity]);
+        _groupKeys = (long[]) copy(_groupKeys, new long[capacity]);
+    }
+
+    private Object copy(Object from, Object to) {
+        System.arraycopy(from, 0, to, 0, _size);
+        return to;
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int _size;
+    private String[] _zones = new String[INITIAL_CAPACITY];
+    private String[] _protosegments = new String[INITIAL_CAPACITY];
+    private String[] _environments = new String[INITIAL_CAPACITY];
+    private int[] _clusterOrders = new int[INITIAL_CAPACITY];
+    private String[] _correspondenceSets = new String[INITIAL_CAPACITY];
+    private String[] _citations = new String[INITIAL_CAPACITY];
+    private boolean[] _protosegmentRemarks = new boolean[INITIAL_CAPACITY];
+    private boolean[] _clusterRemarks = new boolean[INITIAL_CAPACITY];
+    private boolean[] _correspondenceSetRemarks = new boolean[INITIAL_CAPACITY];
+    private long[] _zoneKeys = new long[INITIAL_CAPACITY];
+    private long[] _protosegmentKeys = new long[INITIAL_CAPACITY];
+    private long[] _clusterKeys = new long[INITIAL_CAPACITY];
+    private long[] _correspondenceSetKeys = new long[INITIAL_CAPACITY];
+    private long[] _citationKeys = new long[INITIAL_CAPACITY];
+    private long[] _groupKeys = new long[INITIAL_CAPACITY];
+}
@@ -0,0 +1,167 @@
+package org.wordcorr.db;
+
+import java.util.*;
+import org.wordcorr.AppProperties;
+
+/**
+ * A scope around a unit of user interface work, such as an action or a
+ * refresh, that counts the database round trips, rows read and time
+ * spent inside it. Scopes nest; work is counted in every open scope of
+ * the thread. Work done on other threads, such as worker pools and the
+ * prefetch thread, is not counted, since those threads outlive the scope
+ * they were started in.
+ * When the outermost scope ends having used more round trips than the
+ * RoundTripBudget application property allows, a warning is logged.
+ **/
+public final class RoundTripTrace {
+
+    private static final ThreadLocal _scopes = new ThreadLocal() {
+        protected Object initialValue() {
+            return new ArrayList();
+        }
+    };
+
+    private static long _budget;
+
+    static {
+        try {
+            _budget = Long.parseLong(AppProperties.getProperty("RoundTripBudget", "-1").trim());
+        } catch (NumberFormatException e) {
+            _budget = -1;
+        }
+    }
+
+    /**
+     * Open a scope on the current thread.
+     **/
+    public static RoundTripTrace begin(String name) {
+        RoundTripTrace trace = new RoundTripTrace(name);
+        ((List) _scopes.get()).add(trace);
+        return trace;
+    }
+
+    /**
+     * Get the round trip budget of an outermost scope, or a negative
+     * number if there is none.
+     **/
+    public static synchronized long getBudget() {
+        return _budget;
+    }
+
+    /**
+     * Set the round trip budget of an outermost scope. A negative
+     * budget turns off the warning.
+     **/
+    public static synchronized void setBudget(long budget) {
+        _budget = budget;
+    }
+
+    /**
+     * Count round trips in the current thread's open scopes.
+     **/
+    static void countRoundTrips(int count) {
+        List scopes = (List) _scopes.get();
+        for (int i = 0; i < scopes.size(); i++) {
+            ((RoundTripTrace) scopes.get(i)).add(count, 0);
+        }
+    }
+
+    /**
+     * Count rows read in the current thread's open scopes.
+     **/
+    static void countRows(int rows) {
+        List scopes = (List) _scopes.get();
+        for (int i = 0; i < scopes.size(); i++) {
+            ((RoundTripTrace) scopes.get(i)).add(0, rows);
+        }
+    }
+
+    /**
+     * Constructor.
+     **/
+    private RoundTripTrace(String name) {
+        _name = name;
+        _start = System.currentTimeMillis();
+    }
+
+    /**
+     * Close this scope, and any scopes opened inside it and not closed.
+     * Does nothing if the scope is already closed.
+     **/
+    public void end() {
+        List scopes = (List) _scopes.get();
+        int index = scopes.lastIndexOf(this);
+        if (index < 0) {
+            return;
+        }
+        while (scopes.size() > index) {
+            RoundTripTrace trace = (RoundTripTrace) scopes.remove(scopes.size() - 1);
+            trace.close();
+        }
+        if (index == 0 && isOverBudget()) {
+            System.err.println(
+                "Round trip budget exceeded by "
+                    + _name
+                    + ": "
+                    + getRoundTrips()
+                    + " round trips (budget "
+                    + getBudget()
+                    + "), "
+                    + getRows()
+                    + " rows, "
+                    + getElapsedMillis()
+                    + " ms");
+        }
+    }
+
+    /**
+     * Get the name of this scope.
+     **/
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Get the number of round trips made in this scope.
+     **/
+    public synchronized long getRoundTrips() {
+        return _roundTrips;
+    }
+
+    /**
+     * Get the number of rows read in this scope.
+     **/
+    public synchronized long getRows() {
+        return _rows;
+    }
+
+    /**
+     * Get the time spent in this scope, so far if it is still open.
+     **/
+    public synchronized long getElapsedMillis() {
+        return ((_end < 0) ? System.currentTimeMillis() : _end) - _start;
+    }
+
+    /**
+     * Has this scope made more round trips than the budget allows?
+     **/
+    public boolean isOverBudget() {
+        long budget = getBudget();
+        return budget >= 0 && getRoundTrips() > budget;
+    }
+
+    private synchronized void add(int roundTrips, int rows) {
+        _roundTrips += roundTrips;
+        _rows += rows;
+    }
+
+    private synchronized void close() {
+        _end = System.currentTimeMillis();
+    }
+
+    private final String _name;
+    private final long _start;
+    private long _end = -1;
+    private long _roundTrips = 0;
+    private long _rows = 0;
+}
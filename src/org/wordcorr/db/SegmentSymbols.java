@@ -0,0 +1,132 @@
+package org.wordcorr.db;
+
+import java.util.*;
+
+/**
+ * Table of the segment symbols of a view's correspondence sets. Each
+ * grapheme or grapheme cluster is given a positive number the first time
+ * it is seen and the ignore symbol is IGNORE, so that correspondence sets
+ * can be compared as arrays of numbers.
+ **/
+public final class SegmentSymbols {
+
+    /**
+     * The number of the ignore symbol.
+     **/
+    public static final int IGNORE = 0;
+
+    private static final String IGNORE_SYMBOL = ".";
+
+    /**
+     * Constructor.
+     **/
+    SegmentSymbols() {
+        _numbers.put(IGNORE_SYMBOL, new Integer(IGNORE));
+    }
+
+    /**
+     * Convert a correspondence set to the numbers of its symbols. A
+     * grapheme cluster is one symbol.
+     * @param set Value to convert.
+     **/
+    public synchronized int[] encode(String set) {
+        int[] symbols = new int[getLength(set)];
+        int count = 0;
+        StringBuffer cluster = null;
+        for (int i = 0; i < set.length(); i++) {
+            char ch = set.charAt(i);
+            switch (ch) {
+                case Alignment.GRAPHEME_CLUSTER_START :
+                    if (cluster == null) {
+                        cluster = new StringBuffer();
+                    }
+                    break;
+                case Alignment.GRAPHEME_CLUSTER_END :
+                    symbols[count++] = getNumber((cluster == null) ? "" : cluster.toString());
+                    cluster = null;
+                    break;
+                default :
+                    if (cluster == null) {
+                        symbols[count++] = getNumber(String.valueOf(ch));
+                    } else {
+                        // build grapheme cluster
+                        cluster.append(ch);
+                    }
+                    break;
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * Get the number of symbols in the table, including the ignore symbol.
+     **/
+    public synchronized int size() {
+        return _numbers.size();
+    }
+
+    /**
+     * Get the number of a symbol, adding it to the table if it is new.
+     **/
+    private int getNumber(String symbol) {
+        Integer number = (Integer) _numbers.get(symbol);
+        if (number == null) {
+            number = new Integer(_numbers.size());
+            _numbers.put(symbol, number);
+        }
+        return number.intValue();
+    }
+
+    /**
+     * Get the number of symbols in a correspondence set. A grapheme
+     * cluster is one symbol; an unterminated grapheme cluster is none.
+     * @param set Value to count.
+     **/
+    public static int getLength(String set) {
+        int length = 0;
+        boolean cluster = false;
+        for (int i = 0; i < set.length(); i++) {
+            switch (set.charAt(i)) {
+                case Alignment.GRAPHEME_CLUSTER_START :
+                    cluster = true;
+                    break;
+                case Alignment.GRAPHEME_CLUSTER_END :
+                    length++;
+                    cluster = false;
+                    break;
+                default :
+                    if (!cluster) {
+                        length++;
+                    }
+                    break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Check whether two sets have the same symbols, including ignores.
+     **/
+    public static boolean isIdentical(int[] set1, int[] set2) {
+        return Arrays.equals(set1, set2);
+    }
+
+    /**
+     * Check whether two sets have the same symbols wherever neither
+     * has an ignore.
+     **/
+    public static boolean isConformable(int[] set1, int[] set2) {
+        // check lengths
+        if (set1.length != set2.length)
+            return false;
+
+        // check each symbol, skipping ignores
+        for (int i = 0; i < set1.length; i++) {
+            if (set1[i] != set2[i] && set1[i] != IGNORE && set2[i] != IGNORE)
+                return false;
+        }
+        return true;
+    }
+
+    private final Map _numbers = new HashMap();
+}
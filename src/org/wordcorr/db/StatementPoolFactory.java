@@ -0,0 +1,84 @@
+package org.wordcorr.db;
+
+import org.apache.commons.pool.KeyedObjectPool;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
+import org.apache.commons.pool.KeyedPoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+
+/**
+ * Creates the prepared statement pool of each pooled connection. A
+ * statement closed by HSQLDatabase goes back to its connection's pool,
+ * keyed by its SQL, and is reused by the next statement with the same
+ * SQL on that connection. Pool hits and misses are counted in the
+ * query statistics.
+ **/
+class StatementPoolFactory implements KeyedObjectPoolFactory {
+
+    /**
+     * Constructor.
+     * @param size The number of idle statements kept for each SQL
+     * statement on each connection.
+     **/
+    StatementPoolFactory(int size, QueryStatistics statistics) {
+        _size = size;
+        _statistics = statistics;
+    }
+
+    /**
+     * Create a connection's statement pool. Statements in use are not
+     * limited, so a statement may be reentered, as by an object
+     * visitor, without blocking.
+     **/
+    public KeyedObjectPool createPool() {
+        return new GenericKeyedObjectPool(
+            null,
+            0,
+            GenericKeyedObjectPool.WHEN_EXHAUSTED_GROW,
+            0,
+            _size) {
+            public synchronized void setFactory(KeyedPoolableObjectFactory factory) {
+                super.setFactory(new CountingFactory(factory));
+            }
+
+            public Object borrowObject(Object key) throws Exception {
+                _statistics.countStatementBorrow();
+                return super.borrowObject(key);
+            }
+        };
+    }
+
+    /**
+     * Counts the statements that had to be prepared.
+     **/
+    private final class CountingFactory implements KeyedPoolableObjectFactory {
+        CountingFactory(KeyedPoolableObjectFactory factory) {
+            _factory = factory;
+        }
+
+        public Object makeObject(Object key) throws Exception {
+            _statistics.countStatementPrepare();
+            return _factory.makeObject(key);
+        }
+
+        public void destroyObject(Object key, Object obj) throws Exception {
+            _factory.destroyObject(key, obj);
+        }
+
+        public boolean validateObject(Object key, Object obj) {
+            return _factory.validateObject(key, obj);
+        }
+
+        public void activateObject(Object key, Object obj) throws Exception {
+            _factory.activateObject(key, obj);
+        }
+
+        public void passivateObject(Object key, Object obj) throws Exception {
+            _factory.passivateObject(key, obj);
+        }
+
+        private final KeyedPoolableObjectFactory _factory;
+    }
+
+    private final int _size;
+    private final QueryStatistics _statistics;
+}
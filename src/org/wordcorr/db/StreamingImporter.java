@@ -0,0 +1,350 @@
+package org.wordcorr.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.jdom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Imports a WordCorr XML file while it is parsed. The parser cuts the
+ * document into small elements, one per variety, entry, annotation,
+ * protosegment or tabulated group plus the collection and view headers,
+ * and hands them through a bounded queue to a writer thread. The writer
+ * saves them in a single batch, so a failed import leaves nothing behind.
+ **/
+class StreamingImporter extends DefaultHandler {
+
+    // record types
+    private static final int COLLECTION   = 0;
+    private static final int VARIETY      = 1;
+    private static final int ENTRY        = 2;
+    private static final int VIEW         = 3;
+    private static final int ANNOTATION   = 4;
+    private static final int PROTOSEGMENT = 5;
+    private static final int GROUP        = 6;
+    private static final int END_VIEW     = 7;
+    private static final int END          = 8;
+    private static final int ABORT        = 9;
+
+    private static final int QUEUE_SIZE = 256;
+
+    /**
+     * Constructor.
+     **/
+    StreamingImporter(User user) {
+        _user = user;
+    }
+
+    /**
+     * Import the collection in the stream.
+     * @return The new collection, or null if the document is not a
+     * WordCorr file.
+     * @throws SAXException if the document cannot be parsed.
+     * @throws DatabaseException if the collection cannot be saved.
+     **/
+    WordCollection importCollection(InputStream input)
+        throws IOException, SAXException, DatabaseException {
+        Thread writer = new Thread("XML import writer") {
+            public void run() {
+                write();
+            }
+        };
+        writer.start();
+        // errors such as OutOfMemoryError must stop the writer too
+        Throwable parseFailure = null;
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(input, this);
+        } catch (Throwable e) {
+            abort();
+            parseFailure = e;
+        }
+
+        // wait for the writer to commit or roll back
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            throw new DatabaseException(e);
+        }
+        if (_failure instanceof DatabaseException)
+            throw (DatabaseException) _failure;
+        if (_failure != null)
+            throw new DatabaseException(_failure);
+        if (parseFailure instanceof IOException)
+            throw (IOException) parseFailure;
+        if (parseFailure instanceof ParserConfigurationException)
+            throw new SAXException((Exception) parseFailure);
+        if (parseFailure instanceof SAXException && parseFailure != NOT_WORDCORR)
+            throw (SAXException) parseFailure;
+        if (parseFailure instanceof RuntimeException)
+            throw (RuntimeException) parseFailure;
+        if (parseFailure instanceof Error)
+            throw (Error) parseFailure;
+        return _committed ? _collection : null;
+    }
+
+    //---------------------------------------------------------------//
+    // Writer
+    //---------------------------------------------------------------//
+
+    /**
+     * Save the queued records until the end of the document.
+     **/
+    private void write() {
+        Database db = _user.getDatabase();
+        int type = -1;
+        try {
+            db.beginBatch();
+            CollectionImport importer = null;
+            while (true) {
+                Record record = (Record) _queue.take();
+                type = record.type;
+                switch (type) {
+                    case COLLECTION :
+                        _collection = _user.makeCollection();
+                        importer = new CollectionImport(_collection, _version);
+                        importer.addCollection(record.element);
+                        break;
+                    case VARIETY :
+                        importer.addVariety(record.element);
+                        break;
+                    case ENTRY :
+                        importer.addEntry(record.element);
+                        break;
+                    case VIEW :
+                        importer.addView(record.element);
+                        break;
+                    case ANNOTATION :
+                        importer.addAnnotation(record.element);
+                        break;
+                    case PROTOSEGMENT :
+                        importer.addProtosegment(record.element);
+                        break;
+                    case GROUP :
+                        importer.addTabulatedGroup(record.element);
+                        break;
+                    case END_VIEW :
+                        importer.endView();
+                        break;
+                    case END :
+                        if (importer != null) {
+                            importer.end();
+                            db.commitBatch();
+                            _committed = true;
+                        }
+                        return;
+                    case ABORT :
+                        return;
+                }
+            }
+        } catch (Throwable e) {
+            _failure = e;
+            if (type != END)
+                drain();
+        } finally {
+            db.rollbackBatch();
+        }
+    }
+
+    /**
+     * Discard records after a failure so the parser is never blocked.
+     **/
+    private void drain() {
+        try {
+            while (true) {
+                int type = ((Record) _queue.take()).type;
+                if (type == END || type == ABORT)
+                    return;
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    //---------------------------------------------------------------//
+    // Parser
+    //---------------------------------------------------------------//
+
+    /**
+     * Queue a record for the writer.
+     **/
+    private void put(int type, Element element) throws SAXException {
+        if (_failure != null)
+            throw new SAXException("import failed");
+        try {
+            _queue.put(new Record(type, element));
+        } catch (InterruptedException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    /**
+     * Tell the writer to stop without committing.
+     **/
+    private void abort() {
+        try {
+            _queue.put(new Record(ABORT, null));
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Queue the pending collection or view header, if any.
+     **/
+    private void putHeader() throws SAXException {
+        if (_header != null) {
+            put(_headerType, _header);
+            _header = null;
+            _open.clear();
+            _text.clear();
+        }
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+        throws SAXException {
+        String parent = _path.isEmpty() ? null : (String) _path.get(_path.size() - 1);
+        _path.add(qName);
+
+        if (parent == null) {
+            if (!qName.equals("WordCorr"))
+                throw NOT_WORDCORR;
+            _version = Double.parseDouble(atts.getValue("version"));
+            return;
+        }
+
+        if (isList(qName, parent)) {
+            // lists are not kept; their elements are records
+            putHeader();
+            return;
+        }
+
+        if (_open.isEmpty()) {
+            if (qName.equals("collection") && (parent.equals("WordCorr") || parent.equals("user"))) {
+                _header = open(qName, atts);
+                _headerType = COLLECTION;
+            } else if (qName.equals("view") && parent.equals("views")) {
+                _header = open(qName, atts);
+                _headerType = VIEW;
+            } else if (getRecordType(qName, parent) >= 0) {
+                open(qName, atts);
+            }
+            return;
+        }
+
+        // part of the open record or header
+        Element elem = open(qName, atts);
+        ((Element) _open.get(_open.size() - 2)).addContent(elem);
+    }
+
+    public void endElement(String uri, String localName, String qName)
+        throws SAXException {
+        _path.remove(_path.size() - 1);
+        String parent = _path.isEmpty() ? null : (String) _path.get(_path.size() - 1);
+
+        if (qName.equals("collection") && ("WordCorr".equals(parent) || "user".equals(parent))) {
+            putHeader();
+            return;
+        }
+        if (qName.equals("view") && "views".equals(parent)) {
+            putHeader();
+            put(END_VIEW, null);
+            return;
+        }
+        if (_open.isEmpty())
+            return;
+
+        // close the element, setting the text of leaf elements
+        Element elem = (Element) _open.remove(_open.size() - 1);
+        StringBuffer text = (StringBuffer) _text.remove(_text.size() - 1);
+        if (text.length() > 0 && elem.getChildren().isEmpty())
+            elem.setText(text.toString());
+
+        if (_open.isEmpty() && elem != _header)
+            put(getRecordType(qName, parent), elem);
+    }
+
+    public void endDocument() throws SAXException {
+        put(END, null);
+    }
+
+    public void characters(char[] ch, int start, int length) {
+        if (!_text.isEmpty())
+            ((StringBuffer) _text.get(_text.size() - 1)).append(ch, start, length);
+    }
+
+    /**
+     * Open an element of the current record.
+     **/
+    private Element open(String name, Attributes atts) {
+        Element elem = new Element(name);
+        for (int i = 0; i < atts.getLength(); i++) {
+            elem.setAttribute(atts.getQName(i), atts.getValue(i));
+        }
+        _open.add(elem);
+        _text.add(new StringBuffer());
+        return elem;
+    }
+
+    /**
+     * Is the element one of the lists of a collection or view?
+     **/
+    private static boolean isList(String name, String parent) {
+        if (parent.equals("collection"))
+            return name.equals("varieties") || name.equals("data") || name.equals("views");
+        if (parent.equals("view"))
+            return name.equals("annotations")
+                || name.equals("results")
+                || name.equals("tabulated-groups");
+        return false;
+    }
+
+    /**
+     * Get the record type of an element of a list, or -1 if it is not
+     * imported.
+     **/
+    private static int getRecordType(String name, String parent) {
+        if (name.equals("variety") && parent.equals("varieties"))
+            return VARIETY;
+        if (name.equals("entry") && parent.equals("data"))
+            return ENTRY;
+        if (name.equals("annotated-datum") && parent.equals("annotations"))
+            return ANNOTATION;
+        if (name.equals("protosegment") && parent.equals("results"))
+            return PROTOSEGMENT;
+        if (name.equals("group") && parent.equals("tabulated-groups"))
+            return GROUP;
+        return -1;
+    }
+
+    /**
+     * A queued element.
+     **/
+    private static final class Record {
+        Record(int type, Element element) {
+            this.type = type;
+            this.element = element;
+        }
+
+        final int type;
+        final Element element;
+    }
+
+    private static final SAXException NOT_WORDCORR = new SAXException("not a WordCorr file");
+
+    private final User _user;
+    private final BlockingQueue _queue = new ArrayBlockingQueue(QUEUE_SIZE);
+    private final List _path = new ArrayList();
+    private final List _open = new ArrayList();
+    private final List _text = new ArrayList();
+    private Element _header;
+    private int _headerType = -1;
+    private double _version;
+    private WordCollection _collection;
+    private volatile Throwable _failure;
+    private volatile boolean _committed = false;
+}
@@ -0,0 +1,194 @@
+package org.wordcorr.db;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import org.jdom.*;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+/**
+ * XMLOutputter that writes the content of streamed elements as it is
+ * produced instead of holding the whole document in memory. Output is
+ * identical to XMLOutputter's output of the equivalent expanded tree.
+ **/
+class StreamingOutputter extends XMLOutputter {
+
+    /**
+     * Receives the child elements of a streamed element in order.
+     **/
+    interface ElementSink {
+        void addContent(Element child) throws IOException;
+    }
+
+    /**
+     * An element whose children after its static content are produced
+     * on demand. Elements given to the sink may themselves be streamed.
+     **/
+    abstract static class StreamedElement extends Element {
+        StreamedElement(String name) {
+            super(name);
+        }
+
+        /**
+         * Give this element's streamed children to the sink.
+         **/
+        abstract void writeContent(ElementSink sink) throws IOException;
+    }
+
+    /**
+     * Visitor that gives the element of each object it visits to a sink.
+     * A sink failure stops the visit, and visit() returns it as the root
+     * cause of a DatabaseException; use rethrow() to recover it.
+     **/
+    abstract static class SinkVisitor implements ObjectVisitor {
+        SinkVisitor(ElementSink sink) {
+            _sink = sink;
+        }
+
+        /**
+         * Create the element of a visited object.
+         **/
+        abstract Element createElement(Object object) throws DatabaseException;
+
+        public boolean visit(Object object) throws DatabaseException {
+            try {
+                _sink.addContent(createElement(object));
+            } catch (IOException e) {
+                throw new DatabaseException(e);
+            }
+            return true;
+        }
+
+        /**
+         * Rethrow the sink failure behind a visit's exception, or report
+         * a database failure.
+         **/
+        static void rethrow(DatabaseException e) throws IOException {
+            if (e.getRootCause() instanceof IOException)
+                throw (IOException) e.getRootCause();
+            e.printStackTrace();
+        }
+
+        private final ElementSink _sink;
+    }
+
+    /**
+     * Constructor.
+     **/
+    StreamingOutputter(Format format) {
+        super(format);
+    }
+
+    /**
+     * Replace the streamed elements of a tree with plain elements holding
+     * all of their content.
+     **/
+    static Element expand(Element element) {
+        if (element instanceof StreamedElement) {
+            final Element plain = new Element(element.getName());
+            for (Iterator it = new ArrayList(element.getAttributes()).iterator(); it.hasNext();) {
+                plain.setAttribute((Attribute) ((Attribute) it.next()).detach());
+            }
+            for (Iterator it = new ArrayList(element.getChildren()).iterator(); it.hasNext();) {
+                plain.addContent(expand((Element) ((Element) it.next()).detach()));
+            }
+            try {
+                ((StreamedElement) element).writeContent(new ElementSink() {
+                    public void addContent(Element child) {
+                        plain.addContent(expand(child));
+                    }
+                });
+            } catch (IOException e) {
+                // not thrown by an in-memory sink
+                throw new RuntimeException(e);
+            }
+            return plain;
+        }
+
+        for (Iterator it = new ArrayList(element.getChildren()).iterator(); it.hasNext();) {
+            Element child = (Element) it.next();
+            Element expanded = expand(child);
+            if (expanded != child) {
+                element.setContent(element.indexOf(child), expanded);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Print an element, writing streamed content as it is produced.
+     **/
+    protected void printElement(
+        final Writer out,
+        Element element,
+        final int level,
+        final NamespaceStack namespaces)
+        throws IOException {
+        if (!(element instanceof StreamedElement)) {
+            super.printElement(out, element, level, namespaces);
+            return;
+        }
+
+        out.write("<");
+        out.write(element.getQualifiedName());
+        printAttributes(out, element.getAttributes(), element, namespaces);
+
+        // children are indented one level down, the first one closing the
+        // start tag
+        final int[] count = new int[1];
+        ElementSink sink = new ElementSink() {
+            public void addContent(Element child) throws IOException {
+                if (count[0]++ == 0) {
+                    out.write(">");
+                }
+                newline(out);
+                indent(out, level + 1);
+                printElement(out, child, level + 1, namespaces);
+            }
+        };
+        for (Iterator it = new ArrayList(element.getChildren()).iterator(); it.hasNext();) {
+            sink.addContent((Element) it.next());
+        }
+        ((StreamedElement) element).writeContent(sink);
+
+        if (count[0] == 0) {
+            if (currentFormat.getExpandEmptyElements()) {
+                out.write("></");
+                out.write(element.getQualifiedName());
+                out.write(">");
+            } else {
+                out.write(" />");
+            }
+        } else {
+            newline(out);
+            indent(out, level);
+            out.write("</");
+            out.write(element.getQualifiedName());
+            out.write(">");
+        }
+    }
+
+    /**
+     * Write a line separator as XMLOutputter does between elements.
+     **/
+    private void newline(Writer out) throws IOException {
+        if (currentFormat.getIndent() != null) {
+            out.write(currentFormat.getLineSeparator());
+        }
+    }
+
+    /**
+     * Write the indent for a level.
+     **/
+    private void indent(Writer out, int level) throws IOException {
+        String indent = currentFormat.getIndent();
+        if (indent == null || indent.equals("")) {
+            return;
+        }
+        for (int i = 0; i < level; i++) {
+            out.write(indent);
+        }
+    }
+}
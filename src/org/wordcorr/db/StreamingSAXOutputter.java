@@ -0,0 +1,94 @@
+package org.wordcorr.db;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.jdom.*;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Sends a document to a SAX ContentHandler, producing the content of
+ * streamed elements as it is sent, so a consumer such as an XSLT
+ * TransformerHandler sees the document without it being built or
+ * written out first. Namespaces, comments and processing instructions
+ * are not sent; WordCorr documents have none.
+ **/
+class StreamingSAXOutputter {
+
+    /**
+     * Constructor.
+     **/
+    StreamingSAXOutputter(ContentHandler handler) {
+        _handler = handler;
+    }
+
+    /**
+     * Send a document.
+     **/
+    void output(Document doc) throws SAXException {
+        _handler.startDocument();
+        output(doc.getRootElement());
+        _handler.endDocument();
+    }
+
+    /**
+     * Send an element and its content.
+     **/
+    private void output(Element element) throws SAXException {
+        AttributesImpl atts = new AttributesImpl();
+        for (Iterator it = element.getAttributes().iterator(); it.hasNext();) {
+            Attribute att = (Attribute) it.next();
+            atts.addAttribute("", att.getName(), att.getQualifiedName(), "CDATA", att.getValue());
+        }
+        _handler.startElement("", element.getName(), element.getQualifiedName(), atts);
+
+        for (Iterator it = element.getContent().iterator(); it.hasNext();) {
+            Object content = it.next();
+            if (content instanceof Element) {
+                output((Element) content);
+            } else if (content instanceof Text) {
+                char[] text = ((Text) content).getText().toCharArray();
+                _handler.characters(text, 0, text.length);
+            }
+        }
+        if (element instanceof StreamingOutputter.StreamedElement) {
+            try {
+                ((StreamingOutputter.StreamedElement) element).writeContent(
+                    new StreamingOutputter.ElementSink() {
+                    public void addContent(Element child) throws IOException {
+                        try {
+                            output(child);
+                        } catch (SAXException e) {
+                            throw new WrappedException(e);
+                        }
+                    }
+                });
+            } catch (WrappedException e) {
+                throw e.getSAXException();
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        _handler.endElement("", element.getName(), element.getQualifiedName());
+    }
+
+    /**
+     * Carries a SAXException out of an ElementSink.
+     **/
+    private static final class WrappedException extends IOException {
+        WrappedException(SAXException e) {
+            _e = e;
+        }
+
+        SAXException getSAXException() {
+            return _e;
+        }
+
+        private final SAXException _e;
+    }
+
+    private final ContentHandler _handler;
+}
@@ -8,13 +8,16 @@ import org.wordcorr.gui.AppPrefs;
 import org.wordcorr.gui.Dialogs;
 import org.wordcorr.gui.Messages;
 import org.wordcorr.gui.Task;
-import java.io.File;
-import javax.xml.transform.Transformer;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import org.xml.sax.SAXException;
 
 
 /**
@@ -163,6 +166,9 @@ public class SummaryFile implements Task {
             return true;
         
         try {
+            // repair any drifted citation counts before they are reported
+            _view.checkCitationCounts(true);
+
             // caculate Frantz strengths
             _tabulatedGroupCount = _view.updateFrantzStrength();
         } catch (DatabaseException e) {
@@ -181,30 +187,29 @@ public class SummaryFile implements Task {
     
 	//davisnw -- added
     private boolean runXSLT() {
-        String in_filename = _filename + ".tmp";
         String out_filename = (_filename.indexOf(".") > 0) ? _filename : _filename + outputExtension;
+        Messages messages = AppPrefs.getInstance().getMessages();
         
-        _filename=in_filename;
-        runXML();
-
-        StreamSource xsltSource = new StreamSource(getClass().getResourceAsStream(outputXSL));
-        
+        // send the summary straight into the stylesheet
         try {
-            Transformer t = TransformerFactory.newInstance().newTransformer(xsltSource);
+            TransformerHandler handler =
+                ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler(
+                    getTemplates(outputXSL));
             OutputStream output = new BufferedOutputStream(new FileOutputStream(out_filename));
-            StreamSource xmlSource = new StreamSource(new File(in_filename));
-            StreamResult htmlSink = new StreamResult(output);
-            t.transform(xmlSource, htmlSink);
-            output.close();
-            new File(_filename).delete();
+            try {
+                handler.setResult(new StreamResult(output));
+                new StreamingSAXOutputter(handler).output(createDocument());
+            } finally {
+                output.close();
+            }
         } catch (TransformerConfigurationException e) {
-            Dialogs.msgbox(AppPrefs.getInstance().getMessages().getString("msgErrSummaryFileCreation"));
+            Dialogs.msgbox(messages.getString("msgErrSummaryFileCreation"));
             e.printStackTrace();
-        } catch (TransformerException e) {
-            Dialogs.msgbox(AppPrefs.getInstance().getMessages().getString("msgErrSummaryFileCreation"));
+        } catch (SAXException e) {
+            Dialogs.msgbox(messages.getString("msgErrSummaryFileCreation"));
             e.printStackTrace();
         } catch (FileNotFoundException e) {
-            Dialogs.msgbox(AppPrefs.getInstance().getMessages().getString("msgErrSummaryFileCreation"));
+            Dialogs.msgbox(messages.getString("msgErrSummaryFileCreation"));
             e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
@@ -213,10 +218,29 @@ public class SummaryFile implements Task {
         return true;
     }
     
-    //davisnw -- this code moved from run() to this function so that we could provide more than one
-    //output format for Summarize evidence
-    private boolean runXML() {
-        // create document
+    /**
+     * Get the compiled stylesheet for the given resource, compiling it on
+     * first use.
+     **/
+    private static Templates getTemplates(String xsl)
+        throws TransformerConfigurationException {
+        synchronized (_templates) {
+            Templates templates = (Templates) _templates.get(xsl);
+            if (templates == null) {
+                templates =
+                    TransformerFactory.newInstance().newTemplates(
+                        new StreamSource(SummaryFile.class.getResourceAsStream(xsl)));
+                _templates.put(xsl, templates);
+            }
+            return templates;
+        }
+    }
+    
+    /**
+     * Create the summary document. The view's protosegments are produced
+     * as the document is written.
+     **/
+    private Document createDocument() {
         Element element = new Element("WordCorrSummary");
         // set attributes
         Messages messages = AppPrefs.getInstance().getMessages();
@@ -224,21 +248,27 @@ public class SummaryFile implements Task {
         element.setAttribute("version", messages.getString("msgSummaryFileVersion"));
         
         element.addContent(
-                _view.getCollection().getSummaryElement(
+                _view.getCollection().getStreamedSummaryElement(
                 _view,
                 _minFrantz,
                 _maxReconstructions.intValue(),
                 _displayFrantz,
                 _includeResidue,
                 _gloss));
-        Document doc = new Document(element);
+        return new Document(element);
+    }
+    
+    //davisnw -- this code moved from run() to this function so that we could provide more than one
+    //output format for Summarize evidence
+    private boolean runXML() {
+        Messages messages = AppPrefs.getInstance().getMessages();
         
         // create file
         try {
             String filename = (_filename.indexOf(".") > 0) ? _filename : _filename + ".xml";
             OutputStream output = new BufferedOutputStream(new FileOutputStream(filename));
-            XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-            outputter.output(doc, output);
+            XMLOutputter outputter = new StreamingOutputter(Format.getPrettyFormat());
+            outputter.output(createDocument(), output);
             output.close();
         } catch (FileNotFoundException e) {
             Dialogs.msgbox(messages.getString("msgErrSummaryFileCreation"));
@@ -246,11 +276,12 @@ public class SummaryFile implements Task {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        element = null;
-        doc = null;
         return true;
     }
     
+    // compiled stylesheets by resource name
+    private static final Map _templates = new HashMap();
+    
     private String outputXSL = null; // outputXSL=null means don't apply xslt.
     private String outputExtension=""; //the extension provided to the output filename if no extension is in the filename
     
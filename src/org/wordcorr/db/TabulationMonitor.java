@@ -0,0 +1,32 @@
+package org.wordcorr.db;
+
+/**
+ * Follows the progress of tabulating the entries of a view in a batch,
+ * and can stop it.
+ **/
+public interface TabulationMonitor {
+
+    /**
+     * The entries are being prepared.
+     **/
+    int PREPARING  = 0;
+
+    /**
+     * The prepared entries are being tabulated.
+     **/
+    int TABULATING = 1;
+
+    /**
+     * Report progress. Called from the thread tabulating.
+     * @param phase PREPARING or TABULATING.
+     * @param done The number of entries done in this phase.
+     * @param count The number of entries in this phase.
+     **/
+    void progress(int phase, int done, int count);
+
+    /**
+     * Check whether tabulating should stop. Nothing is tabulated if it
+     * stops. May be called from worker threads.
+     **/
+    boolean isCancelled();
+}
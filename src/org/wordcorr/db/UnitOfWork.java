@@ -0,0 +1,166 @@
+package org.wordcorr.db;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * A batch of database work sharing one connection and one transaction.
+ * Statements are prepared once per unit of work. Updates are queued with
+ * addBatch() where the driver supports it and are flushed before any
+ * other statement runs, so reads always see earlier writes.
+ **/
+class UnitOfWork {
+
+    /**
+     * Constructor.
+     **/
+    UnitOfWork(Connection con) throws SQLException {
+        _con = con;
+        _con.setAutoCommit(false);
+        _batchUpdates = con.getMetaData().supportsBatchUpdates();
+    }
+
+    /**
+     * Get the connection of this unit of work.
+     **/
+    Connection getConnection() {
+        return _con;
+    }
+
+    /**
+     * Begin a nested batch.
+     **/
+    void begin() {
+        popCommitted();
+        _depth++;
+    }
+
+    /**
+     * Commit the innermost open batch.
+     * @return true if it is the outermost batch, which must now really
+     * be committed.
+     **/
+    boolean end() {
+        popCommitted();
+        if (_depth == 1)
+            return true;
+        _committed = 1;
+        return false;
+    }
+
+    /**
+     * Release the innermost batch after its commit, as rollbackBatch()
+     * does from a finally block.
+     * @return false if the batch was not committed, so the whole unit of
+     * work must be rolled back.
+     **/
+    boolean release() {
+        if (_committed == 0)
+            return false;
+        _committed--;
+        _depth--;
+        return true;
+    }
+
+    /**
+     * Drop nested batches that were committed but never released.
+     **/
+    private void popCommitted() {
+        _depth -= _committed;
+        _committed = 0;
+    }
+
+    /**
+     * Get the prepared statement for the given SQL, flushing queued
+     * updates of any other statement first.
+     **/
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement stmt = (PreparedStatement) _statements.get(sql);
+        if (stmt != _pending) {
+            flush();
+        }
+        if (stmt == null) {
+            stmt = _con.prepareStatement(sql);
+            _statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Is the statement one kept by this unit of work?
+     **/
+    boolean isShared(Statement stmt) {
+        return _statements.containsValue(stmt);
+    }
+
+    /**
+     * Queue an update on a statement returned by prepareStatement().
+     * Drivers without batch support execute the update immediately.
+     **/
+    void queueUpdate(PreparedStatement stmt) throws SQLException {
+        if (!_batchUpdates) {
+            stmt.executeUpdate();
+            return;
+        }
+        if (stmt != _pending) {
+            flush();
+        }
+        stmt.addBatch();
+        _pending = stmt;
+    }
+
+    /**
+     * Execute any queued updates.
+     **/
+    void flush() throws SQLException {
+        if (_pending != null) {
+            PreparedStatement stmt = _pending;
+            _pending = null;
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Flush and commit this unit of work.
+     **/
+    void commit() throws SQLException {
+        flush();
+        _con.commit();
+    }
+
+    /**
+     * Roll back this unit of work.
+     **/
+    void rollback() {
+        _pending = null;
+        try {
+            _con.rollback();
+        } catch (SQLException ignored) {}
+    }
+
+    /**
+     * Close the statements and return the connection.
+     **/
+    void close() {
+        for (Iterator it = _statements.values().iterator(); it.hasNext();) {
+            try {
+                ((Statement) it.next()).close();
+            } catch (SQLException ignored) {}
+        }
+        _statements.clear();
+        try {
+            _con.setAutoCommit(true);
+        } catch (SQLException ignored) {}
+        try {
+            _con.close();
+        } catch (SQLException ignored) {}
+    }
+
+    private final Connection _con;
+    private final boolean _batchUpdates;
+    private final Map _statements = new HashMap();
+    private PreparedStatement _pending;
+    private int _depth = 0;
+    // committed nested batches not yet released, innermost first
+    private int _committed = 0;
+}
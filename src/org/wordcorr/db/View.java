@@ -1,6 +1,7 @@
 package org.wordcorr.db;
 
 import org.jdom.*;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -94,6 +95,13 @@ public class View extends AbstractPersistent {
         return _collection;
     }
 
+    /**
+     * Get the segment symbol table of this view's correspondence sets.
+     **/
+    public SegmentSymbols getSegmentSymbols() {
+        return getDatabase().getSegmentSymbols(getID());
+    }
+
     /**
      * Reset change flags.
      **/
@@ -113,6 +121,8 @@ public class View extends AbstractPersistent {
      * Delete this view's unused groups for the given entry.
      **/
     public void deleteUnusedGroups(final Entry entry) throws DatabaseException {
+        CitationCounts.subtract(getDatabase(), CitationCounts.UNUSED_GROUPS,
+            new long[] { getID(), entry.getID() });
         getDatabase().retrieveObjects(new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
                 return "DELETE_UNUSED_GROUPS";
@@ -128,6 +138,7 @@ public class View extends AbstractPersistent {
                 return null;
             }
         });
+        getDatabase().unmapObjects(Group.class);
     }
 
     /**
@@ -148,12 +159,22 @@ public class View extends AbstractPersistent {
                 return null;
             }
         });
+        getDatabase().unmapObjects(Protosegment.class);
     }
 
     /**
      * Get this view's alignments for the given entry.
      **/
     public List getAlignments(final Entry entry) throws DatabaseException {
+        // index the entry's data so alignments share its datums rather
+        // than reloading each one
+        List allData = entry.getData();
+        final Map dataByID = new HashMap();
+        for (Iterator it = allData.iterator(); it.hasNext();) {
+            Datum datum = (Datum) it.next();
+            dataByID.put(new Long(datum.getID()), datum);
+        }
+
         List existing = getDatabase().retrieveObjects(new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
                 return "GET_ALIGNMENTS";
@@ -167,8 +188,11 @@ public class View extends AbstractPersistent {
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
                 try {
-                    Datum datum = new Datum(db, rs.getLong(1), entry);
-                    datum.revert();
+                    Datum datum = (Datum) dataByID.get(new Long(rs.getLong(1)));
+                    if (datum == null) {
+                        datum = new Datum(db, rs.getLong(1), entry);
+                        datum.revert();
+                    }
                     Alignment alignment = new Alignment(db, rs.getLong(2), View.this, datum);
                     alignment.updateObject(rs);
                     return alignment;
@@ -178,39 +202,45 @@ public class View extends AbstractPersistent {
             }
         });
 
-        List allData = entry.getData();
+        return completeAlignments(allData, existing);
+    }
+
+    /**
+     * Add alignments for an entry's unannotated datums to its existing
+     * alignments and sort them in view member order.
+     * @param allData The entry's data.
+     * @param existing The entry's saved alignments in this view.
+     **/
+    List completeAlignments(List allData, List existing) {
+        // member order, indexed once
+        final Map order = new HashMap();
+        for (int i = 0; i < _varieties.size(); i++) {
+            order.put(_varieties.get(i), new Integer(i));
+        }
+
         List ret = new ArrayList(existing);
 
         // create new items for each datum not in the result set
         // (unannotated datums)
-        // O(n^2) for now
+        Set aligned = new HashSet();
+        for (Iterator it = existing.iterator(); it.hasNext();) {
+            aligned.add(((Alignment) it.next()).getDatum());
+        }
         for (Iterator it = allData.iterator(); it.hasNext();) {
             Datum datum = (Datum) it.next();
-
-            boolean found = false;
-            for (Iterator it2 = existing.iterator(); it2.hasNext();) {
-                Alignment alignment = (Alignment) it2.next();
-
-                if (alignment.getDatum().equals(datum)) {
-                    found = true;
-                    break;
-                }
-            }
-
-            if (!found && getMembers().contains(datum.getVariety())) {
+            if (!aligned.contains(datum) && order.containsKey(datum.getVariety())) {
                 ret.add(makeAlignment(datum));
             }
         }
 
         Collections.sort(ret, new Comparator() {
             public int compare(Object o1, Object o2) {
-                Alignment a1 = (Alignment) o1;
-                Alignment a2 = (Alignment) o2;
-
-                int i1 = _varieties.indexOf(a1.getDatum().getVariety());
-                int i2 = _varieties.indexOf(a2.getDatum().getVariety());
+                Integer i1 = (Integer) order.get(((Alignment) o1).getDatum().getVariety());
+                Integer i2 = (Integer) order.get(((Alignment) o2).getDatum().getVariety());
+                int v1 = (i1 == null) ? -1 : i1.intValue();
+                int v2 = (i2 == null) ? -1 : i2.intValue();
 
-                return i1 < i2 ? -1 : i1 > i2 ? 1 : 0;
+                return v1 < v2 ? -1 : v1 > v2 ? 1 : 0;
             }
         });
 
@@ -240,75 +270,87 @@ public class View extends AbstractPersistent {
     }
 
     /**
-     * Get grapheme clusters.
+     * Get the untabulated entries numbered within the given range.
      **/
-    public List getGraphemeClusters() throws DatabaseException {
-        List allData = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+    public List getUntabulatedEntries(final int fromEntryNum, final int toEntryNum)
+        throws DatabaseException {
+        return getDatabase().retrieveObjects(new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
-                return "GET_GRAPHEME_CLUSTERS";
+                return "GET_UNTABULATED_ENTRIES_IN_ENTRY_NUM_RANGE";
             }
 
             public void setRetrieveAllParameters(PreparedStatement stmt)
                 throws SQLException {
                 stmt.setLong(1, getID());
+                stmt.setInt(2, fromEntryNum);
+                stmt.setInt(3, toEntryNum);
             }
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
-                return rs.getString(1);
+                Entry entry = new Entry(db, rs.getLong(1), _collection);
+                entry.updateObject(rs);
+                return entry;
             }
         });
+    }
 
-        // extract grapheme clusters
-        List ret = new ArrayList();
-        for (Iterator it = allData.iterator(); it.hasNext();) {
-            String data = (String) it.next();
-            int delim = data.indexOf(":");
-            String vector = data.substring(0, delim);
-            String rawDatum = data.substring(delim + 1);
-
-            // extract grapheme cluster
-            int pos = 0;
-            int startpos = 0;
-            for (int i = 0; i < vector.length(); i++) {
-                switch (vector.charAt(i)) {
-                    case Alignment.HOLD_SYMBOL :
-                        pos++;
-                        break;
-                    case Alignment.GRAPHEME_CLUSTER_START :
-                        startpos = pos;
-                        break;
-                    case Alignment.GRAPHEME_CLUSTER_END :
-                        String cluster = rawDatum.substring(startpos, pos);
-                        if (!ret.contains(cluster))
-                            ret.add(cluster);
-                        break;
-                    default :
-                        break;
-                }
+    /**
+     * Get the entries with groups in this view, tabulated or not.
+     **/
+    public List getGroupedEntries() throws DatabaseException {
+        return getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_GROUPED_ENTRIES";
             }
-        }
 
-        Collections.sort(ret, new Comparator() {
-            public int compare(Object o1, Object o2) {
-                return ((String) o1).compareTo((String) o2);
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                Entry entry = new Entry(db, rs.getLong(1), _collection);
+                entry.updateObject(rs);
+                return entry;
             }
         });
+    }
 
-        return ret;
+    /**
+     * Get the keys and entry numbers of the untabulated entries.
+     **/
+    public EntryIndex getUntabulatedEntryIndex() throws DatabaseException {
+        return EntryIndex.read(getDatabase(), "GET_UNTABULATED_ENTRY_INDEX", getID());
+    }
+
+    /**
+     * Get grapheme clusters.
+     **/
+    public List getGraphemeClusters() throws DatabaseException {
+        List clusters = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_GRAPHEME_CLUSTERS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                return rs.getString(1);
+            }
+        });
+
+        return new ArrayList(new TreeSet(clusters));
     }
 
     /**
      * Undefine grapheme clusters.
      **/
-    public void undefineGraphemeCluster(String graphemeCluster)
+    public void undefineGraphemeCluster(final String graphemeCluster)
         throws DatabaseException {
-        // construct search string
-        final StringBuffer search = new StringBuffer(graphemeCluster.length() + 4);
-        search.append("%" + Alignment.GRAPHEME_CLUSTER_START);
-        for (int i = 0; i < graphemeCluster.length(); i++)
-            search.append("_");
-        search.append(Alignment.GRAPHEME_CLUSTER_END + "%");
-
+        // alignments tagging the cluster
         List allData = getDatabase().retrieveObjects(new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
                 return "GET_UNDEFINE_GRAPHEME_CLUSTERS";
@@ -317,89 +359,72 @@ public class View extends AbstractPersistent {
             public void setRetrieveAllParameters(PreparedStatement stmt)
                 throws SQLException {
                 stmt.setLong(1, getID());
-                stmt.setString(2, search.toString());
+                stmt.setString(2, graphemeCluster);
             }
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
-                return rs.getString(1);
+                return new Object[] {
+                    new Long(rs.getLong(1)),
+                    rs.getString(2),
+                    rs.getString(3),
+                    new Long(rs.getLong(4))};
             }
         });
+        if (allData.isEmpty())
+            return;
 
-        // extract grapheme clusters and compare
-        for (Iterator it = allData.iterator(); it.hasNext();) {
-            String data = (String) it.next();
-            int delim1 = data.indexOf(":");
-            int delim2 = data.indexOf(":", delim1 + 1);
-            int delim3 = data.lastIndexOf(":");
-            String vector = data.substring(0, delim1);
-            String rawDatum = data.substring(delim1 + 1, delim2);
-            long groupID = Long.parseLong(data.substring(delim2 + 1, delim3));
-            long alignmentID = Long.parseLong(data.substring(delim3 + 1));
-
-            // extract grapheme cluster
-            boolean undefine = false;
-            int pos = 0;
-            int vectorpos = 0;
-            int startpos = 0;
-            for (int i = 0; i < vector.length(); i++) {
-                switch (vector.charAt(i)) {
-                    case Alignment.HOLD_SYMBOL :
-                        pos++;
-                        break;
-                    case Alignment.GRAPHEME_CLUSTER_START :
-                        startpos = pos;
-                        vectorpos = i;
-                        break;
-                    case Alignment.GRAPHEME_CLUSTER_END :
-                        String cluster = rawDatum.substring(startpos, pos);
-                        if (cluster.equals(graphemeCluster)) {
-                            // save new vector
-                            vector =
-                                vector.substring(0, vectorpos)
-                                    + vector.substring(vectorpos + 1, i)
-                                    + vector.substring(i + 1);
-
-                            // reset
-                            i = (i >= 2) ? i - 2 : 0;
-                            vectorpos = i;
-                            undefine = true;
-                        }
-                        break;
-                    default :
-                        break;
-                }
-            }
-
-            // undefine
-            if (undefine) {
-                // update alignment vector
-                final String updateVector = new String(vector);
-                final long updateID = alignmentID;
-                getDatabase().retrieveObjects(new RetrieveAllParameters() {
+        Database db = getDatabase();
+        List alignmentIDs = new ArrayList();
+        db.beginBatch();
+        try {
+            // remove tags of matching grapheme clusters
+            Set groupIDs = new LinkedHashSet();
+            for (Iterator it = allData.iterator(); it.hasNext();) {
+                Object[] data = (Object[]) it.next();
+                final long alignmentID = ((Long) data[0]).longValue();
+                final String vector =
+                    AlignmentVector.valueOf((String) data[1])
+                        .undefineGraphemeCluster((String) data[2], graphemeCluster)
+                        .toString();
+                db.retrieveObjects(new RetrieveAllParameters() {
                     public String getRetrieveAllSQLKey() {
                         return "UPDATE_ALIGNMENT_VECTOR";
                     }
 
                     public void setRetrieveAllParameters(PreparedStatement stmt)
                         throws SQLException {
-                        stmt.setString(1, updateVector);
-                        stmt.setLong(2, updateID);
+                        stmt.setString(1, vector);
+                        stmt.setLong(2, alignmentID);
                     }
 
                     public Object createObject(Database db, ResultSet rs) throws SQLException {
                         return null;
                     }
                 });
+                alignmentIDs.add(data[0]);
+                groupIDs.add(data[3]);
+            }
+            GraphemeClusters.remove(this, graphemeCluster);
 
-                // untabulate group
-                Group group = new Group(getDatabase(), groupID, this, null);
+            // untabulate groups
+            for (Iterator it = groupIDs.iterator(); it.hasNext();) {
+                Group group = new Group(db, ((Long) it.next()).longValue(), this, null);
                 group.revert();
                 group.retabulate();
-
-                undefine = false;
             }
+            db.commitBatch();
+        } finally {
+            db.rollbackBatch();
         }
 
+        // reload alignments already in the identity map
+        for (Iterator it = alignmentIDs.iterator(); it.hasNext();) {
+            Persistent alignment =
+                db.getMappedObject(Alignment.class, ((Long) it.next()).longValue());
+            if (alignment != null) {
+                alignment.revert();
+            }
+        }
     }
 
     /**
@@ -447,11 +472,20 @@ public class View extends AbstractPersistent {
     /**
      * Get this view's groups that pass threshold for the given entry.
      **/
-    public List getThresholdGroups(final Entry entry) throws DatabaseException {
+    public List getThresholdGroups(Entry entry) throws DatabaseException {
+        return getThresholdGroups(entry, false);
+    }
+
+    /**
+     * Get this view's groups that pass threshold for the given entry.
+     * @param includeDone Include the groups already tabulated.
+     **/
+    public List getThresholdGroups(final Entry entry, final boolean includeDone)
+        throws DatabaseException {
         // get groups that meet or exceed threshold
         List groups = getDatabase().retrieveObjects(new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
-                return "GET_THRESHOLD_GROUPS";
+                return includeDone ? "GET_ALL_THRESHOLD_GROUPS" : "GET_THRESHOLD_GROUPS";
             }
 
             public void setRetrieveAllParameters(PreparedStatement stmt)
@@ -500,7 +534,57 @@ public class View extends AbstractPersistent {
      **/
     public List getTabulatedGroups() throws DatabaseException {
         // get groups that have been tabulated
-        List groups = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+        return getDatabase().retrieveObjects(getTabulatedGroupsParameters());
+    }
+
+    /**
+     * Visit this view's tabulated groups as they are read.
+     **/
+    void visitTabulatedGroups(ObjectVisitor visitor) throws DatabaseException {
+        getDatabase().visitObjects(
+            getTabulatedGroupsParameters(),
+            Database.DEFAULT_FETCH_SIZE,
+            visitor);
+    }
+
+    /**
+     * Visit this view's annotated alignments as they are read, in entry
+     * number and view member order. Alignments of unannotated datums,
+     * which have no group, are left out. Each alignment comes with its
+     * own datum, entry and group, holding only what its element needs.
+     **/
+    void visitAnnotations(ObjectVisitor visitor) throws DatabaseException {
+        getDatabase().visitObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_ANNOTATIONS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                Entry entry = new Entry(db, rs.getLong(10), getCollection());
+                int entryNum = rs.getInt(11);
+                entry.setEntryNum(rs.wasNull() ? null : new Integer(entryNum));
+                Datum datum = new Datum(db, rs.getLong(1), entry);
+                datum.setName(rs.getString(12));
+                Group group = new Group(db, rs.getLong(9), View.this, entry);
+                group.setName(rs.getString(13));
+
+                Alignment alignment = new Alignment(db, rs.getLong(2), View.this, datum);
+                alignment.updateObject(rs, Collections.singletonMap(new Long(group.getID()), group));
+                return alignment;
+            }
+        }, Database.DEFAULT_FETCH_SIZE, visitor);
+    }
+
+    /**
+     * Get the parameters retrieving this view's tabulated groups.
+     **/
+    private RetrieveAllParameters getTabulatedGroupsParameters() {
+        return new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
                 return "GET_TABULATED_GROUPS";
             }
@@ -518,8 +602,7 @@ public class View extends AbstractPersistent {
                 group.setDone(rs.getInt(7) != 0);
                 return group;
             }
-        });
-        return groups;
+        };
     }
 
     /**
@@ -580,7 +663,34 @@ public class View extends AbstractPersistent {
         final String displayFrantz)
         throws DatabaseException {
         // get groups that have been tabulated
-        List groups = getDatabase().retrieveObjects(new RetrieveAllParameters() {
+        return getDatabase().retrieveObjects(
+            getSummaryClusterGroupsParameters(cluster, minFrantz, displayFrantz));
+    }
+
+    /**
+     * Visit a cluster's tabulated groups above a minimum Frantz strength,
+     * strongest first, as they are read.
+     **/
+    void visitSummaryClusterGroups(
+        Cluster cluster,
+        double minFrantz,
+        String displayFrantz,
+        ObjectVisitor visitor)
+        throws DatabaseException {
+        getDatabase().visitObjects(
+            getSummaryClusterGroupsParameters(cluster, minFrantz, displayFrantz),
+            Database.DEFAULT_FETCH_SIZE,
+            visitor);
+    }
+
+    /**
+     * Get the parameters retrieving a cluster's summary groups.
+     **/
+    private RetrieveAllParameters getSummaryClusterGroupsParameters(
+        final Cluster cluster,
+        final double minFrantz,
+        final String displayFrantz) {
+        return new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
                 return displayFrantz.equals("Protosegment")
                     ? "GET_SUMMARY_CLUSTER_GROUPS_BY_FRANTZ_PROTO"
@@ -605,8 +715,7 @@ public class View extends AbstractPersistent {
                 group.setAllCitationsWithResidue(rs.getInt(11) != 0);
                 return group;
             }
-        });
-        return groups;
+        };
     }
 
     /**
@@ -626,8 +735,7 @@ public class View extends AbstractPersistent {
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
                 try {
-                    Zone zone = new Zone(db, rs.getLong(1));
-                    zone.revert();
+                    Zone zone = (Zone) lookup(new Zone(db, rs.getLong(1)));
                     Protosegment proto = new Protosegment(db, rs.getLong(2), View.this, zone);
                     proto.updateObject(rs);
                     return proto;
@@ -655,8 +763,7 @@ public class View extends AbstractPersistent {
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
                 try {
-                    Zone zone = new Zone(db, rs.getLong(1));
-                    zone.revert();
+                    Zone zone = (Zone) lookup(new Zone(db, rs.getLong(1)));
                     Protosegment proto = new Protosegment(db, rs.getLong(2), View.this, zone);
                     proto.updateObject(rs);
                     return proto;
@@ -683,8 +790,7 @@ public class View extends AbstractPersistent {
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
                 try {
-                    Zone zone = new Zone(db, rs.getLong(1));
-                    zone.revert();
+                    Zone zone = (Zone) lookup(new Zone(db, rs.getLong(1)));
                     Protosegment proto = new Protosegment(db, rs.getLong(2), View.this, zone);
                     proto.updateObject(rs);
                     return proto;
@@ -696,35 +802,47 @@ public class View extends AbstractPersistent {
     }
 
     /**
-     * Get this view's protosegments.
+     * Get the refine table rows of this view's protosegments.
      **/
-    public List getRefineTable() throws DatabaseException {
-        return getDatabase().retrieveObjects(new RetrieveAllParameters() {
+    public RefineTable getRefineTable() throws DatabaseException {
+        return getRefineTable("GET_REFINE_TABLE", getID());
+    }
+
+    /**
+     * Get the refine table rows of one of this view's protosegments.
+     **/
+    public RefineTable getRefineTable(Protosegment protosegment) throws DatabaseException {
+        return getRefineTable("GET_REFINE_PROTOSEGMENT_TABLE", protosegment.getID());
+    }
+
+    /**
+     * Read refine table rows.
+     * @param key Key of the view or protosegment, as the query takes.
+     **/
+    private RefineTable getRefineTable(final String sqlkey, final long key)
+        throws DatabaseException {
+        final RefineTable table = new RefineTable();
+        getDatabase().visitObjects(new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
-                return "GET_REFINE_TABLE";
+                return sqlkey;
             }
 
             public void setRetrieveAllParameters(PreparedStatement stmt)
                 throws SQLException {
-                stmt.setLong(1, getID());
+                stmt.setLong(1, key);
             }
 
             public Object createObject(Database db, ResultSet rs) throws SQLException {
-                Object[] objs =
-                    {
-                        rs.getString(1),
-                        rs.getString(2),
-                        rs.getString(3),
-                        new Integer(rs.getInt(4)),
-                        rs.getString(5),
-                        rs.getString(6),
-                        rs.getString(7),
-                        rs.getString(8),
-                        rs.getString(9),
-                        rs.getString(10)};
-                return objs;
+                // rows are read into the table
+                table.add(rs);
+                return null;
+            }
+        }, Database.DEFAULT_FETCH_SIZE, new ObjectVisitor() {
+            public boolean visit(Object object) {
+                return true;
             }
         });
+        return table;
     }
 
     /**
@@ -771,77 +889,49 @@ public class View extends AbstractPersistent {
     }
 
     /**
-     * Compute Frantz strenth for tabulated groups in view and update.
+     * Tabulate, without the user, the untabulated entries whose
+     * correspondence sets match the existing clusters. Runs on the
+     * calling thread.
+     * @param retabulate Also retabulate groups already tabulated whose
+     * sets have changed.
+     * @param monitor Receives progress and can cancel.
+     * @return The tabulator, holding the counts of entries tabulated.
      **/
-    public int updateFrantzStrength() throws DatabaseException {
-        int frantzN = getFrantzStrengthGroupCount();
-        List groups = getTabulatedThresholdGroups();
-
-        // N minimum set to 50
-        double n =
-            Math.rint(
-                ((Math.log(((frantzN < 50) ? 50 : frantzN) / 100.) / Math.log(10.)) * 21) + 9);
-        for (Iterator it = groups.iterator(); it.hasNext();) {
-            Group group = (Group) it.next();
+    public ViewTabulator tabulateAll(boolean retabulate, TabulationMonitor monitor)
+        throws DatabaseException {
+        ViewTabulator tabulator = new ViewTabulator(this, retabulate, monitor);
+        tabulator.run();
+        return tabulator;
+    }
 
-            // init accumulators
-            int pcount = 0;
-            double acluster = 0.;
-            double aproto = 0.;
-            StringBuffer reconstruction = new StringBuffer();
-            boolean allCitationsWithResidue = true;
-            String grp = group.getEntry().getEntryNum() + group.getName();
-
-            // process each citation
-            for (Iterator itc = group.getCitations().iterator(); itc.hasNext();) {
-                Citation citation = (Citation) itc.next();
-                pcount++;
-                Cluster cluster = citation.getCorrespondenceSet().getCluster();
-                double ccluster = cluster.getCitationCount();
-                Protosegment proto = cluster.getProtosegment();
-                double cproto = proto.getCitationCount();
-                reconstruction.append(proto.getProtosegment());
-
-                acluster = getFrantzAccumulator(ccluster, acluster, n);
-                aproto = getFrantzAccumulator(cproto, aproto, n);
-
-                // check residue protosegments
-                if (!proto.getZone().getAbbreviation().equals("RES"))
-                    allCitationsWithResidue = false;
-            }
-            if (pcount > 0) {
-                double frantzCluster = acluster / pcount;
-                double frantzProtosegment = aproto / pcount;
-                group.setReconstruction(reconstruction.toString());
-                group.setFrantzCluster(frantzCluster);
-                group.setFrantzProtosegment(frantzProtosegment);
-                group.setAllCitationsWithResidue(allCitationsWithResidue);
-                group.save();
-            }
-        }
-        return frantzN;
+    /**
+     * Check the stored citation counts of this view's clusters and
+     * protosegments, optionally recounting any that are off.
+     * @return The number of clusters and protosegments found off.
+     **/
+    public int checkCitationCounts(boolean rebuild) throws DatabaseException {
+        return CitationCounts.verify(this, rebuild);
     }
 
     /**
-     * Compute Frantz strenth accumulator.
+     * Compute Frantz strenth for tabulated groups in view and update.
      **/
-    private double getFrantzAccumulator(double c, double a, double n) {
-        double acc = a;
-        if (c >= n)
-            acc += 1.0;
-        if ((c < n) && (c > 2))
-            acc += c / n;
-        if (c == 2.)
-            acc -= 0.5;
-        if (c == 1.)
-            acc -= 1.0;
-        return acc;
+    public int updateFrantzStrength() throws DatabaseException {
+        return new FrantzStrength(this).update();
     }
 
     /**
      * Get element representing this view.
      **/
     public Element getElement() {
+        return StreamingOutputter.expand(getStreamedElement());
+    }
+
+    /**
+     * Get element representing this view, with its annotations, results
+     * and tabulated groups written one at a time by a StreamingOutputter.
+     **/
+    Element getStreamedElement() {
         Element element = new Element("view");
 
         // set attributes
@@ -864,38 +954,49 @@ public class View extends AbstractPersistent {
             memberElem.setAttribute("order-number", ++i + "");
         }
 
-        try {
-            // annotations
-            Element listElem = new Element("annotations");
-            element.addContent(listElem);
-            for (Iterator it = getCollection().getEntries().iterator(); it.hasNext();) {
-                Entry entry = (Entry) it.next();
-                for (Iterator it2 = getAlignments(entry).iterator(); it2.hasNext();) {
-                    Alignment alignment = (Alignment) it2.next();
-                    // skip records for unannotated datums 
-                    if (alignment.getGroup() != null)
-                        listElem.addContent(alignment.getElement());
+        // annotations
+        element.addContent(new StreamingOutputter.StreamedElement("annotations") {
+            void writeContent(StreamingOutputter.ElementSink sink) throws IOException {
+                try {
+                    visitAnnotations(new StreamingOutputter.SinkVisitor(sink) {
+                        Element createElement(Object object) {
+                            return ((Alignment) object).getElement();
+                        }
+                    });
+                } catch (DatabaseException e) {
+                    StreamingOutputter.SinkVisitor.rethrow(e);
                 }
             }
+        });
 
-            // results
-            listElem = new Element("results");
-            element.addContent(listElem);
-            for (Iterator it = getProtosegments().iterator(); it.hasNext();) {
-                Protosegment protosegment = (Protosegment) it.next();
-                listElem.addContent(protosegment.getElement());
+        // results
+        element.addContent(new StreamingOutputter.StreamedElement("results") {
+            void writeContent(StreamingOutputter.ElementSink sink) throws IOException {
+                try {
+                    for (Iterator it = getProtosegments().iterator(); it.hasNext();) {
+                        Protosegment protosegment = (Protosegment) it.next();
+                        sink.addContent(protosegment.getElement());
+                    }
+                } catch (DatabaseException e) {
+                    e.printStackTrace();
+                }
             }
+        });
 
-            // tabulated groups
-            listElem = new Element("tabulated-groups");
-            element.addContent(listElem);
-            for (Iterator it = getTabulatedGroups().iterator(); it.hasNext();) {
-                Group group = (Group) it.next();
-                listElem.addContent(group.getElement());
+        // tabulated groups
+        element.addContent(new StreamingOutputter.StreamedElement("tabulated-groups") {
+            void writeContent(StreamingOutputter.ElementSink sink) throws IOException {
+                try {
+                    visitTabulatedGroups(new StreamingOutputter.SinkVisitor(sink) {
+                        Element createElement(Object object) {
+                            return ((Group) object).getElement();
+                        }
+                    });
+                } catch (DatabaseException e) {
+                    StreamingOutputter.SinkVisitor.rethrow(e);
+                }
             }
-        } catch (DatabaseException e) {
-            e.printStackTrace();
-        }
+        });
 
         return element;
     }
@@ -909,6 +1010,25 @@ public class View extends AbstractPersistent {
         String displayFrantz,
         boolean includeResidue,
         String gloss) {
+        return StreamingOutputter.expand(
+            getStreamedSummaryElement(
+                minFrantz,
+                maxReconstructions,
+                displayFrantz,
+                includeResidue,
+                gloss));
+    }
+
+    /**
+     * Get summary element representing this view, with its protosegments
+     * written one at a time.
+     **/
+    Element getStreamedSummaryElement(
+        final float minFrantz,
+        final int maxReconstructions,
+        final String displayFrantz,
+        final boolean includeResidue,
+        final String gloss) {
         Element element = new Element("view");
 
         // set attributes
@@ -933,28 +1053,38 @@ public class View extends AbstractPersistent {
             memberElem.setAttribute("order-number", ++i + "");
         }
 
-        try {
-            // protosegments
-            Element listElem = new Element("protosegments");
-            element.addContent(listElem);
-            for (Iterator it = getProtosegments().iterator(); it.hasNext();) {
-                Protosegment protosegment = (Protosegment) it.next();
-                // check residue protosegment
-                if (!includeResidue && protosegment.getZone().getAbbreviation().equals("RES"))
-                    continue;
-
-                listElem.addContent(
-                    protosegment.getSummaryElement(
-                        this,
-                        minFrantz,
-                        maxReconstructions,
-                        displayFrantz,
-                        includeResidue,
-                        gloss));
+        // protosegments, summarized in parallel and written in order
+        element.addContent(new StreamingOutputter.StreamedElement("protosegments") {
+            void writeContent(StreamingOutputter.ElementSink sink) throws IOException {
+                List protosegments = new ArrayList();
+                try {
+                    for (Iterator it = getProtosegments().iterator(); it.hasNext();) {
+                        Protosegment protosegment = (Protosegment) it.next();
+                        // check residue protosegment
+                        if (!includeResidue
+                            && protosegment.getZone().getAbbreviation().equals("RES"))
+                            continue;
+                        protosegments.add(protosegment);
+                    }
+                } catch (DatabaseException e) {
+                    e.printStackTrace();
+                }
+
+                // a group's summary reads its datums, and their
+                // varieties while they are read
+                new ParallelElements(getDatabase(), 2) {
+                    Element createElement(Object item) {
+                        return ((Protosegment) item).getSummaryElement(
+                            View.this,
+                            minFrantz,
+                            maxReconstructions,
+                            displayFrantz,
+                            includeResidue,
+                            gloss);
+                    }
+                }.writeContent(protosegments, sink);
             }
-        } catch (DatabaseException e) {
-            e.printStackTrace();
-        }
+        });
 
         return element;
     }
@@ -1166,17 +1296,11 @@ public class View extends AbstractPersistent {
     }
 
     /**
-     * Generates object and all children from Element and saves in db.
+     * Sets values from the view element, excluding its annotations,
+     * results and tabulated groups, and saves in db.
      **/
-    public void generateFromElement(
-        Element element,
-        Map varieties,
-        Map entries,
-        Map datumsByEntry)
+    void generateHeaderFromElement(Element element, Map varieties)
         throws DatabaseException {
-        if (element == null)
-            return;
-
         // set values
         setName(element.getAttributeValue("view-name"));
         String threshold = element.getAttributeValue("threshold");
@@ -1213,67 +1337,65 @@ public class View extends AbstractPersistent {
 
         markImported();
         save();
+    }
 
-        // annotations
-        Map groups = new HashMap();
-        Element listElem = element.getChild("annotations");
-        for (Iterator it = listElem.getChildren("annotated-datum").iterator();
-            it.hasNext();
-            ) {
-            Element elem = (Element) it.next();
-            // get or create group if new
-            String entryNumber = elem.getAttributeValue("entry-number");
-            String tag = elem.getAttributeValue("tag");
-            String groupKey = entryNumber + ":" + tag;
-            Group group = (Group) groups.get(groupKey);
-            if (group == null) {
-                Entry ent = (Entry) entries.get(entryNumber);
-                group = makeGroup((Entry) entries.get(entryNumber));
-                group.setName(tag);
-                group.save();
-                groups.put(groupKey, group);
-            }
-            // get datum
-            Map datums = (Map) datumsByEntry.get(elem.getAttributeValue("entry-number"));
-            Datum datum = (Datum) datums.get(elem.getAttributeValue("datum-number"));
-            // create alignment
-            Alignment alignment = makeAlignment(datum);
-            alignment.setGroup(group);
-            alignment.generateFromElement(elem);
+    /**
+     * Generates an alignment of the given entry's datum from an
+     * annotated-datum element and saves in db, creating its group if new.
+     **/
+    void generateAnnotationFromElement(Element elem, Map groups, Entry entry, Datum datum)
+        throws DatabaseException {
+        // get or create group if new
+        String entryNumber = elem.getAttributeValue("entry-number");
+        String tag = elem.getAttributeValue("tag");
+        String groupKey = entryNumber + ":" + tag;
+        Group group = (Group) groups.get(groupKey);
+        if (group == null) {
+            group = makeGroup(entry);
+            group.setName(tag);
+            group.save();
+            groups.put(groupKey, group);
         }
+        // create alignment
+        Alignment alignment = makeAlignment(datum);
+        alignment.setGroup(group);
+        alignment.generateFromElement(elem);
+    }
 
-        // results
-        Set tabulatedGroups = new HashSet();
-        listElem = element.getChild("results");
-        for (Iterator it = listElem.getChildren("protosegment").iterator();
-            it.hasNext();
-            ) {
-            Element elem = (Element) it.next();
-            // get zone
-            Zone zone =
-                getDatabase().getZone(
-                    new Integer(elem.getAttributeValue("zone-row")),
-                    new Integer(elem.getAttributeValue("zone-column")));
-            // create protosegment
-            Protosegment protosegment = makeProtosegment(zone);
-            protosegment.generateFromElement(elem, groups, tabulatedGroups);
-        }
+    /**
+     * Generates a protosegment and all children from a protosegment
+     * element and saves in db.
+     **/
+    void generateProtosegmentFromElement(Element elem, Map groups, Set tabulatedGroups)
+        throws DatabaseException {
+        // get zone
+        Zone zone =
+            getDatabase().getZone(
+                new Integer(elem.getAttributeValue("zone-row")),
+                new Integer(elem.getAttributeValue("zone-column")));
+        // create protosegment
+        Protosegment protosegment = makeProtosegment(zone);
+        protosegment.generateFromElement(elem, groups, tabulatedGroups);
+    }
 
-        // get remaining tabulated groups (below threshold)
-        listElem = element.getChild("tabulated-groups");
-        if (listElem != null)
-            for (Iterator it = listElem.getChildren("group").iterator(); it.hasNext();) {
-                Element elem = (Element) it.next();
-                // get group
-                String entryNumber = elem.getAttributeValue("entry-number");
-                String tag = elem.getAttributeValue("tag");
-                String groupKey = entryNumber + ":" + tag;
-                Group group = (Group) groups.get(groupKey);
-                // mark group as tabulated
-                tabulatedGroups.add(group);
-            }
-
-        // mark tabulated groups
+    /**
+     * Add the group of a tabulated group element, which may be below
+     * threshold, to the tabulated groups.
+     **/
+    void addTabulatedGroupFromElement(Element elem, Map groups, Set tabulatedGroups) {
+        // get group
+        String entryNumber = elem.getAttributeValue("entry-number");
+        String tag = elem.getAttributeValue("tag");
+        String groupKey = entryNumber + ":" + tag;
+        Group group = (Group) groups.get(groupKey);
+        // mark group as tabulated
+        tabulatedGroups.add(group);
+    }
+
+    /**
+     * Mark tabulated groups as done and save in db.
+     **/
+    void markTabulatedGroups(Set tabulatedGroups) throws DatabaseException {
         for (Iterator it = tabulatedGroups.iterator(); it.hasNext();) {
             Group group = (Group) it.next();
             group.setDone(true);
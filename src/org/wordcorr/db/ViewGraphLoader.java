@@ -0,0 +1,165 @@
+package org.wordcorr.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Loads the data, groups and alignments of a whole view with one query
+ * each and hands out the alignments per entry, for work that visits
+ * every entry of a view in turn, such as copying a view. The Annotate
+ * and Tabulate panes show one entry at a time and read ahead only the
+ * next few, so they do not load the whole view.
+ **/
+public class ViewGraphLoader {
+
+    /**
+     * Constructor.
+     * @param view The view to load.
+     * @param entries The entries to load, usually all entries of the
+     * view's collection.
+     **/
+    public ViewGraphLoader(View view, List entries) {
+        _view = view;
+        for (Iterator it = entries.iterator(); it.hasNext();) {
+            Entry entry = (Entry) it.next();
+            _entries.put(new Long(entry.getID()), entry);
+        }
+    }
+
+    /**
+     * Load the view. Each entry's data is replaced by the loaded datums.
+     * The alignments share the loaded groups, which are not added to the
+     * identity map, so they go with the loader.
+     **/
+    public void load() throws DatabaseException {
+        final Database db = _view.getDatabase();
+        final Map data = new HashMap();
+        final Map datums = new HashMap();
+        final Map groups = new HashMap();
+
+        // data of the entries, in original view order
+        db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_VIEW_GRAPH_DATA";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                try {
+                    stmt.setLong(1, _view.getCollection().getOriginalView().getID());
+                } catch (DatabaseException e) {
+                    throw new SQLException(e.getRootCause().getMessage());
+                }
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                Long entryID = new Long(rs.getLong(6));
+                Entry entry = (Entry) _entries.get(entryID);
+                if (entry == null) {
+                    return null;
+                }
+                Datum datum = new Datum(db, rs.getLong(1), entry);
+                datum.updateObject(rs);
+                datum.clearDirty();
+                datums.put(new Long(datum.getID()), datum);
+
+                List list = (List) data.get(entryID);
+                if (list == null) {
+                    list = new ArrayList();
+                    data.put(entryID, list);
+                }
+                list.add(datum);
+                return null;
+            }
+        });
+        for (Iterator it = _entries.values().iterator(); it.hasNext();) {
+            Entry entry = (Entry) it.next();
+            List list = (List) data.get(new Long(entry.getID()));
+            boolean dirty = entry.isDirty();
+            entry.setData((list == null) ? Collections.EMPTY_LIST : list);
+            if (!dirty) {
+                entry.clearDirty();
+            }
+        }
+
+        // groups
+        db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_VIEW_GRAPH_GROUPS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, _view.getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                Entry entry = (Entry) _entries.get(new Long(rs.getLong(4)));
+                if (entry != null) {
+                    Group group = new Group(db, rs.getLong(1), _view, entry);
+                    group.updateObject(rs);
+                    group.clearDirty();
+                    groups.put(new Long(group.getID()), group);
+                }
+                return null;
+            }
+        });
+
+        // alignments
+        db.retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_VIEW_GRAPH_ALIGNMENTS";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, _view.getID());
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                Datum datum = (Datum) datums.get(new Long(rs.getLong(1)));
+                if (datum == null) {
+                    return null;
+                }
+                Alignment alignment = new Alignment(db, rs.getLong(2), _view, datum);
+                alignment.updateObject(rs, groups);
+                alignment.clearDirty();
+
+                Long entryID = new Long(datum.getEntry().getID());
+                List list = (List) _alignments.get(entryID);
+                if (list == null) {
+                    list = new ArrayList();
+                    _alignments.put(entryID, list);
+                }
+                list.add(alignment);
+                return null;
+            }
+        });
+        _loaded = true;
+    }
+
+    /**
+     * Get the view's alignments for the given entry, as
+     * View.getAlignments() would return them.
+     **/
+    public List getAlignments(Entry entry) throws DatabaseException {
+        if (!_loaded) {
+            load();
+        }
+        Entry loaded = (Entry) _entries.get(new Long(entry.getID()));
+        if (loaded == null) {
+            return _view.getAlignments(entry);
+        }
+        List existing = (List) _alignments.get(new Long(entry.getID()));
+        return _view.completeAlignments(
+            loaded.getData(),
+            (existing == null) ? Collections.EMPTY_LIST : existing);
+    }
+
+    private final View _view;
+    private final Map _entries = new HashMap();
+    private final Map _alignments = new HashMap();
+    private boolean _loaded = false;
+}
@@ -0,0 +1,429 @@
+package org.wordcorr.db;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tabulates, without the user, every entry of a view whose
+ * correspondence sets, in every group at or above the threshold, each
+ * match the existing clusters of just one protosegment and environment,
+ * by an identical or conformable set. Each set is tabulated under that
+ * protosegment and environment, and the entry's groups below the
+ * threshold are marked done, as when tabulating by hand. Entries are
+ * prepared in parallel and then tabulated in order in one transaction;
+ * the rest are left for tabulating by hand.
+ * <p>
+ * The protosegment and environment of a set are the user's analysis, so
+ * nothing is tabulated in a view with no clusters yet: its first entries
+ * must be tabulated by hand.
+ * <p>
+ * When retabulating, groups already tabulated are prepared as well. A
+ * group whose sets are unchanged is left as it is; the others are
+ * untabulated and tabulated again. A group that can no longer be
+ * tabulated without the user keeps its tabulation.
+ **/
+public final class ViewTabulator {
+
+    // upper bound on workers; the in-process database serializes statements
+    private static final int MAX_THREADS = 4;
+
+    // connections a worker holds at once reading an entry's alignments
+    private static final int CONNECTIONS_PER_WORKER = 3;
+
+    /**
+     * Tabulate the entries of a view from the command line. Progress is
+     * written to standard output.
+     **/
+    public static void main(String[] args) throws DatabaseException {
+        if (args.length < 3 || args.length > 4
+            || (args.length == 4 && !args[3].equals("-retabulate"))) {
+            throw new IllegalArgumentException(
+                "Use: java " + ViewTabulator.class.getName()
+                    + " database collection view [-retabulate]");
+        }
+        Database db = DatabaseFactory.openLocalDatabase(new File(args[0]));
+        if (db.test() != Database.STATUS_CURRENT) {
+            System.err.println("Open the database in WordCorr first to bring it up to date.");
+            System.exit(2);
+        }
+
+        View view = null;
+        for (Iterator it = db.getUsers().iterator(); it.hasNext() && view == null;) {
+            User user = (User) it.next();
+            for (Iterator it2 = user.getCollections().iterator(); it2.hasNext() && view == null;) {
+                WordCollection collection = (WordCollection) it2.next();
+                if (!collection.getName().equals(args[1]))
+                    continue;
+                for (Iterator it3 = collection.getViews().iterator(); it3.hasNext();) {
+                    View v = (View) it3.next();
+                    if (v.getName().equals(args[2])) {
+                        view = v;
+                        break;
+                    }
+                }
+            }
+        }
+        if (view == null) {
+            System.err.println("No view " + args[2] + " in collection " + args[1] + ".");
+            System.exit(2);
+        }
+
+        ViewTabulator tabulator = view.tabulateAll(args.length == 4, new TabulationMonitor() {
+            public void progress(int phase, int done, int count) {
+                if (done % 100 == 0 || done == count) {
+                    System.out.println(
+                        ((phase == PREPARING) ? "Prepared " : "Tabulated ") + done + " of " + count);
+                }
+            }
+
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+        if (tabulator.hasNoClusters()) {
+            System.out.println("The view has no clusters to match against.");
+        } else {
+            System.out.println(
+                tabulator.getTabulatedCount() + " of " + tabulator.getEntryCount()
+                    + " entries tabulated, " + tabulator.getUnchangedCount() + " unchanged.");
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Constructor.
+     * @param retabulate Also retabulate the groups already tabulated.
+     **/
+    ViewTabulator(View view, boolean retabulate, TabulationMonitor monitor) {
+        _view = view;
+        _retabulate = retabulate;
+        _monitor = monitor;
+    }
+
+    /**
+     * Tabulate the entries.
+     **/
+    void run() throws DatabaseException {
+        List entries = _retabulate ? _view.getGroupedEntries() : _view.getUntabulatedEntries();
+        _entryCount = entries.size();
+        indexClusters();
+        if (_clusterIndexes.isEmpty())
+            return;
+        List prepared = prepare(entries);
+        if (prepared != null)
+            tabulate(prepared);
+    }
+
+    /**
+     * Get the number of entries considered: the untabulated entries or,
+     * when retabulating, all entries with groups.
+     **/
+    public int getEntryCount() {
+        return _entryCount;
+    }
+
+    /**
+     * Get the number of entries tabulated.
+     **/
+    public int getTabulatedCount() {
+        return _tabulatedCount;
+    }
+
+    /**
+     * Get the number of entries left as they were because their groups
+     * were already tabulated with the same sets.
+     **/
+    public int getUnchangedCount() {
+        return _unchangedCount;
+    }
+
+    /**
+     * Check whether the view has no clusters to match against.
+     **/
+    public boolean hasNoClusters() {
+        return _clusterIndexes.isEmpty();
+    }
+
+    /**
+     * Check whether the monitor stopped tabulating.
+     **/
+    public boolean isCancelled() {
+        return _cancelled;
+    }
+
+    /**
+     * Check the monitor for cancelling.
+     **/
+    private boolean checkCancelled() {
+        if (!_cancelled && _monitor.isCancelled())
+            _cancelled = true;
+        return _cancelled;
+    }
+
+    /**
+     * Index the view's clusters that have correspondence sets, and
+     * the clusters of each set.
+     **/
+    private void indexClusters() throws DatabaseException {
+        for (Iterator it = _view.getProtosegments().iterator(); it.hasNext();) {
+            Map clusterSets = ((Protosegment) it.next()).getClusterCorrespondenceSets();
+            for (Iterator itc = clusterSets.entrySet().iterator(); itc.hasNext();) {
+                Map.Entry entry = (Map.Entry) itc.next();
+                List sets = (List) entry.getValue();
+                if (sets.isEmpty())
+                    continue;
+                // index now, before the sets are shared with workers
+                _clusterIndexes.put(entry.getKey(), new ConformabilityIndex(sets));
+                for (Iterator its = sets.iterator(); its.hasNext();) {
+                    String set = ((CorrespondenceSet) its.next()).getSet();
+                    List clusters = (List) _identicalClusters.get(set);
+                    if (clusters == null) {
+                        clusters = new ArrayList();
+                        _identicalClusters.put(set, clusters);
+                    }
+                    clusters.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the clusters with an identical set or, failing that, whose
+     * sets are all conformable to the set. Returns one of them if they
+     * all have the same protosegment and environment, otherwise null.
+     **/
+    private Cluster findCluster(String set) {
+        List clusters = (List) _identicalClusters.get(set);
+        if (clusters == null) {
+            int[] symbols = _view.getSegmentSymbols().encode(set);
+            clusters = new ArrayList();
+            for (Iterator it = _clusterIndexes.entrySet().iterator(); it.hasNext();) {
+                Map.Entry entry = (Map.Entry) it.next();
+                if (((ConformabilityIndex) entry.getValue()).isConformable(symbols))
+                    clusters.add(entry.getKey());
+            }
+        }
+
+        Cluster found = null;
+        for (Iterator it = clusters.iterator(); it.hasNext();) {
+            Cluster cluster = (Cluster) it.next();
+            if (found == null) {
+                found = cluster;
+            } else if (
+                found.getProtosegment().getID() != cluster.getProtosegment().getID()
+                    || !found.getEnvironment().equals(cluster.getEnvironment())) {
+                return null;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Prepare the entries on a pool of worker threads. Returns the
+     * entries that can be tabulated, in entry order, or null if
+     * cancelled.
+     **/
+    private List prepare(List entries) throws DatabaseException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+            _view.getDatabase().getWorkerThreads(
+                Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS),
+                CONNECTIONS_PER_WORKER),
+            new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Tabulate worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List futures = new ArrayList(entries.size());
+            for (Iterator it = entries.iterator(); it.hasNext();) {
+                final Entry entry = (Entry) it.next();
+                futures.add(pool.submit(new Callable() {
+                    public Object call() throws DatabaseException {
+                        return checkCancelled() ? null : prepare(entry);
+                    }
+                }));
+            }
+
+            List prepared = new ArrayList();
+            for (int i = 0; i < futures.size(); i++) {
+                PreparedEntry entry = (PreparedEntry) get((Future) futures.get(i));
+                if (checkCancelled())
+                    return null;
+                if (entry == UNCHANGED)
+                    _unchangedCount++;
+                else if (entry != null)
+                    prepared.add(entry);
+                _monitor.progress(TabulationMonitor.PREPARING, i + 1, futures.size());
+            }
+            return prepared;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Build the correspondence sets of each of an entry's groups at or
+     * above the threshold, and give each set the protosegment and
+     * environment of the cluster it matches. Returns the entry, UNCHANGED
+     * if its groups are already tabulated with the same sets, or null if
+     * any group cannot be tabulated without the user. Called on a worker
+     * thread.
+     **/
+    private PreparedEntry prepare(Entry entry) throws DatabaseException {
+        List alignments = _view.getAlignments(entry);
+        if (alignments.size() <= 1)
+            return null;
+        List groups = _view.getThresholdGroups(entry, _retabulate);
+        if (groups.isEmpty())
+            return null;
+
+        List tabulations = new ArrayList();
+        for (Iterator it = groups.iterator(); it.hasNext();) {
+            Group group = (Group) it.next();
+            List sets = GroupTabulation.getCorrespondenceSets(_view, group, alignments, NO_CHOICE);
+            if (sets == null || sets.isEmpty())
+                return null;
+            if (group.isDone() && sets.equals(getTabulatedSets(group)))
+                continue;
+
+            GroupTabulation tabulation = new GroupTabulation(_view, group);
+            for (Iterator its = sets.iterator(); its.hasNext();) {
+                String set = (String) its.next();
+                Cluster cluster = findCluster(set);
+                if (cluster == null)
+                    return null;
+                tabulation.addSet(set, null, cluster.getProtosegment(), cluster.getEnvironment());
+            }
+            tabulations.add(tabulation);
+        }
+
+        List belowGroups = _view.getBelowThresholdGroups(entry);
+        if (tabulations.isEmpty() && belowGroups.isEmpty())
+            return UNCHANGED;
+        return new PreparedEntry(tabulations, belowGroups);
+    }
+
+    /**
+     * Get the sets a group is tabulated with, in position order.
+     **/
+    private static List getTabulatedSets(Group group) throws DatabaseException {
+        List citations = new ArrayList(group.getCitations());
+        Collections.sort(citations, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                Integer pos1 = ((Citation) o1).getPosition();
+                Integer pos2 = ((Citation) o2).getPosition();
+                int v1 = (pos1 == null) ? -1 : pos1.intValue();
+                int v2 = (pos2 == null) ? -1 : pos2.intValue();
+                return (v1 < v2) ? -1 : (v1 > v2) ? 1 : 0;
+            }
+        });
+        List sets = new ArrayList();
+        for (Iterator it = citations.iterator(); it.hasNext();) {
+            sets.add(((Citation) it.next()).getCorrespondenceSet().getSet());
+        }
+        return sets;
+    }
+
+    /**
+     * Wait for a prepared entry.
+     **/
+    private Object get(Future future) throws DatabaseException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            _cancelled = true;
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DatabaseException)
+                throw (DatabaseException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new DatabaseException(cause.toString());
+        }
+    }
+
+    /**
+     * Tabulate the prepared entries in order in one transaction,
+     * which is rolled back if cancelled.
+     **/
+    private void tabulate(List prepared) throws DatabaseException {
+        Database db = _view.getDatabase();
+        db.beginBatch();
+        try {
+            for (int i = 0; i < prepared.size(); i++) {
+                if (checkCancelled())
+                    return;
+                ((PreparedEntry) prepared.get(i)).tabulate();
+                _monitor.progress(TabulationMonitor.TABULATING, i + 1, prepared.size());
+            }
+            db.commitBatch();
+            _tabulatedCount = prepared.size();
+        } finally {
+            db.rollbackBatch();
+        }
+    }
+
+    /**
+     * An entry ready for tabulating: the groups at or above the threshold
+     * to tabulate, and the groups below it.
+     **/
+    private static final class PreparedEntry {
+        PreparedEntry(List tabulations, List belowGroups) {
+            _tabulations = tabulations;
+            _belowGroups = belowGroups;
+        }
+
+        /**
+         * Tabulate each group, untabulating it first if it was done, and
+         * mark the groups below the threshold done.
+         **/
+        void tabulate() throws DatabaseException {
+            for (Iterator it = _tabulations.iterator(); it.hasNext();) {
+                GroupTabulation tabulation = (GroupTabulation) it.next();
+                if (tabulation.getGroup().isDone())
+                    tabulation.getGroup().retabulate();
+                tabulation.tabulate();
+            }
+            for (Iterator it = _belowGroups.iterator(); it.hasNext();) {
+                Group group = (Group) it.next();
+                group.setDone(true);
+                group.save();
+            }
+        }
+
+        private final List _tabulations;
+        private final List _belowGroups;
+    }
+
+    /**
+     * Leaves groups needing a choice between alignments to the user.
+     **/
+    private static final GroupTabulation.AlignmentChooser NO_CHOICE =
+        new GroupTabulation.AlignmentChooser() {
+        public Alignment choose(Group group, Variety variety, List alignments) {
+            return null;
+        }
+    };
+
+    /**
+     * Prepared entry whose groups are tabulated already with the same sets.
+     **/
+    private static final PreparedEntry UNCHANGED =
+        new PreparedEntry(Collections.EMPTY_LIST, Collections.EMPTY_LIST);
+
+    private final View _view;
+    private final boolean _retabulate;
+    private final TabulationMonitor _monitor;
+    private final Map _clusterIndexes = new LinkedHashMap();
+    private final Map _identicalClusters = new HashMap();
+    private volatile boolean _cancelled = false;
+    private int _entryCount = 0;
+    private int _tabulatedCount = 0;
+    private int _unchangedCount = 0;
+}
@@ -1,6 +1,7 @@
 package org.wordcorr.db;
 
 import org.jdom.*;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -424,7 +425,21 @@ public class WordCollection extends AbstractPersistent {
      * Get this collection's entries.
      **/
     public List getEntries() throws DatabaseException {
-        return getDatabase().retrieveObjects(new RetrieveAllParameters() {
+        return getDatabase().retrieveObjects(getEntriesParameters());
+    }
+
+    /**
+     * Visit this collection's entries as they are read.
+     **/
+    void visitEntries(ObjectVisitor visitor) throws DatabaseException {
+        getDatabase().visitObjects(getEntriesParameters(), Database.DEFAULT_FETCH_SIZE, visitor);
+    }
+
+    /**
+     * Get the parameters retrieving this collection's entries.
+     **/
+    private RetrieveAllParameters getEntriesParameters() {
+        return new RetrieveAllParameters() {
             public String getRetrieveAllSQLKey() {
                 return "GET_ENTRIES";
             }
@@ -439,7 +454,7 @@ public class WordCollection extends AbstractPersistent {
                 entry.updateObject(rs);
                 return entry;
             }
-        });
+        };
     }
 
     /**
@@ -466,6 +481,47 @@ public class WordCollection extends AbstractPersistent {
         });
     }
 
+    /**
+     * Get this collection's entries numbered within the given range.
+     **/
+    public List getEntries(final int fromEntryNum, final int toEntryNum)
+        throws DatabaseException {
+        return getDatabase().retrieveObjects(new RetrieveAllParameters() {
+            public String getRetrieveAllSQLKey() {
+                return "GET_ENTRIES_IN_ENTRY_NUM_RANGE";
+            }
+
+            public void setRetrieveAllParameters(PreparedStatement stmt)
+                throws SQLException {
+                stmt.setLong(1, getID());
+                stmt.setInt(2, fromEntryNum);
+                stmt.setInt(3, toEntryNum);
+            }
+
+            public Object createObject(Database db, ResultSet rs) throws SQLException {
+                Entry entry = new Entry(db, rs.getLong(1), WordCollection.this);
+                entry.updateObject(rs);
+                return entry;
+            }
+        });
+    }
+
+    /**
+     * Get the keys and entry numbers of this collection's entries.
+     **/
+    public EntryIndex getEntryIndex() throws DatabaseException {
+        return EntryIndex.read(getDatabase(), "GET_ENTRY_INDEX", getID());
+    }
+
+    /**
+     * Get entry by ID.
+     **/
+    public Entry getEntryByID(long id) throws DatabaseException {
+        Entry entry = new Entry(getDatabase(), id, this);
+        entry.revert();
+        return entry;
+    }
+
     /**
      * Set views included with element.
      **/
@@ -477,6 +533,14 @@ public class WordCollection extends AbstractPersistent {
      * Get element representing this collection.
      **/
     public Element getElement(boolean metadataOnly) {
+        return StreamingOutputter.expand(getStreamedElement(metadataOnly));
+    }
+
+    /**
+     * Get element representing this collection, with its entries and
+     * views written one at a time by a StreamingOutputter.
+     **/
+    Element getStreamedElement(boolean metadataOnly) {
         Element element = new Element("collection");
 
         // set attributes
@@ -504,6 +568,7 @@ public class WordCollection extends AbstractPersistent {
         element.addContent(createElement("published-source", getPublishedSource()));
         element.addContent(createElement("stable-copy-location", getStableLocation()));
 
+        final List viewList;
         try {
             // varieties
             Element listElem = new Element("varieties");
@@ -513,27 +578,39 @@ public class WordCollection extends AbstractPersistent {
                 listElem.addContent(variety.getElement());
             }
 
-            if (!metadataOnly) {
-                // entries
-                listElem = new Element("data");
-                element.addContent(listElem);
-                for (Iterator it = getEntries().iterator(); it.hasNext();) {
-                    Entry entry = (Entry) it.next();
-                    listElem.addContent(entry.getElement());
+            if (metadataOnly) {
+                return element;
+            }
+            viewList = (_elementViews == null) ? getViews() : _elementViews;
+        } catch (DatabaseException e) {
+            e.printStackTrace();
+            return element;
+        }
+
+        // entries
+        element.addContent(new StreamingOutputter.StreamedElement("data") {
+            void writeContent(StreamingOutputter.ElementSink sink) throws IOException {
+                try {
+                    visitEntries(new StreamingOutputter.SinkVisitor(sink) {
+                        Element createElement(Object object) {
+                            return ((Entry) object).getElement();
+                        }
+                    });
+                } catch (DatabaseException e) {
+                    StreamingOutputter.SinkVisitor.rethrow(e);
                 }
+            }
+        });
 
-                // views
-                listElem = new Element("views");
-                element.addContent(listElem);
-                List viewList = (_elementViews == null) ? getViews() : _elementViews;
+        // views
+        element.addContent(new StreamingOutputter.StreamedElement("views") {
+            void writeContent(StreamingOutputter.ElementSink sink) throws IOException {
                 for (Iterator it = viewList.iterator(); it.hasNext();) {
                     View view = (View) it.next();
-                    listElem.addContent(view.getElement());
+                    sink.addContent(view.getStreamedElement());
                 }
             }
-        } catch (DatabaseException e) {
-            e.printStackTrace();
-        }
+        });
 
         return element;
     }
@@ -542,6 +619,27 @@ public class WordCollection extends AbstractPersistent {
      * Get summary element representing this collection.
      **/
     public Element getSummaryElement(
+        View view,
+        float minFrantz,
+        int maxReconstructions,
+        String displayFrantz,
+        boolean includeResidue,
+        String gloss) {
+        return StreamingOutputter.expand(
+            getStreamedSummaryElement(
+                view,
+                minFrantz,
+                maxReconstructions,
+                displayFrantz,
+                includeResidue,
+                gloss));
+    }
+
+    /**
+     * Get summary element representing this collection, with the view's
+     * protosegments written one at a time.
+     **/
+    Element getStreamedSummaryElement(
         View view,
         float minFrantz,
         int maxReconstructions,
@@ -569,7 +667,7 @@ public class WordCollection extends AbstractPersistent {
 
             // view
             element.addContent(
-                view.getSummaryElement(
+                view.getStreamedSummaryElement(
                     minFrantz,
                     maxReconstructions,
                     displayFrantz,
@@ -752,6 +850,62 @@ public class WordCollection extends AbstractPersistent {
         if (element == null)
             return;
 
+        CollectionImport importer = new CollectionImport(this, version);
+        importer.addCollection(element);
+
+        // varieties
+        Element listElem = element.getChild("varieties");
+        for (Iterator it = listElem.getChildren("variety").iterator(); it.hasNext();) {
+            importer.addVariety((Element) it.next());
+        }
+
+        // entries
+        listElem = element.getChild("data");
+        for (Iterator it = listElem.getChildren("entry").iterator(); it.hasNext();) {
+            importer.addEntry((Element) it.next());
+        }
+
+        // views
+        listElem = element.getChild("views");
+        for (Iterator it = listElem.getChildren("view").iterator(); it.hasNext();) {
+            Element elem = (Element) it.next();
+            importer.addView(elem);
+
+            // annotations
+            listElem = elem.getChild("annotations");
+            for (Iterator it2 = listElem.getChildren("annotated-datum").iterator();
+                it2.hasNext();
+                ) {
+                importer.addAnnotation((Element) it2.next());
+            }
+
+            // results
+            listElem = elem.getChild("results");
+            for (Iterator it2 = listElem.getChildren("protosegment").iterator();
+                it2.hasNext();
+                ) {
+                importer.addProtosegment((Element) it2.next());
+            }
+
+            // get remaining tabulated groups (below threshold)
+            listElem = elem.getChild("tabulated-groups");
+            if (listElem != null)
+                for (Iterator it2 = listElem.getChildren("group").iterator(); it2.hasNext();) {
+                    importer.addTabulatedGroup((Element) it2.next());
+                }
+
+            importer.endView();
+        }
+
+        importer.end();
+    }
+
+    /**
+     * Sets values from the collection element, excluding its varieties,
+     * data and views, and saves in db.
+     **/
+    void generateHeaderFromElement(Element element, double version)
+        throws DatabaseException {
         // set values
         setName(element.getAttributeValue("name"));
         setShortName(element.getAttributeValue("short-name"));
@@ -784,39 +938,6 @@ public class WordCollection extends AbstractPersistent {
 
         markImported();
         save();
-
-        // varieties
-        Map varieties = new HashMap();
-        Element listElem = element.getChild("varieties");
-        for (Iterator it = listElem.getChildren("variety").iterator(); it.hasNext();) {
-            Element elem = (Element) it.next();
-            Variety variety = makeVariety();
-            variety.generateFromElement(elem, version);
-            varieties.put(variety.getShortName(), variety);
-        }
-
-        // entries
-        Map entries = new HashMap();
-        Map datumsByEntry = new HashMap();
-        listElem = element.getChild("data");
-        for (Iterator it = listElem.getChildren("entry").iterator(); it.hasNext();) {
-            Element elem = (Element) it.next();
-            Entry entry = makeEntry();
-            Map datums = entry.generateFromElement(elem, varieties);
-            datumsByEntry.put(entry.getEntryNum().toString(), datums);
-            entries.put(entry.getEntryNum().toString(), entry);
-        }
-
-        // views
-        listElem = element.getChild("views");
-        for (Iterator it = listElem.getChildren("view").iterator(); it.hasNext();) {
-            Element elem = (Element) it.next();
-            View view = makeView();
-            view.generateFromElement(elem, varieties, entries, datumsByEntry);
-        }
-
-        // reorder all entry numbers
-        reorderEntries(0, 1);
     }
 
     private boolean _imported = false;
@@ -125,8 +125,13 @@ public class WordsurvFile implements Task {
      * Return true to close dialog, false to keep open.
      **/
     public boolean run() {
+		Database db = _user.getDatabase();
 		WordCollection collection = null;
         try {
+	        // import in a single transaction so that a failed import
+	        // leaves nothing behind
+	        db.beginBatch();
+
 	        // create collection
 	        collection = _user.makeCollection();
 	        collection.setName(getName());
@@ -139,7 +144,6 @@ public class WordsurvFile implements Task {
 	        CatalogueFile catFile = new CatalogueFile(collection);
 	        Map varieties = catFile.process(getCatFilename());
 	        if (varieties == null) {
-	        	deleteCollection(collection);
 	        	return true;
 	        }
 	
@@ -151,30 +155,18 @@ public class WordsurvFile implements Task {
 	        // read database files and process
 	        DatabaseFile dbFile = new DatabaseFile(collection);
 	        if (!dbFile.process(getDBFilename(), varieties)) {
-	        	deleteCollection(collection);
 	        	return true;
 	        }
+	        db.commitBatch();
         } catch (Exception e) {
             e.printStackTrace();
-           	deleteCollection(collection);
            	return true;
+        } finally {
+            db.rollbackBatch();
         }
         _collection = collection;
         return true;
     }
-    
-    /**
-     * Delete collection.
-     **/
-    private void deleteCollection(WordCollection collection) {
-        if (collection != null && collection.getID() != -1) {
-	    	try {
-	    		collection.delete();
-	    	} catch (DatabaseException e) {
-	    		e.printStackTrace();
-	    	}
-        }
-    }
 
 	/**
 	 * Represents WordSurv Catalogue File.
@@ -4,13 +4,13 @@ import java.io.*;
 import java.util.zip.*;
 
 import org.jdom.*;
-import org.jdom.input.SAXBuilder;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import org.wordcorr.gui.AppPrefs;
 import org.wordcorr.gui.Dialogs;
 import org.wordcorr.gui.Messages;
 import org.wordcorr.gui.Task;
+import org.xml.sax.SAXException;
 
 /**
  * Represents XML File.
@@ -151,12 +151,13 @@ public class XMLFile implements Task {
         Messages messages = AppPrefs.getInstance().getMessages();
         element.setAttribute("release", messages.getString("msgAboutRelease"));
         element.setAttribute("version", messages.getString("msgXMLVersion"));
-        // get user element and add collection element
+        // get user element and add collection element, whose data and
+        // views are written as they are read
         Element userElement = _user.getElement();
-        userElement.addContent(_collection.getElement(_metadataOnly));
+        userElement.addContent(_collection.getStreamedElement(_metadataOnly));
         element.addContent(userElement);
         Document doc = new Document(element);
-        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+        XMLOutputter outputter = new StreamingOutputter(Format.getPrettyFormat());
         
         // create file
         try {
@@ -191,67 +192,54 @@ public class XMLFile implements Task {
     private boolean importXML() {
         Messages messages = AppPrefs.getInstance().getMessages();
         
-        // import file
-        Document doc = null;
+        // open file
+        InputStream input = null;
         ZipFile zip = getZipFile(_filename);
         try {
             if (zip == null) {
                 // not zip file, assume xml
-                try { //davisnw -- Necessary for change to JDOM 1.0
-                    doc = new SAXBuilder().build(new File(_filename));
-                } catch (IOException e) { //TODO: REVIEW.  Is this the proper way to handle it?
-                    Dialogs.msgbox(e.getMessage());
-                    e.printStackTrace();
-                    return true;
-                }
+                input = new BufferedInputStream(new FileInputStream(_filename));
             } else {
                 // get first entry
                 if (zip.entries().hasMoreElements()) {
                     ZipEntry entry = (ZipEntry) zip.entries().nextElement();
-                    try {
-                        InputStream input = zip.getInputStream(entry);
-                        
-                        // read file
-                        doc = new SAXBuilder().build(input);
-                    } catch (IOException e) {
-                        Dialogs.msgbox(e.getMessage());
-                        e.printStackTrace();
-                        return true;
-                    }
+                    input = new BufferedInputStream(zip.getInputStream(entry));
                 } else {
                     // no entry
                     return true;
                 }
             }
-        } catch (JDOMException e) {
+        } catch (IOException e) {
             Dialogs.msgbox(e.getMessage());
             e.printStackTrace();
             return true;
         }
-        Element root = doc.getRootElement();
-        if (!root.getName().equals("WordCorr"))
-            return true;
         
-        // create objects and save in db
+        // read file and save objects in db as they are parsed
         WordCollection collection = null;
         try {
-            // get version
-            double version = Double.parseDouble(root.getAttributeValue("version"));
-            
-            // check for user metadata from version 2
-            if (version >= 2)
-                root = root.getChild("user");
-            
-            // create collection
-            collection = _user.makeCollection();
-            collection.generateFromElement(root.getChild("collection"), version);
+            collection = new StreamingImporter(_user).importCollection(input);
+        } catch (IOException e) {
+            Dialogs.msgbox(e.getMessage());
+            e.printStackTrace();
+            return true;
+        } catch (SAXException e) {
+            Dialogs.msgbox(e.getMessage());
+            e.printStackTrace();
+            return true;
         } catch (Exception e) {
             Dialogs.msgbox(messages.getString("msgErrImportXMLFile"));
-            deleteCollection(collection);
             e.printStackTrace();
             return true;
+        } finally {
+            try {
+                input.close();
+                if (zip != null)
+                    zip.close();
+            } catch (IOException ignored) {}
         }
-        _collection = collection;
+        if (collection != null)
+            _collection = collection;
         
         return true;
     }
@@ -270,19 +258,6 @@ public class XMLFile implements Task {
         return zip;
     }
     
-    /**
-     * Delete collection.
-     **/
-    private void deleteCollection(WordCollection collection) {
-        if (collection != null && collection.getID() != -1) {
-            try {
-                collection.delete();
-            } catch (DatabaseException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-    
     private boolean _export = true;
     private boolean _metadataOnly = false;
     private String _filename;
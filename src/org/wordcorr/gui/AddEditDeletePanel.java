@@ -9,6 +9,7 @@ import javax.swing.*;
 import javax.swing.event.*;
 import org.wordcorr.db.DatabaseException;
 import org.wordcorr.db.Persistent;
+import org.wordcorr.db.RoundTripTrace;
 import org.wordcorr.gui.action.IconAction;
 
 /**
@@ -74,46 +75,52 @@ class AddEditDeletePanel extends ButtonPanel implements Refreshable {
                 int loc = panel.getDividerLocation();
 
                 int index = _list.getSelectedIndex();
-                if (_list.getModel().getSize() > 0 && index != -1) {
-                    Persistent persistent = (Persistent) _list.getSelectedValue();
-
-                    // check validation
-                    DatabasePane dbPane = MainFrame.getInstance().getDatabasePane();
-                    if (!dbPane.validateCurrentEditObject()) {
-                        _cancelValueChanged = true;
-                        _list.setSelectedIndex(_lastIndex);
-                        return;
-                    }
-                    _lastIndex = index;
+                RoundTripTrace trace =
+                    RoundTripTrace.begin("select " + AddEditDeletePanel.this.getClass().getName());
+                try {
+                    if (_list.getModel().getSize() > 0 && index != -1) {
+                        Persistent persistent = (Persistent) _list.getSelectedValue();
+
+                        // check validation
+                        DatabasePane dbPane = MainFrame.getInstance().getDatabasePane();
+                        if (!dbPane.validateCurrentEditObject()) {
+                            _cancelValueChanged = true;
+                            _list.setSelectedIndex(_lastIndex);
+                            return;
+                        }
+                        _lastIndex = index;
 
-                    _del.setEnabled(true);
-                    _validate.setEnabled(true);
+                        _del.setEnabled(true);
+                        _validate.setEnabled(true);
 
-                    // save current edit object when selecting persistent object
-                    if (_setCurrentEditObjectSetting) {
-                        dbPane.saveCurrentEditObject();
-                    }
+                        // save current edit object when selecting persistent object
+                        if (_setCurrentEditObjectSetting) {
+                            dbPane.saveCurrentEditObject();
+                        }
 
-                    Component component = (Component) _componentMap.get(persistent);
-                    if (component == null) {
-                        component = createRightComponent();
-                        _componentMap.put(persistent, component);
-                    }
-                    panel.setRightComponent(component);
-
-                    // set current edit object when selecting persistent object
-                    if (_setCurrentEditObjectSetting) {
-                        if (component instanceof SavePane) {
-                            dbPane.setCurrentEditObject(
-                                persistent,
-                                ((SavePane) component).getPropertyPane().getInfo());
-                        } else {
-                            dbPane.setCurrentEditObject(persistent);
+                        Component component = (Component) _componentMap.get(persistent);
+                        if (component == null) {
+                            component = createRightComponent();
+                            _componentMap.put(persistent, component);
                         }
+                        panel.setRightComponent(component);
+
+                        // set current edit object when selecting persistent object
+                        if (_setCurrentEditObjectSetting) {
+                            if (component instanceof SavePane) {
+                                dbPane.setCurrentEditObject(
+                                    persistent,
+                                    ((SavePane) component).getPropertyPane().getInfo());
+                            } else {
+                                dbPane.setCurrentEditObject(persistent);
+                            }
+                        }
+                    } else {
+                        panel.setRightComponent(new JLabel(""));
+                        _del.setEnabled(false);
                     }
-                } else {
-                    panel.setRightComponent(new JLabel(""));
-                    _del.setEnabled(false);
+                } finally {
+                    trace.end();
                 }
                 panel.setDividerLocation(loc);
             }
@@ -327,16 +334,13 @@ class AddEditDeletePanel extends ButtonPanel implements Refreshable {
                             }
                             for (int i = start; i != start - 1; i++) {
                                 Object obj = _list.getModel().getElementAt(i);
-                                if (match.equals(FindDialog.MATCH_WHOLE) && obj.toString().equals(text)) {
-                                    _list.setSelectedValue(obj, true);
-                                    return;
-                                } else if (
-                                    match.equals(FindDialog.MATCH_ANY) && obj.toString().indexOf(text) != -1) {
-                                    _list.setSelectedValue(obj, true);
-                                    return;
-                                } else if (
-                                    match.equals(FindDialog.MATCH_START) && obj.toString().startsWith(text)) {
-                                    _list.setSelectedValue(obj, true);
+                                if (obj != null
+                                    && ((match.equals(FindDialog.MATCH_WHOLE) && obj.toString().equals(text))
+                                        || (match.equals(FindDialog.MATCH_ANY) && obj.toString().indexOf(text) != -1)
+                                        || (match.equals(FindDialog.MATCH_START) && obj.toString().startsWith(text)))) {
+                                    // select by index; selecting by value searches the list again
+                                    _list.setSelectedIndex(i);
+                                    _list.ensureIndexIsVisible(i);
                                     return;
                                 }
                                 if (i == _list.getModel().getSize() - 1) {
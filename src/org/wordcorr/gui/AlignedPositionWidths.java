@@ -0,0 +1,99 @@
+package org.wordcorr.gui;
+
+import java.util.*;
+import org.wordcorr.db.Alignment;
+import org.wordcorr.db.AlignmentVector;
+
+/**
+ * Number of character widths for each position of a column of aligned
+ * data. The widths of each position are counted as data is added and
+ * removed, so the maximums can be kept without rescanning the column.
+ * Data without grapheme clusters is skipped.
+ **/
+final class AlignedPositionWidths {
+
+    /**
+     * Add aligned data.
+     **/
+    public void add(String data) {
+        adjust(data, 1);
+    }
+
+    /**
+     * Remove aligned data added before.
+     **/
+    public void remove(String data) {
+        adjust(data, -1);
+    }
+
+    /**
+     * Remove all data.
+     **/
+    public void clear() {
+        _counts.clear();
+        _widths = null;
+    }
+
+    /**
+     * Get the maximum width of each position, or null if no data has
+     * grapheme clusters.
+     **/
+    public int[] getWidths() {
+        if (_widths == null) {
+            int length = _counts.size();
+            while (length > 0 && isEmpty((int[]) _counts.get(length - 1))) {
+                length--;
+            }
+            _widths = new int[length];
+            for (int i = 0; i < length; i++) {
+                int[] counts = (int[]) _counts.get(i);
+                for (int width = counts.length - 1; width >= 0; width--) {
+                    if (counts[width] > 0) {
+                        _widths[i] = width;
+                        break;
+                    }
+                }
+            }
+        }
+        return (_widths.length == 0) ? null : _widths;
+    }
+
+    /**
+     * Count the widths of aligned data.
+     **/
+    private void adjust(String data, int delta) {
+        // skip non grapheme cluster data
+        if (data == null || data.indexOf(Alignment.GRAPHEME_CLUSTER_START) == -1)
+            return;
+
+        int[] widths = AlignmentVector.getPositionWidths(data);
+        while (_counts.size() < widths.length) {
+            _counts.add(new int[2]);
+        }
+        for (int i = 0; i < widths.length; i++) {
+            int[] counts = (int[]) _counts.get(i);
+            if (widths[i] >= counts.length) {
+                int[] grown = new int[widths[i] + 1];
+                System.arraycopy(counts, 0, grown, 0, counts.length);
+                counts = grown;
+                _counts.set(i, counts);
+            }
+            counts[widths[i]] += delta;
+        }
+        _widths = null;
+    }
+
+    /**
+     * Check whether no data has a position.
+     **/
+    private static boolean isEmpty(int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0)
+                return false;
+        }
+        return true;
+    }
+
+    private final List _counts = new ArrayList();
+    private int[] _widths;
+}
@@ -3,7 +3,6 @@ package org.wordcorr.gui;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.table.*;
-import org.wordcorr.db.Alignment;
 
 /**
  * Table that allows designated column to have aligned characters.
@@ -44,62 +43,11 @@ public class AlignedTable extends JTable {
      * from row data list and data extractor.
      **/
     public void setAlignedPositionWidths(List rows, AlignedDataExtractor extractor) {
-        List maxWidths = new ArrayList();
+        AlignedPositionWidths widths = new AlignedPositionWidths();
     	for (Iterator it = rows.iterator(); it.hasNext();) {
-            String data = extractor.getColumnData(it.next());
-            
-            // skip non grapheme cluster data
-            if (data.indexOf(Alignment.GRAPHEME_CLUSTER_START) == -1)
-            	continue;
-
-            // extract widths
-            Integer one = new Integer(1);
-            boolean gc = false;
-            int pos = 0;
-            int width = 0;
-            for (int i = 0; i < data.length(); i++) {
-                switch (data.charAt(i)) {
-                    case Alignment.GRAPHEME_CLUSTER_START :
-                    	gc = true;
-                        break;
-                    case Alignment.GRAPHEME_CLUSTER_END :
-                    	// initialize
-                    	if (pos >= maxWidths.size())
-                    		maxWidths.add(one);
-                    		
-                		if (width > ((Integer)maxWidths.get(pos)).intValue())
-                			maxWidths.set(pos, new Integer(width));
-                			
-                    	pos++;
-                    	width = 0;
-                        gc = false;
-                        break;
-                    default :
-                    	if (!gc) {
-	                    	// initialize
-	                    	if (pos >= maxWidths.size())
-	                    		maxWidths.add(one);
-	                    	pos++;
-                    	} else {
-                    		// grapheme cluster
-                    		width++;
-                    	}
-                        break;
-                }
-            }
-        }
-        if (maxWidths.isEmpty()) {
-	        setAlignedPositionWidths(null);
-        } else {
-	        // convert to int array
-	        int[] positionWidth = new int[maxWidths.size()];
-	        int i = 0;
-	        for (Iterator it = maxWidths.iterator(); it.hasNext();) {
-	        	positionWidth[i++] = ((Integer)it.next()).intValue();
-	        }
-	
-	        setAlignedPositionWidths(positionWidth);
+            widths.add(extractor.getColumnData(it.next()));
         }
+        setAlignedPositionWidths(widths.getWidths());
     }
 
     /**
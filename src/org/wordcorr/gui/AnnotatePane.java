@@ -13,6 +13,7 @@ import javax.swing.table.TableColumn;
 import org.wordcorr.AppProperties;
 import org.wordcorr.BeanCatalog;
 import org.wordcorr.db.Alignment;
+import org.wordcorr.db.AlignmentVector;
 import org.wordcorr.db.DatabaseException;
 import org.wordcorr.db.Entry;
 import org.wordcorr.db.Group;
@@ -50,6 +51,9 @@ class AnnotatePane extends JPanel implements Refreshable {
      * Refresh this pane.
      **/
     public void refresh() throws DatabaseException {
+        // data read ahead may have been changed in other panes
+        _mainPanel.dropPrefetched();
+
         // set active view
         _mainPanel.refresh();
         _mainPanel.setVisible(true);
@@ -69,8 +73,12 @@ class AnnotatePane extends JPanel implements Refreshable {
                 AppPrefs.getInstance().getMessages().getString("btnFindAnnotate"));
 
             this.setBorder(BorderFactory.createEtchedBorder());
-            getList().setModel(new BasicListModel());
             getList().setFont(FontCache.getFont(FontCache.PRIMARY_GLOSS));
+            _model = new EntryListModel(_collection, getList()) {
+                protected Object wrap(Entry entry) throws DatabaseException {
+                    return new EntryWrapper(entry, _view, _prefetcher);
+                }
+            };
             this.setVisible(false);
 
             getList()
@@ -90,6 +98,7 @@ class AnnotatePane extends JPanel implements Refreshable {
                         } catch (DatabaseException e) {
                             e.printStackTrace();
                         }
+                        prefetch();
                     }
                 }
             });
@@ -100,13 +109,37 @@ class AnnotatePane extends JPanel implements Refreshable {
          **/
         void selectDefault() throws DatabaseException {
             Setting setting = _collection.getDatabase().getCurrentSetting();
-            for (int i = 0; i < getList().getModel().getSize(); i++) {
-                EntryWrapper entry = (EntryWrapper) getList().getModel().getElementAt(i);
-                if (entry.getID() == setting.getEntryID()) {
-                    getList().setSelectedValue(entry, true);
+            int index = _model.indexOf(setting.getEntryID());
+            if (index != -1) {
+                getList().setSelectedIndex(index);
+                getList().ensureIndexIsVisible(index);
+            }
+        }
+
+        /**
+         * Drop the data read ahead.
+         **/
+        void dropPrefetched() {
+            _prefetcher.invalidate();
+        }
+
+        /**
+         * Read ahead the alignments of the entries after the selected one.
+         **/
+        private void prefetch() {
+            List entries = new ArrayList();
+            int index = getList().getSelectedIndex();
+            int end = Math.min(index + _prefetcher.getCount(), _model.getSize() - 1);
+            for (int i = index + 1; i <= end; i++) {
+                // pages not read yet are left for when they are shown
+                if (!_model.isLoaded(i))
                     break;
+                EntryWrapper wrapper = (EntryWrapper) _model.getElementAt(i);
+                if (wrapper != null && !wrapper.isDataLoaded()) {
+                    entries.add(wrapper.getEntryObject());
                 }
             }
+            _prefetcher.prefetch(_view, entries);
         }
 
         /**
@@ -119,12 +152,8 @@ class AnnotatePane extends JPanel implements Refreshable {
             if (view != null) {
                 view.revert();
             }
-            List entries = _collection.getEntries();
-            List wrappers = new ArrayList(entries.size());
-            for (Iterator it = entries.iterator(); it.hasNext();) {
-                wrappers.add(new EntryWrapper((Entry) it.next(), view));
-            }
-            ((BasicListModel) getList().getModel()).setData(wrappers);
+            _view = view;
+            _model.setIndex(_collection.getEntryIndex());
 
             // set selection
             selectDefault();
@@ -133,15 +162,21 @@ class AnnotatePane extends JPanel implements Refreshable {
         protected FindDialog createFindDialog() {
             return new FindDialog("GlossFindDialog");
         }
+
+        private final EntryListModel _model;
+        private final EntryPrefetcher _prefetcher = new EntryPrefetcher(false);
+        private View _view;
     }
 
     /**
      * Wrapper bean class for an entry.
      **/
     public static final class EntryWrapper implements Persistent {
-        EntryWrapper(Entry entry, View view) throws DatabaseException {
+        EntryWrapper(Entry entry, View view, EntryPrefetcher prefetcher)
+            throws DatabaseException {
             _entry = entry;
             _view = view;
+            _prefetcher = prefetcher;
         }
 
         // Attributes
@@ -163,7 +198,7 @@ class AnnotatePane extends JPanel implements Refreshable {
         public List getData() {
             try {
                 if (_alignments == null && _view != null) {
-                    _alignments = _view.getAlignments(_entry);
+                    _alignments = _prefetcher.get(_view, _entry).getAlignments();
                 }
             } catch (DatabaseException e) {
                 e.printStackTrace();
@@ -182,10 +217,17 @@ class AnnotatePane extends JPanel implements Refreshable {
 
         public void save() throws DatabaseException {
             clearDirty();
-            for (Iterator it = getData().iterator(); it.hasNext();) {
-                ((Alignment) it.next()).save();
+            try {
+                for (Iterator it = getData().iterator(); it.hasNext();) {
+                    ((Alignment) it.next()).save();
+                }
+                _view.deleteUnusedGroups(_entry);
+            } catch (DatabaseException e) {
+                // other entries read ahead may share what was half saved
+                _prefetcher.invalidate();
+                throw e;
             }
-            _view.deleteUnusedGroups(_entry);
+            _prefetcher.invalidate(_entry);
         }
 
         public void delete() throws DatabaseException {
@@ -199,6 +241,13 @@ class AnnotatePane extends JPanel implements Refreshable {
             }
         }
 
+        /**
+         * Check whether the alignments have been read.
+         **/
+        boolean isDataLoaded() {
+            return _alignments != null;
+        }
+
         public boolean isDirty() {
             return _dirty;
         }
@@ -222,6 +271,7 @@ class AnnotatePane extends JPanel implements Refreshable {
         private boolean _dirty = false;
         private final Entry _entry;
         private final View _view;
+        private final EntryPrefetcher _prefetcher;
         private List _alignments;
     }
 
@@ -492,7 +542,7 @@ class AnnotatePane extends JPanel implements Refreshable {
                                 boolean done = false;
                                 for (Iterator it = clusters.iterator(); it.hasNext() && !done;) {
                                     String graphemeCluster = (String) it.next();
-                                    if (alignedDatum.substring(i).startsWith(graphemeCluster)) {
+                                    if (alignedDatum.startsWith(graphemeCluster, i)) {
                                         // propose match
                                         String proposal =
                                             datum.substring(0, datumpos)
@@ -567,13 +617,7 @@ class AnnotatePane extends JPanel implements Refreshable {
                     messages.getCompoundMessage("msgAnnotateConfirmReplaceVector", _vector))) {
 
                 // get hold count in vector
-                int vectorHoldCount = 0;
-                for (int i = 0; i < _vector.length(); i++) {
-                    char ch = _vector.charAt(i);
-                    if (ch == Alignment.HOLD_SYMBOL) {
-                        ++vectorHoldCount;
-                    }
-                }
+                int vectorHoldCount = AlignmentVector.valueOf(_vector).getHoldCount();
 
                 // process each alignment
                 ArrayList alignmentExceptions = new ArrayList();
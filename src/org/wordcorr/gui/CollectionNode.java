@@ -1,6 +1,7 @@
 package org.wordcorr.gui;
 
 import org.wordcorr.db.DatabaseException;
+import org.wordcorr.db.RoundTripTrace;
 import org.wordcorr.db.WordCollection;
 import org.wordcorr.db.Setting;
 import org.wordcorr.db.View;
@@ -182,6 +183,8 @@ final class CollectionNode extends LeafNode implements Refreshable {
                         setComponentAt(index, _componentArray[index]);
                         if (_componentArray[index] instanceof Refreshable) {
                             Dialogs.showWaitCursor(MainFrame.getInstance());
+                            RoundTripTrace trace = RoundTripTrace.begin(
+                                "refresh " + _componentArray[index].getClass().getName());
                             try {
                                 // do not automatically refresh tabulate but initialize
                                 if (_componentArray[index] instanceof Initializable) {
@@ -191,6 +194,7 @@ final class CollectionNode extends LeafNode implements Refreshable {
                                 }
                             } catch (DatabaseException ignored) {
                             } finally {
+                                trace.end();
                                 Dialogs.showDefaultCursor(MainFrame.getInstance());
                             }
                         }
@@ -202,10 +206,13 @@ final class CollectionNode extends LeafNode implements Refreshable {
             for (int i = 0; i < _componentArray.length; i++) {
                 if (_componentArray[i] != null && _componentArray[i] instanceof Refreshable) {
                     Dialogs.showWaitCursor(MainFrame.getInstance());
+                    RoundTripTrace trace = RoundTripTrace.begin(
+                        "refresh " + _componentArray[i].getClass().getName());
                     try {
                         ((Refreshable) _componentArray[i]).refresh();
                     } catch (DatabaseException ignored) {
                     } finally {
+                        trace.end();
                         Dialogs.showDefaultCursor(MainFrame.getInstance());
                     }
                 }
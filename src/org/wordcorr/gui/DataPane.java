@@ -12,7 +12,6 @@ import org.wordcorr.db.Setting;
 import org.wordcorr.db.Variety;
 import org.wordcorr.db.View;
 import org.wordcorr.db.WordCollection;
-import org.wordcorr.gui.input.SortableList;
 
 /**
  * Pane for entering and editing data.
@@ -29,11 +28,13 @@ class DataPane extends AddEditDeletePanel {
         setFindButtonLabel(
             AppPrefs.getInstance().getMessages().getString("btnFindData"));
 
-        List list = new ArrayList();
-        getList().setModel(new BasicListModel(list));
-        getList().setFont(FontCache.getFont(FontCache.PRIMARY_GLOSS));
-        _sorter = new SortableList(getList(), list, (Refreshable) getList().getModel());
         _collection = collection;
+        getList().setFont(FontCache.getFont(FontCache.PRIMARY_GLOSS));
+        _model = new EntryListModel(_collection, getList()) {
+            protected Object wrap(Entry entry) {
+                return entry;
+            }
+        };
 
         addAddEditDeleteListener(new AddEditDeleteListener() {
             public void doAdd(ActionEvent evt) throws DatabaseException {
@@ -44,7 +45,7 @@ class DataPane extends AddEditDeletePanel {
                     entry.setEntryNum(new Integer(getList().getModel().getSize() + 1));
                     entry.save();
                     refresh();
-                    getList().setSelectedValue(entry, true);
+                    select(entry.getID());
                 }
             }
 
@@ -142,7 +143,8 @@ class DataPane extends AddEditDeletePanel {
                     e1.save();
                     e2.setEntryNum(new Integer(index + 1));
                     e2.save();
-                    _sorter.moveUp();
+
+                    // the selected entry is found again at its new place
                     refresh();
                 } catch (DatabaseException e) {
                     Dialogs.genericError(e);
@@ -164,7 +166,8 @@ class DataPane extends AddEditDeletePanel {
                     e1.save();
                     e2.setEntryNum(new Integer(index + 1));
                     e2.save();
-                    _sorter.moveDown();
+
+                    // the selected entry is found again at its new place
                     refresh();
                 } catch (DatabaseException e) {
                     Dialogs.genericError(e);
@@ -199,14 +202,19 @@ class DataPane extends AddEditDeletePanel {
     }
 
     public void refreshExt() throws DatabaseException {
-        ((BasicListModel) getList().getModel()).setData(_collection.getEntries());
+        _model.setIndex(_collection.getEntryIndex());
         Setting setting = _collection.getDatabase().getCurrentSetting();
-        for (int i = 0; i < getList().getModel().getSize(); i++) {
-            Entry entry = (Entry) getList().getModel().getElementAt(i);
-            if (entry.getID() == setting.getEntryID()) {
-                getList().setSelectedValue(entry, true);
-                break;
-            }
+        select(setting.getEntryID());
+    }
+
+    /**
+     * Select the entry with the given ID, if it is in the list.
+     **/
+    private void select(long entryID) {
+        int index = _model.indexOf(entryID);
+        if (index != -1) {
+            getList().setSelectedIndex(index);
+            getList().ensureIndexIsVisible(index);
         }
     }
 
@@ -215,5 +223,5 @@ class DataPane extends AddEditDeletePanel {
     }
     
     private final WordCollection _collection;
-    private final SortableList _sorter;
+    private final EntryListModel _model;
 }
@@ -206,9 +206,14 @@ public final class DatabasePane extends JSplitPane implements Refreshable {
 			                        ((CollectionNode)node).resetSelectedPane();
 			                    }
 			                    if (comp instanceof Refreshable) {
+			                    	RoundTripTrace trace = RoundTripTrace.begin(
+			                    		"refresh " + comp.getClass().getName());
 			                    	try {
 			                    		((Refreshable)comp).refresh();
-			                    	} catch (DatabaseException ignored) { }
+			                    	} catch (DatabaseException ignored) {
+			                    	} finally {
+			                    		trace.end();
+			                    	}
 			                    }
 		                    }
 		                    
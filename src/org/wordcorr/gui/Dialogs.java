@@ -3,12 +3,18 @@ package org.wordcorr.gui;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Cursor;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import org.wordcorr.gui.action.WordCorrAction;
 /**
  * Class with shortcuts for dialogs and such.
  * @author Keith Hamasaki, Jim Shiba
@@ -65,6 +71,65 @@ public final class Dialogs {
         dialog.setVisible(true);
     }
     
+    /**
+     * Run a task on its own thread while showing its progress, with a
+     * button to cancel it. Returns when the task has finished.
+     **/
+    public static void progressDialog(final ProgressTask task, String title) {
+        final JDialog dialog = new JDialog(MainFrame.getInstance(), true);
+        dialog.setTitle(title);
+        final JLabel label = new JLabel(AppPrefs.getInstance().getMessages().getString("pgbWaitString"));
+        dialog.add(label, BorderLayout.NORTH);
+        final JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+        dialog.add(bar, BorderLayout.CENTER);
+        JPanel buttons = new JPanel();
+        buttons.add(new JButton(new WordCorrAction("btnCancel", "accCancel") {
+            public void actionPerformed(ActionEvent evt) {
+                setEnabled(false);
+                task.cancel();
+            }
+        }));
+        dialog.add(buttons, BorderLayout.SOUTH);
+        dialog.setSize(400, dialog.getPreferredSize().height);
+        dialog.setLocationRelativeTo(MainFrame.getInstance());
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+        // poll the task's progress
+        final Timer timer = new Timer(250, new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                int max = task.getProgressMaximum();
+                if (max > 0) {
+                    bar.setIndeterminate(false);
+                    bar.setMaximum(max);
+                    bar.setValue(task.getProgress());
+                }
+                String message = task.getProgressMessage();
+                if (message != null)
+                    label.setText(message);
+            }
+        });
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    // close once the dialog is showing
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            timer.stop();
+                            dialog.dispose();
+                        }
+                    });
+                }
+            }
+        });
+        t.setPriority(Thread.MIN_PRIORITY);
+        timer.start();
+        t.start();
+        dialog.setVisible(true);
+    }
+
     /**
      * Show a custom message dialog with no icon.
      * @param message Message
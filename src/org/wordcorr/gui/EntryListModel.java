@@ -0,0 +1,172 @@
+package org.wordcorr.gui;
+
+import java.awt.Component;
+import java.util.*;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import org.wordcorr.AppProperties;
+import org.wordcorr.db.DatabaseException;
+import org.wordcorr.db.Entry;
+import org.wordcorr.db.EntryIndex;
+import org.wordcorr.db.WordCollection;
+
+/**
+ * List model for a long list of entries. Only the entries' keys and
+ * numbers are read when the list is set; the entries are read a page at
+ * a time, by entry number range, and wrapped the first time a row of the
+ * page is shown or selected. The list's rows are given a fixed size so
+ * it can be laid out without reading every entry. A page that cannot be
+ * read is shown empty, and the first such error of a list is reported.
+ **/
+abstract class EntryListModel extends BasicListModel {
+
+    /**
+     * Constructor. Sets this as the model of the given list, which
+     * should already have its font.
+     **/
+    EntryListModel(WordCollection collection, JList list) {
+        _collection = collection;
+        _jlist = list;
+        _pageSize = Integer.parseInt(AppProperties.getProperty("EntryListPageSize"));
+        list.setModel(this);
+        list.setPrototypeCellValue("+> ");
+    }
+
+    /**
+     * Set the entries of the list, dropping any read before.
+     * @param index The entries' keys and numbers, or null for none.
+     **/
+    public void setIndex(EntryIndex index) {
+        _index = index;
+        _pages = new Object[(getSize() + _pageSize - 1) / _pageSize][];
+        _errorShown = false;
+        refresh();
+    }
+
+    /**
+     * Get the row of the entry with the given key, or -1 if it is not
+     * in the list.
+     **/
+    public int indexOf(long entryID) {
+        return (_index == null) ? -1 : _index.indexOf(entryID);
+    }
+
+    /**
+     * Get the element at the given index, reading its page if needed.
+     * Returns null if the page could not be read.
+     **/
+    public Object getElementAt(int index) {
+        int page = index / _pageSize;
+        if (_pages[page] == null) {
+            // mark the page first, so a repaint behind the error dialog
+            // does not read it again
+            _pages[page] = FAILED_PAGE;
+            try {
+                _pages[page] = readPage(page);
+            } catch (DatabaseException e) {
+                if (_errorShown) {
+                    e.printStackTrace();
+                } else {
+                    _errorShown = true;
+                    Dialogs.genericError(e);
+                }
+            }
+        }
+        Object[] rows = _pages[page];
+        return (rows == FAILED_PAGE) ? null : rows[index % _pageSize];
+    }
+
+    /**
+     * Check whether the element at the given index has been read, so
+     * getting it will not read the database.
+     **/
+    public boolean isLoaded(int index) {
+        Object[] rows = _pages[index / _pageSize];
+        return rows != null && rows != FAILED_PAGE;
+    }
+
+    /**
+     * Get the size of the list.
+     **/
+    public int getSize() {
+        return (_index == null) ? 0 : _index.size();
+    }
+
+    /**
+     * Wrap an entry as an element of the list.
+     **/
+    protected abstract Object wrap(Entry entry) throws DatabaseException;
+
+    /**
+     * Read the entries of the list numbered within the given range. By
+     * default all of the collection's entries in the range are read;
+     * override for a list holding only some of them.
+     **/
+    protected List readEntries(int fromEntryNum, int toEntryNum)
+        throws DatabaseException {
+        return _collection.getEntries(fromEntryNum, toEntryNum);
+    }
+
+    /**
+     * Read and wrap the entries of a page.
+     **/
+    private Object[] readPage(int page) throws DatabaseException {
+        int start = page * _pageSize;
+        int end = Math.min(start + _pageSize, getSize());
+        Object[] rows = new Object[end - start];
+
+        // read the entries numbered within the page's range
+        int from = Integer.MAX_VALUE;
+        int to = Integer.MIN_VALUE;
+        for (int i = start; i < end; i++) {
+            if (_index.hasEntryNum(i)) {
+                from = Math.min(from, _index.getEntryNum(i));
+                to = Math.max(to, _index.getEntryNum(i));
+            }
+        }
+        Map entries = new HashMap();
+        if (from <= to) {
+            for (Iterator it = readEntries(from, to).iterator(); it.hasNext();) {
+                Entry entry = (Entry) it.next();
+                entries.put(new Long(entry.getID()), entry);
+            }
+        }
+
+        // entries the range did not hold, such as those without a
+        // number, are read by themselves
+        for (int i = start; i < end; i++) {
+            Entry entry = (Entry) entries.get(new Long(_index.getKey(i)));
+            if (entry == null) {
+                entry = _collection.getEntryByID(_index.getKey(i));
+            }
+            rows[i - start] = wrap(entry);
+        }
+        updateCellWidth(rows);
+        return rows;
+    }
+
+    /**
+     * Widen the list's rows to fit the given elements.
+     **/
+    private void updateCellWidth(Object[] rows) {
+        ListCellRenderer renderer = _jlist.getCellRenderer();
+        int width = _jlist.getFixedCellWidth();
+        for (int i = 0; i < rows.length; i++) {
+            Component c =
+                renderer.getListCellRendererComponent(_jlist, rows[i], -1, false, false);
+            width = Math.max(width, c.getPreferredSize().width);
+        }
+        if (width > _jlist.getFixedCellWidth()) {
+            _jlist.setFixedCellWidth(width);
+        }
+    }
+
+    private static final Object[] FAILED_PAGE = new Object[0];
+
+    private final WordCollection _collection;
+    private final JList _jlist;
+    private final int _pageSize;
+    private EntryIndex _index;
+    private Object[][] _pages = new Object[0][];
+    private boolean _errorShown = false;
+}
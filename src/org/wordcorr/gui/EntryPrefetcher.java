@@ -0,0 +1,196 @@
+package org.wordcorr.gui;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.wordcorr.AppProperties;
+import org.wordcorr.db.DatabaseException;
+import org.wordcorr.db.Entry;
+import org.wordcorr.db.View;
+
+/**
+ * Reads the alignments and threshold groups of the entries after the
+ * selected one on a background thread, so stepping to the next entry is
+ * served from memory. The last few entries read are kept until they are
+ * used or invalidated: an entry when it is saved, and all of them when
+ * the pane is refreshed, since other panes may have changed them, or
+ * when a save fails. All of them are also dropped after any transaction
+ * is rolled back, since a read overlapping it may have seen its
+ * uncommitted rows. Entries are read ahead into copies, so the pane's
+ * instances are touched only on the Swing thread. Used from the Swing
+ * thread only.
+ **/
+final class EntryPrefetcher {
+
+    /**
+     * Constructor.
+     * @param thresholdGroups Also read the threshold groups of entries
+     * with more than one alignment.
+     **/
+    EntryPrefetcher(boolean thresholdGroups) {
+        _thresholdGroups = thresholdGroups;
+        _count = Integer.parseInt(AppProperties.getProperty("PrefetchEntries"));
+        _cache = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() <= 2 * _count)
+                    return false;
+                ((Future) eldest.getValue()).cancel(false);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the number of entries to read ahead.
+     **/
+    int getCount() {
+        return _count;
+    }
+
+    /**
+     * Start reading the given entries of a view, nearest first. Entries
+     * already read or being read are skipped.
+     **/
+    void prefetch(final View view, List entries) {
+        if (view == null)
+            return;
+        if (view.getID() != _viewID) {
+            invalidate();
+            _viewID = view.getID();
+        }
+        checkRollbacks(view);
+
+        for (Iterator it = entries.iterator(); it.hasNext();) {
+            final Entry entry = (Entry) it.next();
+            Long key = new Long(entry.getID());
+            if (_cache.containsKey(key))
+                continue;
+
+            // the panes load and save the entry's data on the Swing thread,
+            // so it is read into a copy here
+            final Entry copy = entry.copyEntry();
+            FutureTask task = new FutureTask(new Callable() {
+                public Object call() throws DatabaseException {
+                    return read(view, copy);
+                }
+            });
+            _cache.put(key, task);
+            EXECUTOR.execute(task);
+        }
+    }
+
+    /**
+     * Get an entry's alignments and threshold groups, as read ahead or
+     * read now. Data read ahead is used only once.
+     **/
+    Result get(View view, Entry entry) throws DatabaseException {
+        checkRollbacks(view);
+        FutureTask task = (view.getID() == _viewID)
+            ? (FutureTask) _cache.remove(new Long(entry.getID()))
+            : null;
+        if (task == null || task.isCancelled())
+            return read(view, entry);
+
+        // read it here if the background thread has not started it
+        task.run();
+        try {
+            return (Result) task.get();
+        } catch (InterruptedException e) {
+            return read(view, entry);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DatabaseException)
+                throw (DatabaseException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new DatabaseException(cause.toString());
+        }
+    }
+
+    /**
+     * Drop what was read ahead for an entry.
+     **/
+    void invalidate(Entry entry) {
+        Future task = (Future) _cache.remove(new Long(entry.getID()));
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Drop everything read ahead.
+     **/
+    void invalidate() {
+        for (Iterator it = _cache.values().iterator(); it.hasNext();) {
+            ((Future) it.next()).cancel(false);
+        }
+        _cache.clear();
+    }
+
+    /**
+     * Drop everything read ahead if a transaction has been rolled back
+     * since it was read.
+     **/
+    private void checkRollbacks(View view) {
+        long rollbacks = view.getDatabase().getRollbackCount();
+        if (rollbacks != _rollbacks) {
+            invalidate();
+            _rollbacks = rollbacks;
+        }
+    }
+
+    /**
+     * Read an entry's alignments and, if wanted, threshold groups.
+     **/
+    private Result read(View view, Entry entry) throws DatabaseException {
+        List alignments = view.getAlignments(entry);
+        List groups = (_thresholdGroups && alignments.size() > 1)
+            ? view.getThresholdGroups(entry)
+            : null;
+        return new Result(alignments, groups);
+    }
+
+    /**
+     * The data read for an entry.
+     **/
+    static final class Result {
+        Result(List alignments, List thresholdGroups) {
+            _alignments = alignments;
+            _thresholdGroups = thresholdGroups;
+        }
+
+        List getAlignments() {
+            return _alignments;
+        }
+
+        /**
+         * Get the threshold groups, or null if they were not read.
+         **/
+        List getThresholdGroups() {
+            return _thresholdGroups;
+        }
+
+        private final List _alignments;
+        private final List _thresholdGroups;
+    }
+
+    /**
+     * One low priority thread shared by all panes.
+     **/
+    private static final ExecutorService EXECUTOR =
+        Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Entry prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final boolean _thresholdGroups;
+    private final int _count;
+    private final Map _cache;
+    private long _viewID = -1;
+    private long _rollbacks = 0;
+}
@@ -381,6 +381,8 @@ public final class MainFrame extends JFrame implements Refreshable {
             //            viewMenu.add(new WMenuItem(Refresh.getInstance()));
             viewMenu.add(new WMenuItem(ShowTree.getInstance()));
             viewMenu.add(new WMenuItem(ChooseFont.getInstance()));
+            viewMenu.addSeparator();
+            viewMenu.add(new WMenuItem(DumpQueryStatistics.getInstance()));
 
             JMenu helpMenu = new JMenu(messages.getString("mnuHelp"));
             helpMenu.setMnemonic(messages.getChar("accHelp"));
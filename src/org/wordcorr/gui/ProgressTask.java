@@ -0,0 +1,28 @@
+package org.wordcorr.gui;
+
+/**
+ * Interface representing a long task that reports its progress and can
+ * be cancelled.
+ **/
+public interface ProgressTask extends Task {
+
+    /**
+     * Get the number of steps done.
+     **/
+    int getProgress();
+
+    /**
+     * Get the number of steps in all, or 0 if not yet known.
+     **/
+    int getProgressMaximum();
+
+    /**
+     * Get a description of the current step.
+     **/
+    String getProgressMessage();
+
+    /**
+     * Ask the task to stop as soon as it safely can.
+     **/
+    void cancel();
+}
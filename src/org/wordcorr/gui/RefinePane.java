@@ -29,6 +29,7 @@ import javax.xml.transform.stream.StreamSource;
 import org.wordcorr.AppProperties;
 import org.wordcorr.BeanCatalog;
 import org.wordcorr.db.Cluster;
+import org.wordcorr.db.ConformabilityIndex;
 import org.wordcorr.db.CorrespondenceSet;
 import org.wordcorr.db.Database;
 import org.wordcorr.db.DatabaseException;
@@ -36,6 +37,7 @@ import org.wordcorr.db.Group;
 import org.wordcorr.io.InfinitePipeInputStream;
 import org.wordcorr.io.InfinitePipeOutputStream;
 import org.wordcorr.db.Protosegment;
+import org.wordcorr.db.RefineTable;
 import org.wordcorr.db.RetrieveAllParameters;
 import org.wordcorr.db.SummaryFile;
 import org.wordcorr.db.Setting;
@@ -126,18 +128,53 @@ class RefinePane extends ButtonPanel implements Refreshable {
         Setting setting = _collection.getDatabase().getCurrentSetting();
         final View view = _collection.getViewByID(setting.getViewID());
         if (view != null) {
-            List rows = view.getRefineTable();
-            _tableModel.setRows(rows, view);
-            _table.setAlignedPositionWidths(rows, new AlignedDataExtractor() {
-                public String getColumnData(Object obj) {
-                    Object[] objs = (Object[]) obj;
-                    RefineData data = new RefineData(objs, view);
-                    return data.getCorrespondenceSet();
-                }
-            });
+            _tableModel.setRows(view.getRefineTable(), view);
         } else {
             // clear table
-            _tableModel.setRows(Collections.EMPTY_LIST, view);
+            _tableModel.setRows(null, view);
+        }
+        updateAlignedPositionWidths();
+    }
+
+    /**
+     * Refresh the rows changed by a task. If the task names the
+     * protosegments it changed, only their rows are reloaded.
+     **/
+    private void refresh(RefineData data) throws DatabaseException {
+        Setting setting = _collection.getDatabase().getCurrentSetting();
+        View view = _collection.getViewByID(setting.getViewID());
+        Set keys = data.getRefreshProtosegments();
+        if (view == null || keys.isEmpty()) {
+            refresh();
+            return;
+        }
+
+        List protosegments = view.getProtosegments();
+        for (Iterator it = keys.iterator(); it.hasNext();) {
+            long key = ((Long) it.next()).longValue();
+            RefineTable rows = null;
+            for (Iterator itp = protosegments.iterator(); itp.hasNext();) {
+                Protosegment protosegment = (Protosegment) itp.next();
+                if (protosegment.getID() == key) {
+                    rows = view.getRefineTable(protosegment);
+                    break;
+                }
+            }
+            _tableModel.setProtosegmentRows(key, rows, view, protosegments);
+        }
+        updateAlignedPositionWidths();
+    }
+
+    /**
+     * Set the aligned position widths of the table from its rows,
+     * repainting it if they changed.
+     **/
+    private void updateAlignedPositionWidths() {
+        int[] widths = _tableModel.getAlignedPositionWidths();
+        if (!Arrays.equals(widths, _alignedPositionWidths)) {
+            _alignedPositionWidths = widths;
+            _table.setAlignedPositionWidths(widths);
+            _table.repaint();
         }
     }
 
@@ -300,20 +337,26 @@ class RefinePane extends ButtonPanel implements Refreshable {
             int[] selectedRows = _table.getSelectedRows();
             if (selectedRows.length == 0)
                 Dialogs.msgbox(messages.getString("msgRefineSelectRow"));
+
+            // get selected data first, since rows move as tasks refresh them
+            RefineData[] selected = new RefineData[selectedRows.length];
             for (int i = 0; i < selectedRows.length; i++) {
-                RefineData data =
-                    (RefineData) ((RefineTableModel) _table.getModel()).getRow(selectedRows[i]);
+                selected[i] = _tableModel.getRow(selectedRows[i]);
+            }
+            for (int i = 0; i < selected.length; i++) {
+                RefineData data = selected[i];
                 if (data == null)
                     continue;
 
                 String cmd = ((JButton) evt.getSource()).getActionCommand();
                 data.setTask(cmd);
+                data.setRefresh(false);
                 TaskDialog dialog = new TaskDialog("lbl" + cmd, data, cmd);
                 dialog.setVisible(true);
                 if (!dialog.isCancelled()) {
                     if (data.getRefresh()) {
                         try {
-                            refresh();
+                            refresh(data);
                         } catch (DatabaseException e) {
                             e.printStackTrace();
                         }
@@ -504,32 +547,113 @@ class RefinePane extends ButtonPanel implements Refreshable {
             return _rows.size();
         }
 
-        void setRows(List rows, View view) {
-            _rows = new ArrayList();
-            RefineData previous = null;
-            for (Iterator it = rows.iterator(); it.hasNext();) {
-                Object[] objs = (Object[]) it.next();
-                RefineData data = new RefineData(objs, view);
-                if (previous != null) {
-                    if (data.getSet().equals(previous.getSet())) {
-                        previous.add(data.getCitation(), data.getKeys());
-                    } else {
-                        _rows.add(data);
-                        previous = data;
+        /**
+         * Get the aligned position widths of the correspondence sets.
+         **/
+        public int[] getAlignedPositionWidths() {
+            return _widths.getWidths();
+        }
+
+        void setRows(RefineTable rows, View view) {
+            _rows = makeRows(rows, view);
+            _widths.clear();
+            for (Iterator it = _rows.iterator(); it.hasNext();) {
+                _widths.add(((RefineData) it.next()).getCorrespondenceSet());
+            }
+            fireTableDataChanged();
+        }
+
+        /**
+         * Replace the rows of a protosegment, placing them among the
+         * rows of the other protosegments in the view's order.
+         * @param protosegments The view's protosegments, in order.
+         **/
+        void setProtosegmentRows(
+            long protosegmentKey,
+            RefineTable rows,
+            View view,
+            List protosegments) {
+            // remove old rows
+            int start = 0;
+            while (start < _rows.size() && getRow(start).getProtosegmentKey() != protosegmentKey) {
+                start++;
+            }
+            int end = start;
+            while (end < _rows.size() && getRow(end).getProtosegmentKey() == protosegmentKey) {
+                _widths.remove(getRow(end).getCorrespondenceSet());
+                end++;
+            }
+            _rows.subList(start, end).clear();
+
+            // add new rows before the first protosegment that follows
+            List newRows = makeRows(rows, view);
+            int index = start;
+            if (!newRows.isEmpty()) {
+                Map order = new HashMap();
+                for (int i = 0; i < protosegments.size(); i++) {
+                    order.put(new Long(((Protosegment) protosegments.get(i)).getID()), new Integer(i));
+                }
+                Integer position = (Integer) order.get(new Long(protosegmentKey));
+                index = 0;
+                long key = -1;
+                Integer keyPosition = null;
+                while (index < _rows.size()) {
+                    if (getRow(index).getProtosegmentKey() != key) {
+                        key = getRow(index).getProtosegmentKey();
+                        keyPosition = (Integer) order.get(new Long(key));
                     }
-                } else {
-                    _rows.add(data);
-                    previous = data;
+                    if (position != null
+                        && keyPosition != null
+                        && keyPosition.intValue() > position.intValue())
+                        break;
+                    index++;
                 }
             }
-            refresh();
+            for (Iterator it = newRows.iterator(); it.hasNext();) {
+                _widths.add(((RefineData) it.next()).getCorrespondenceSet());
+            }
+
+            // notify of changed rows only
+            int oldCount = end - start;
+            int newCount = newRows.size();
+            if (index == start) {
+                _rows.addAll(index, newRows);
+                if (Math.min(oldCount, newCount) > 0)
+                    fireTableRowsUpdated(start, start + Math.min(oldCount, newCount) - 1);
+                if (newCount > oldCount)
+                    fireTableRowsInserted(start + oldCount, start + newCount - 1);
+                else if (oldCount > newCount)
+                    fireTableRowsDeleted(start + newCount, start + oldCount - 1);
+            } else {
+                if (oldCount > 0)
+                    fireTableRowsDeleted(start, end - 1);
+                _rows.addAll(index, newRows);
+                if (newCount > 0)
+                    fireTableRowsInserted(index, index + newCount - 1);
+            }
         }
 
-        public void refresh() {
-            fireTableStructureChanged();
+        /**
+         * Make the table rows, one per correspondence set, from the refine
+         * table rows, one per citation.
+         * @param rows Refine table rows, or null for none.
+         **/
+        private static List makeRows(RefineTable rows, View view) {
+            List list = new ArrayList();
+            RefineData previous = null;
+            for (int i = 0; rows != null && i < rows.size(); i++) {
+                if (previous != null && previous.isSet(rows, i)) {
+                    previous.add(rows, i);
+                } else {
+                    previous = new RefineData(rows, i, view);
+                    list.add(previous);
+                }
+            }
+            return list;
         }
 
         private List _rows = Collections.EMPTY_LIST;
+        private final AlignedPositionWidths _widths = new AlignedPositionWidths();
     }
 
     /**
@@ -545,18 +669,21 @@ class RefinePane extends ButtonPanel implements Refreshable {
             _view = view;
         }
 
-        public RefineData(Object[] data, View view) {
-            _zone = (String) data[0];
-            _protosegment = (String) data[1];
-            _environment = (String) data[2];
-            _clusterOrder = (Integer) data[3];
-            _correspondenceSet = (String) data[4];
-            _citation = (String) data[5];
-            _hasProtosegmentRemarks = !((data[6] == null) || ((String) data[6]).equals(""));
-            _hasClusterRemarks = !((data[7] == null) || ((String) data[7]).equals(""));
-            _hasCorrespondenceSetRemarks =
-                !((data[8] == null) || ((String) data[8]).equals(""));
-            addKeys((String) data[9]);
+        public RefineData(RefineTable table, int row, View view) {
+            _zone = table.getZone(row);
+            _protosegment = table.getProtosegment(row);
+            _environment = table.getEnvironment(row);
+            _clusterOrder = new Integer(table.getClusterOrder(row));
+            _correspondenceSet = table.getCorrespondenceSet(row);
+            _citation = table.getCitation(row);
+            _hasProtosegmentRemarks = table.hasProtosegmentRemarks(row);
+            _hasClusterRemarks = table.hasClusterRemarks(row);
+            _hasCorrespondenceSetRemarks = table.hasCorrespondenceSetRemarks(row);
+            _zoneKey = table.getZoneKey(row);
+            _protosegmentKey = table.getProtosegmentKey(row);
+            _clusterKey = table.getClusterKey(row);
+            _correspondenceSetKey = table.getCorrespondenceSetKey(row);
+            addCitationKeys(table.getCitationKey(row), table.getGroupKey(row));
             _view = view;
         }
 
@@ -580,15 +707,19 @@ class RefinePane extends ButtonPanel implements Refreshable {
         }
 
         public int getCitationCount() {
-            return _keys.size();
+            return _citationCount;
         }
 
         public long getCitationKey(int idx) {
-            return getKey(idx, 5);
+            return _citationKeys[idx];
         }
 
         public long getClusterKey() {
-            return getKey(0, 3);
+            return _clusterKey;
+        }
+
+        public void setClusterKey(long val) {
+            _clusterKey = val;
         }
 
         public Integer getClusterOrder() {
@@ -618,7 +749,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
         }
 
         public long getCorrespondenceSetKey() {
-            return getKey(0, 4);
+            return _correspondenceSetKey;
         }
 
         public String getEnvironment() {
@@ -630,7 +761,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
         }
 
         public long getGroupKey(int idx) {
-            return getKey(idx, 6);
+            return _groupKeys[idx];
         }
 
         public String getProtosegment() {
@@ -646,7 +777,11 @@ class RefinePane extends ButtonPanel implements Refreshable {
         }
 
         public long getProtosegmentKey() {
-            return getKey(0, 2);
+            return _protosegmentKey;
+        }
+
+        public void setProtosegmentKey(long val) {
+            _protosegmentKey = val;
         }
 
         public String getZone() {
@@ -658,7 +793,11 @@ class RefinePane extends ButtonPanel implements Refreshable {
         }
 
         public long getZoneKey() {
-            return getKey(0, 1);
+            return _zoneKey;
+        }
+
+        public void setZoneKey(long val) {
+            _zoneKey = val;
         }
 
         public boolean hasClusterRemarks() {
@@ -693,23 +832,18 @@ class RefinePane extends ButtonPanel implements Refreshable {
             _remarksRow.setValue(getRemarks(type));
         }
 
-        private long getKey(int idx, int typeIdx) {
-            String val = (String) _keys.get(idx) + ":";
-            int i1 = 0;
-            int i2 = -1;
-            for (int i = 0; i < typeIdx; i++) {
-                i1 = i2 + 1;
-                i2 = val.indexOf(":", i1);
+        private void addCitationKeys(long citationKey, long groupKey) {
+            if (_citationCount == _citationKeys.length) {
+                long[] citationKeys = new long[_citationCount * 2];
+                long[] groupKeys = new long[_citationCount * 2];
+                System.arraycopy(_citationKeys, 0, citationKeys, 0, _citationCount);
+                System.arraycopy(_groupKeys, 0, groupKeys, 0, _citationCount);
+                _citationKeys = citationKeys;
+                _groupKeys = groupKeys;
             }
-            return Long.parseLong(val.substring(i1, i2));
-        }
-
-        public String getKeys() {
-            return (String) _keys.get(0);
-        }
-
-        public void addKeys(String val) {
-            _keys.add(val);
+            _citationKeys[_citationCount] = citationKey;
+            _groupKeys[_citationCount] = groupKey;
+            _citationCount++;
         }
 
         public String getSet() {
@@ -724,9 +858,28 @@ class RefinePane extends ButtonPanel implements Refreshable {
                 + _correspondenceSet;
         }
 
-        public void add(String citation, String keys) {
-            _citation += ", " + citation;
-            addKeys(keys);
+        /**
+         * Check whether a refine table row is a citation of this row's
+         * correspondence set, as displayed.
+         **/
+        public boolean isSet(RefineTable table, int row) {
+            return equals(_zone, table.getZone(row))
+                && equals(_protosegment, table.getProtosegment(row))
+                && equals(_environment, table.getEnvironment(row))
+                && _clusterOrder.intValue() == table.getClusterOrder(row)
+                && equals(_correspondenceSet, table.getCorrespondenceSet(row));
+        }
+
+        private static boolean equals(String s1, String s2) {
+            return (s1 == null) ? s2 == null : s1.equals(s2);
+        }
+
+        /**
+         * Add the citation of a refine table row.
+         **/
+        public void add(RefineTable table, int row) {
+            _citation += ", " + table.getCitation(row);
+            addCitationKeys(table.getCitationKey(row), table.getGroupKey(row));
         }
 
         public void setTask(String task) {
@@ -752,12 +905,29 @@ class RefinePane extends ButtonPanel implements Refreshable {
         public void setRefresh(boolean v) {
             // data changed if true, refresh refine list
             _refresh = v;
+            _refreshProtosegments.clear();
+        }
+
+        public void setRefresh(long protosegmentKey) {
+            // only rows of given protosegments changed, unless all did
+            if (!_refresh || !_refreshProtosegments.isEmpty()) {
+                _refresh = true;
+                _refreshProtosegments.add(new Long(protosegmentKey));
+            }
         }
 
         public boolean getRefresh() {
             return _refresh;
         }
 
+        /**
+         * Get the keys of the protosegments whose rows changed, or an empty
+         * set if all rows are to be refreshed.
+         **/
+        public Set getRefreshProtosegments() {
+            return _refreshProtosegments;
+        }
+
         public String toString() {
             switch (_type) {
                 case MERGE_PROTOSEGMENTS :
@@ -836,7 +1006,13 @@ class RefinePane extends ButtonPanel implements Refreshable {
         }
 
         private int _type;
-        private ArrayList _keys = new ArrayList();
+        private long _zoneKey;
+        private long _protosegmentKey;
+        private long _clusterKey;
+        private long _correspondenceSetKey;
+        private long[] _citationKeys = new long[1];
+        private long[] _groupKeys = new long[1];
+        private int _citationCount;
         private Map _remarks = new HashMap();
         private InputRow _remarksRow;
         private String _remarksType;
@@ -856,6 +1032,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
         private Object _value2;
         private View _view;
         private boolean _refresh = false;
+        private Set _refreshProtosegments = new LinkedHashSet();
         public static final int MERGE_CLUSTERS = 2;
         public static final int MERGE_PROTOSEGMENTS = 3;
         public static final int MOVE_CLUSTER = 4;
@@ -993,7 +1170,9 @@ class RefinePane extends ButtonPanel implements Refreshable {
                     protosegment.save();
 
                     // refresh
-                    refresh();
+                    data.setRefresh(false);
+                    data.setRefresh(protosegment.getID());
+                    refresh(data);
                 } catch (DatabaseException e) {
                     e.printStackTrace();
                 }
@@ -1141,14 +1320,21 @@ class RefinePane extends ButtonPanel implements Refreshable {
         */
         try {
             Cluster fromCluster = fromData.toCluster();
-            fromCluster.setEnvironment(value);
-            fromCluster.save();
-            fromCluster.getProtosegment().reorderClusterOrder();
+            Database db = fromCluster.getDatabase();
+            db.beginBatch();
+            try {
+                fromCluster.setEnvironment(value);
+                fromCluster.save();
+                fromCluster.getProtosegment().reorderClusterOrder();
+                db.commitBatch();
+            } finally {
+                db.rollbackBatch();
+            }
         } catch (DatabaseException e) {
             e.printStackTrace();
             return true;
         }
-        fromData.setRefresh(true);
+        fromData.setRefresh(fromData.getProtosegmentKey());
         return true;
     }
 
@@ -1165,7 +1351,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
             String msg = fromProtosegment.checkValidation();
             if (msg == null) {
                 fromProtosegment.save();
-                fromData.setRefresh(true);
+                fromData.setRefresh(fromData.getProtosegmentKey());
                 return true;
             } else {
                 Dialogs.msgbox(msg);
@@ -1201,29 +1387,17 @@ class RefinePane extends ButtonPanel implements Refreshable {
                 return true;
             }
 
-            // move all correspondence sets from cluster
+            // move all identical or conformable correspondence sets from
+            // cluster, deleting it if all are moved
             boolean moveSuccess = false;
-            boolean moveFailure = false;
-            List fromSets = fromCluster.getCorrespondenceSets();
-            for (Iterator it = fromSets.iterator(); it.hasNext();) {
-                CorrespondenceSet fromSet = (CorrespondenceSet) it.next();
-                // move correspondence set if identical or comformable
-                if (toCluster.addCorrespondenceSet(fromSet)) {
-                    // success
-                    moveSuccess = true;
-                } else {
-                    // failure
-                    moveFailure = true;
-                }
-            }
-            // moved all
-            if (!moveFailure) {
-                // delete from cluster after appending remarks
-                toCluster.appendRemarks(fromCluster.getRemarks());
-                toCluster.save();
-                Protosegment fromProtosegment = fromCluster.getProtosegment();
-                fromCluster.delete();
-                fromProtosegment.reorderClusterOrder();
+            Database db = toCluster.getDatabase();
+            db.beginBatch();
+            try {
+                moveSuccess =
+                    toCluster.mergeCluster(fromCluster, new ConformabilityIndex(toSets)) > 0;
+                db.commitBatch();
+            } finally {
+                db.rollbackBatch();
             }
             // nothing moved
             if (!moveSuccess)
@@ -1232,7 +1406,11 @@ class RefinePane extends ButtonPanel implements Refreshable {
                         "msgRefineMergeClustersNoChange"));
 
             // refresh if moved at least one
-            fromData.setRefresh(moveSuccess);
+            fromData.setRefresh(false);
+            if (moveSuccess) {
+                fromData.setRefresh(fromData.getProtosegmentKey());
+                fromData.setRefresh(toData.getProtosegmentKey());
+            }
         } catch (DatabaseException e) {
             e.printStackTrace();
             Dialogs.error(AppPrefs.getInstance().getMessages().getString("msgErrDatabase"));
@@ -1255,8 +1433,20 @@ class RefinePane extends ButtonPanel implements Refreshable {
 
             // move all clusters from protosegment
             // refresh if moved at least one
-            fromData.setRefresh(
-                toProtosegment.moveClustersFromProtosegment(fromProtosegment));
+            boolean moveSuccess = false;
+            Database db = toProtosegment.getDatabase();
+            db.beginBatch();
+            try {
+                moveSuccess = toProtosegment.moveClustersFromProtosegment(fromProtosegment);
+                db.commitBatch();
+            } finally {
+                db.rollbackBatch();
+            }
+            fromData.setRefresh(false);
+            if (moveSuccess) {
+                fromData.setRefresh(fromProtosegment.getID());
+                fromData.setRefresh(toProtosegment.getID());
+            }
         } catch (DatabaseException e) {
             e.printStackTrace();
             Dialogs.error(AppPrefs.getInstance().getMessages().getString("msgErrDatabase"));
@@ -1279,18 +1469,26 @@ class RefinePane extends ButtonPanel implements Refreshable {
             Protosegment toProtosegment = toData.toProtosegment();
 
             // move cluster
-            fromCluster.setProtosegment(toProtosegment);
-            fromCluster.setOrder(new Integer(toProtosegment.getMaxClusterOrder() + 1));
-            fromCluster.save();
-            fromProtosegment.reorderClusterOrder();
-            toProtosegment.reorderClusterOrder();
+            Database db = fromCluster.getDatabase();
+            db.beginBatch();
+            try {
+                fromCluster.setProtosegment(toProtosegment);
+                fromCluster.setOrder(new Integer(toProtosegment.getMaxClusterOrder() + 1));
+                fromCluster.save();
+                fromProtosegment.reorderClusterOrder();
+                toProtosegment.reorderClusterOrder();
+                db.commitBatch();
+            } finally {
+                db.rollbackBatch();
+            }
+            fromData.setRefresh(fromProtosegment.getID());
+            fromData.setRefresh(toProtosegment.getID());
         } catch (DatabaseException e) {
             e.printStackTrace();
             Dialogs.error(AppPrefs.getInstance().getMessages().getString("msgErrDatabase"));
             fromData.setRefresh(false);
             return true;
         }
-        fromData.setRefresh(true);
         return true;
     }
 
@@ -1332,7 +1530,9 @@ class RefinePane extends ButtonPanel implements Refreshable {
                     data.setProtosegment(rs.getString(1));
                     data.setEnvironment(rs.getString(2));
                     data.setClusterOrder(new Integer(rs.getInt(3)));
-                    data.addKeys(rs.getString(4));
+                    data.setZoneKey(rs.getLong(4));
+                    data.setProtosegmentKey(rs.getLong(5));
+                    data.setClusterKey(rs.getLong(6));
                     return data;
                 }
             });
@@ -1352,23 +1552,16 @@ class RefinePane extends ButtonPanel implements Refreshable {
                 }
             }
 
-            boolean moveToNewCluster = false;
+            // cluster to move to, or null for a new cluster
+            Cluster toCluster = null;
             if (clusters.size() == 0) {
             	// check for removal of identical cluster
             	if (identicalCluster)
             		return true;
-            		
-                // create and move to new cluster
-                moveToNewCluster = true;
             } else if (clusters.size() == 1) {
                 // move to cluster
                 RefineData clusterData = (RefineData) clusters.get(0);
-                Cluster toCluster = clusterData.toCluster();
-
-                // move correspondence set
-                if (!toCluster.addCorrespondenceSet(fromSet))
-                    // uncomformable create and move to new cluster
-                    moveToNewCluster = true;
+                toCluster = clusterData.toCluster();
             } else {
                 // query user for cluster to move to
                 // cluster selection list is stored in value
@@ -1380,12 +1573,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
                 if (!dialog.isCancelled()) {
                     // move to cluster
                     RefineData clusterData = (RefineData) fromData.getValue();
-                    Cluster toCluster = clusterData.toCluster();
-
-                    // move correspondence set
-                    if (!toCluster.addCorrespondenceSet(fromSet))
-                        // uncomformable create and move to new cluster
-                        moveToNewCluster = true;
+                    toCluster = clusterData.toCluster();
                 } else {
                     // cancelled
                     fromData.setRefresh(false);
@@ -1393,20 +1581,29 @@ class RefinePane extends ButtonPanel implements Refreshable {
                 }
             }
 
-            // move to new cluster
-            if (moveToNewCluster)
-                moveCorrespondenceSetToNewCluster(
-                    fromSet,
-                    fromCluster,
-                    toProtosegment,
-                    environment);
+            // move correspondence set; uncomformable create and move to
+            // new cluster
+            Database db = fromSet.getDatabase();
+            db.beginBatch();
+            try {
+                if (toCluster == null || !toCluster.addCorrespondenceSet(fromSet))
+                    moveCorrespondenceSetToNewCluster(
+                        fromSet,
+                        fromCluster,
+                        toProtosegment,
+                        environment);
+                db.commitBatch();
+            } finally {
+                db.rollbackBatch();
+            }
+            fromData.setRefresh(fromData.getProtosegmentKey());
+            fromData.setRefresh(toProtosegment.getID());
         } catch (DatabaseException e) {
             e.printStackTrace();
             Dialogs.error(AppPrefs.getInstance().getMessages().getString("msgErrDatabase"));
             fromData.setRefresh(false);
             return true;
         }
-        fromData.setRefresh(true);
         return true;
     }
 
@@ -1428,7 +1625,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
         fromSet.setCluster(newCluster);
         fromSet.setOrder(new Integer(1));
         fromSet.save();
-        if (fromCluster.getCorrespondenceSets().isEmpty()) {
+        if (fromCluster.getCorrespondenceSetCount() == 0) {
             // delete empty cluster after adding remarks to new cluster
             newCluster.setRemarks(fromCluster.getRemarks());
             newCluster.save();
@@ -1455,7 +1652,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
             e.printStackTrace();
             return true;
         }
-        fromData.setRefresh(true);
+        fromData.setRefresh(fromData.getProtosegmentKey());
         return true;
     }
 
@@ -1466,11 +1663,18 @@ class RefinePane extends ButtonPanel implements Refreshable {
         RefineData fromData,
         List clusters) {
         try {
-            int order = 0;
-            for (Iterator it = clusters.iterator(); it.hasNext();) {
-                Cluster cluster = (Cluster) it.next();
-                cluster.setOrder(new Integer(++order));
-                cluster.save();
+            Database db = MainFrame.getInstance().getDatabase();
+            db.beginBatch();
+            try {
+                int order = 0;
+                for (Iterator it = clusters.iterator(); it.hasNext();) {
+                    Cluster cluster = (Cluster) it.next();
+                    cluster.setOrder(new Integer(++order));
+                    cluster.save();
+                }
+                db.commitBatch();
+            } finally {
+                db.rollbackBatch();
             }
         } catch (DatabaseException e) {
             e.printStackTrace();
@@ -1478,7 +1682,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
             fromData.setRefresh(true);
             return true;
         }
-        fromData.setRefresh(true);
+        fromData.setRefresh(fromData.getProtosegmentKey());
         return true;
     }
 
@@ -1711,7 +1915,9 @@ class RefinePane extends ButtonPanel implements Refreshable {
                         data.setProtosegment(rs.getString(1));
                         data.setEnvironment(rs.getString(2));
                         data.setClusterOrder(new Integer(rs.getInt(3)));
-                        data.addKeys(rs.getString(4));
+                        data.setZoneKey(rs.getLong(4));
+                        data.setProtosegmentKey(rs.getLong(5));
+                        data.setClusterKey(rs.getLong(6));
                         return data;
                     }
                 });
@@ -1762,7 +1968,8 @@ class RefinePane extends ButtonPanel implements Refreshable {
                         RefineData data = new RefineData(RefineData.MERGE_PROTOSEGMENTS, view);
                         data.setZone(rs.getString(1));
                         data.setProtosegment(rs.getString(2));
-                        data.addKeys(rs.getString(3));
+                        data.setZoneKey(rs.getLong(3));
+                        data.setProtosegmentKey(rs.getLong(4));
                         return data;
                     }
                 });
@@ -1813,7 +2020,8 @@ class RefinePane extends ButtonPanel implements Refreshable {
                         RefineData data = new RefineData(RefineData.MOVE_CLUSTER, view);
                         data.setZone(rs.getString(1));
                         data.setProtosegment(rs.getString(2));
-                        data.addKeys(rs.getString(3));
+                        data.setZoneKey(rs.getLong(3));
+                        data.setProtosegmentKey(rs.getLong(4));
                         return data;
                     }
                 });
@@ -1865,7 +2073,8 @@ class RefinePane extends ButtonPanel implements Refreshable {
                         RefineData data = new RefineData(RefineData.MOVE_CORRESPONDENCE_SET, view);
                         data.setZone(rs.getString(1));
                         data.setProtosegment(rs.getString(2));
-                        data.addKeys(rs.getString(3));
+                        data.setZoneKey(rs.getLong(3));
+                        data.setProtosegmentKey(rs.getLong(4));
                         return data;
                     }
                 });
@@ -1938,7 +2147,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
                     public Object createObject(Database db, ResultSet rs) throws SQLException {
                         RefineData data = new RefineData(RefineData.MOVE_PROTOSEGMENT, view);
                         data.setZone(rs.getString(3));
-                        data.addKeys(rs.getString(4));
+                        data.setZoneKey(rs.getLong(4));
                         return data;
                     }
                 });
@@ -2303,6 +2512,7 @@ class RefinePane extends ButtonPanel implements Refreshable {
 
     private AlignedTable _table;
     private RefineTableModel _tableModel;
+    private int[] _alignedPositionWidths;
     private final ButtonListener _listener = new ButtonListener();
     private final WordCollection _collection;
 }
\ No newline at end of file
@@ -15,17 +15,20 @@ import javax.swing.table.TableModel;
 import org.wordcorr.AppProperties;
 import org.wordcorr.BeanCatalog;
 import org.wordcorr.db.Alignment;
-import org.wordcorr.db.Citation;
-import org.wordcorr.db.Cluster;
 import org.wordcorr.db.CorrespondenceSet;
+import org.wordcorr.db.Database;
 import org.wordcorr.db.DatabaseException;
 import org.wordcorr.db.Entry;
+import org.wordcorr.db.EntryIndex;
 import org.wordcorr.db.Group;
+import org.wordcorr.db.GroupTabulation;
 import org.wordcorr.db.Persistent;
 import org.wordcorr.db.Protosegment;
 import org.wordcorr.db.Setting;
+import org.wordcorr.db.TabulationMonitor;
 import org.wordcorr.db.Variety;
 import org.wordcorr.db.View;
+import org.wordcorr.db.ViewTabulator;
 import org.wordcorr.db.WordCollection;
 import org.wordcorr.db.Zone;
 import org.wordcorr.gui.AppPrefs;
@@ -69,6 +72,9 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
      * Refresh this pane.
      **/
     public void refresh() throws DatabaseException {
+        // data read ahead may have been changed in other panes
+        _mainPanel.dropPrefetched();
+
         // set active view
         _mainPanel.refresh();
         _mainPanel.setVisible(true);
@@ -79,6 +85,9 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
      * Initialize this pane.
      **/
     public void init() throws DatabaseException {
+        // data read ahead may have been changed in other panes
+        _mainPanel.dropPrefetched();
+
         // set selection
         _mainPanel.selectDefault();
     }
@@ -99,8 +108,19 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             setCurrentEditObjectSetting(false);
 
             this.setBorder(BorderFactory.createEtchedBorder());
-            getList().setModel(new BasicListModel());
             getList().setFont(FontCache.getFont(FontCache.PRIMARY_GLOSS));
+            _model = new EntryListModel(_collection, getList()) {
+                protected Object wrap(Entry entry) throws DatabaseException {
+                    return new EntryWrapper(
+                        entry, _view, _protosegments, ViewEntryPanel.this, _prefetcher);
+                }
+
+                protected List readEntries(int fromEntryNum, int toEntryNum)
+                    throws DatabaseException {
+                    // late in tabulating, few entries in a range are untabulated
+                    return _view.getUntabulatedEntries(fromEntryNum, toEntryNum);
+                }
+            };
             this.setVisible(false);
 
             getList()
@@ -121,9 +141,61 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
                         } catch (DatabaseException e) {
                             e.printStackTrace();
                         }
+                        prefetch();
                     }
                 }
             });
+
+            addSeparator();
+            addButton(new WButton(new WordCorrAction("btnTabulateAll", "accTabulateAll") {
+                public void actionPerformed(ActionEvent evt) {
+                    tabulateAll();
+                }
+            }));
+        }
+
+        /**
+         * Tabulate every entry of the current view that needs no choices.
+         **/
+        private void tabulateAll() {
+            try {
+                Setting setting = _collection.getDatabase().getCurrentSetting();
+                View view = _collection.getViewByID(setting.getViewID());
+                if (view == null) {
+                    return;
+                }
+
+                Messages messages = AppPrefs.getInstance().getMessages();
+                boolean retabulate = Dialogs.confirm(messages.getString("msgTabulateAllRetabulate"));
+                TabulateAllTask task = new TabulateAllTask(view, retabulate);
+                Dialogs.progressDialog(task, messages.getString("lblTabulateAll"));
+                ViewTabulator tabulator = task.getTabulator();
+                if (task.getError() != null) {
+                    Dialogs.genericError(task.getError());
+                } else if (tabulator.hasNoClusters()) {
+                    Dialogs.msgbox(messages.getString("msgTabulateAllNoClusters"));
+                } else if (tabulator.isCancelled()) {
+                    Dialogs.msgbox(messages.getString("msgTabulateAllCancelled"));
+                } else if (retabulate) {
+                    Dialogs.msgbox(
+                        messages.getCompoundMessage(
+                            "cmpTabulateAllRetabulated",
+                            new Object[] {
+                                new Integer(tabulator.getTabulatedCount()),
+                                new Integer(tabulator.getEntryCount()),
+                                new Integer(tabulator.getUnchangedCount())}));
+                } else {
+                    Dialogs.msgbox(
+                        messages.getCompoundMessage(
+                            "cmpTabulateAllDone",
+                            new Object[] {
+                                new Integer(tabulator.getTabulatedCount()),
+                                new Integer(tabulator.getEntryCount())}));
+                }
+                refresh();
+            } catch (DatabaseException e) {
+                Dialogs.genericError(e);
+            }
         }
 
         /**
@@ -140,13 +212,38 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
          **/
         void selectDefault() throws DatabaseException {
             Setting setting = _collection.getDatabase().getCurrentSetting();
-            for (int i = 0; i < getList().getModel().getSize(); i++) {
-                EntryWrapper entry = (EntryWrapper) getList().getModel().getElementAt(i);
-                if (entry.getID() == setting.getEntryID()) {
-                    getList().setSelectedValue(entry, true);
+            int index = _model.indexOf(setting.getEntryID());
+            if (index != -1) {
+                getList().setSelectedIndex(index);
+                getList().ensureIndexIsVisible(index);
+            }
+        }
+
+        /**
+         * Drop the data read ahead.
+         **/
+        void dropPrefetched() {
+            _prefetcher.invalidate();
+        }
+
+        /**
+         * Read ahead the alignments and threshold groups of the entries
+         * after the selected one.
+         **/
+        private void prefetch() {
+            List entries = new ArrayList();
+            int index = getList().getSelectedIndex();
+            int end = Math.min(index + _prefetcher.getCount(), _model.getSize() - 1);
+            for (int i = index + 1; i <= end; i++) {
+                // pages not read yet are left for when they are shown
+                if (!_model.isLoaded(i))
                     break;
+                EntryWrapper wrapper = (EntryWrapper) _model.getElementAt(i);
+                if (wrapper != null && !wrapper.isDataSetsSet()) {
+                    entries.add(wrapper.getEntryObject());
                 }
             }
+            _prefetcher.prefetch(_view, entries);
         }
 
         /**
@@ -154,21 +251,16 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
          **/
         public void refreshExt() throws DatabaseException {
             // populate list
-            List entries = Collections.EMPTY_LIST;
+            EntryIndex entries = null;
             Setting setting = _collection.getDatabase().getCurrentSetting();
             View view = _collection.getViewByID(setting.getViewID());
             if (view != null) {
                 view.revert();
-                entries = view.getUntabulatedEntries();
+                entries = view.getUntabulatedEntryIndex();
             }
+            _view = view;
             _protosegments = new ProtosegmentList(view);
-            List wrappers = new ArrayList(entries.size());
-            for (Iterator it = entries.iterator(); it.hasNext();) {
-                EntryWrapper entry =
-                    new EntryWrapper((Entry) it.next(), view, _protosegments, this);
-                wrappers.add(entry);
-            }
-            ((BasicListModel) getList().getModel()).setData(wrappers);
+            _model.setIndex(entries);
             
             // set selection
             selectDefault();
@@ -178,6 +270,9 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             return new FindDialog("GlossFindDialog");
         }
 
+        private final EntryListModel _model;
+        private final EntryPrefetcher _prefetcher = new EntryPrefetcher(true);
+        private View _view;
         private ProtosegmentList _protosegments;
     }
 
@@ -190,12 +285,14 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             Entry entry,
             View view,
             ProtosegmentList protosegments,
-            AddEditDeletePanel panel)
+            AddEditDeletePanel panel,
+            EntryPrefetcher prefetcher)
             throws DatabaseException {
             _entry = entry;
             _view = view;
             _protosegments = protosegments;
             _panel = panel;
+            _prefetcher = prefetcher;
         }
 
         // Attributes
@@ -211,6 +308,9 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
         public String getGloss2() {
             return _entry.getGloss2();
         }
+        public Entry getEntryObject() {
+            return _entry;
+        }
         public List getData() {
             return _alignments;
         }
@@ -234,45 +334,28 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
         public View getView() {
             return _view;
         }
-        private Alignment getCorrespondenceSetAlignment(Group group, Variety variety) {
-            // check alignments
-            ArrayList alignments = new ArrayList();
-            for (Iterator it = _alignments.iterator(); it.hasNext();) {
-                Alignment alignment = (Alignment)it.next();
-                
-                // skip alignment with no group
-                if (alignment.getGroup() == null)
-                    continue;
-                
-                // match group and variety
-                if (group.getID() == alignment.getGroup().getID()
-                    && variety.getID() == alignment.getDatum().getVariety().getID()) {
-                    alignments.add(alignment);
+        /**
+         * Ask the user to choose between a variety's alignments in a group.
+         **/
+        private static final GroupTabulation.AlignmentChooser ASK_USER =
+            new GroupTabulation.AlignmentChooser() {
+            public Alignment choose(Group group, Variety variety, List alignments) {
+                SelectAlignmentTask task = new SelectAlignmentTask(alignments);
+                String[] messageData = {group.getName(), variety.getShortName()};
+                task.setMessage(AppPrefs.getInstance().getMessages().getCompoundMessage(
+                    "msgTabulateSelectAlignment", messageData));
+                String cmd = "TabulateSelectAlignment";
+                TaskDialog dialog = new TaskDialog("lbl" + cmd, task, cmd);
+                dialog.isCancelVisible(false);
+                dialog.setVisible(true);
+                if (!dialog.isCancelled()) {
+                    return (Alignment)task.getValue();
+                } else {
+                    // use first as default
+                    return (Alignment)alignments.get(0);
                 }
             }
-            // return if empty or one
-            if (alignments.isEmpty()) {
-                return null;
-            } else if (alignments.size() == 1) {
-                return (Alignment)alignments.get(0);
-            }
-            
-            // prompt user for choice if more than 1 found
-            SelectAlignmentTask task = new SelectAlignmentTask(alignments);
-            String[] messageData = {group.getName(), variety.getShortName()};
-            task.setMessage(AppPrefs.getInstance().getMessages().getCompoundMessage(
-                "msgTabulateSelectAlignment", messageData));
-            String cmd = "TabulateSelectAlignment";
-            TaskDialog dialog = new TaskDialog("lbl" + cmd, task, cmd);
-            dialog.isCancelVisible(false);
-            dialog.setVisible(true);
-            if (!dialog.isCancelled()) {
-                return (Alignment)task.getValue();
-            } else {
-                // use first as default
-                return (Alignment)alignments.get(0);
-            }
-        }
+        };
             
         public boolean isDataComplete() {
             if (_dataSets.isEmpty())
@@ -297,15 +380,27 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             _isDataSetsSet = true;
 
             try {
+                // use the data read ahead unless resetting
+                EntryPrefetcher.Result data = null;
                 if (_view != null) {
-                    _alignments = _view.getAlignments(_entry);
+                    if (_prefetcher == null) {
+                        _alignments = _view.getAlignments(_entry);
+                    } else if (reset) {
+                        _prefetcher.invalidate(_entry);
+                        _alignments = _view.getAlignments(_entry);
+                    } else {
+                        data = _prefetcher.get(_view, _entry);
+                        _alignments = data.getAlignments();
+                    }
                 }
 
                 // compute correspondence sets
                 if (_alignments.isEmpty() || _alignments.size() == 1) {
                     _dataSets = Collections.EMPTY_LIST;
                 } else {
-                    List groups = _view.getThresholdGroups(_entry);
+                    List groups = (data == null)
+                        ? _view.getThresholdGroups(_entry)
+                        : data.getThresholdGroups();
                     if (groups.isEmpty()) {
                         _dataSets = Collections.EMPTY_LIST;
                         List belowGroups = _view.getBelowThresholdGroups(_entry);
@@ -350,83 +445,7 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
                             }
                         }
                     } else {
-                        // build correspondence sets
-                        _dataSets = new ArrayList();
-
-                        // get current group to process
-                        assignGroup : for (int i = 0; i < groups.size(); i++) {
-                            _group = (Group) groups.get(i);
-                            boolean first = true;
-                            int firstGroupsSkipped = 0;
-                            int len = 0;
-                            for (Iterator it = _view.getMembers().iterator(); it.hasNext();) {
-                                Variety variety = (Variety) it.next();
-                                
-                                Alignment alignment = getCorrespondenceSetAlignment(
-                                    _group, variety);
-
-                                if (first && alignment == null) {
-                                    ++firstGroupsSkipped;
-                                } else if (first) {
-                                    first = false;
-                                    List alignedDatum =
-                                        alignment.getMetatheticallyAlignedDatumList();
-                                    len = alignedDatum.size();
-                                    for (int j = 0; j < len; j++) {
-                                        DataSet set = new DataSet();
-                                        for (int k = 0; k < firstGroupsSkipped; k++) {
-                                            set.appendCorrespondenceSet(".");
-                                        }
-                                        set.appendCorrespondenceSet((String)alignedDatum.get(j));
-                                        _dataSets.add(j, set);
-                                    }
-                                } else {
-                                    // no alignment for variety, use ignores
-                                    if (alignment == null) {
-                                        for (int j = 0; j < len; j++) {
-                                            DataSet set = (DataSet) _dataSets.get(j);
-                                            set.appendCorrespondenceSet(".");
-                                        }
-                                    } else {
-                                        // add alignment
-                                        List alignedDatum =
-                                            alignment.getMetatheticallyAlignedDatumList();
-    
-                                        // check length
-                                        if (len != alignedDatum.size()) {
-                                            _message
-                                                += AppPrefs.getInstance().getMessages().getCompoundMessage(
-                                                    "cmpTabulateGroupLength",
-                                                    new Object[] { _entry.getName(), _group.getName()})
-                                                + "\n";
-                                            _dataSets.clear();
-                                            _group = null;
-                                            continue assignGroup;
-                                        }
-                                        // add alignment character to set
-                                        for (int j = 0; j < len; j++) {
-                                            DataSet set = (DataSet) _dataSets.get(j);
-                                            set.appendCorrespondenceSet((String)alignedDatum.get(j));
-                                        }
-                                    }
-                                }
-                            }
-                            // check threshold of each correspondence set
-                            for (int j = _dataSets.size() - 1; j >= 0; j--) {
-                                DataSet set = (DataSet)_dataSets.get(j);
-                                // remove if below threshold
-                                if (set.isBelowThreshold(_view.getThresholdValue()))
-                                    _dataSets.remove(j);
-                            }
-                            // get next group if no correspondence sets left
-                            if (_dataSets.isEmpty()) {
-                                _dataSets.clear();
-                                _group = null;
-                            } else {
-                                // group to tabulate ready
-                                i = groups.size();
-                            }
-                        }
+                        buildDataSets(groups);
                         if (!_message.equals(""))
                             Dialogs.msgbox(_message);
                     }
@@ -437,6 +456,39 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             }
         }
 
+        /**
+         * Build the correspondence sets of the first of the given groups
+         * that has sets at or above the threshold. Problems are added to
+         * the message.
+         **/
+        private void buildDataSets(List groups) {
+            _dataSets = new ArrayList();
+            _group = null;
+
+            // get current group to process
+            for (Iterator it = groups.iterator(); it.hasNext();) {
+                Group group = (Group) it.next();
+                List sets =
+                    GroupTabulation.getCorrespondenceSets(_view, group, _alignments, ASK_USER);
+                if (sets == null) {
+                    _message
+                        += AppPrefs.getInstance().getMessages().getCompoundMessage(
+                            "cmpTabulateGroupLength",
+                            new Object[] { _entry.getName(), group.getName()})
+                        + "\n";
+                } else if (!sets.isEmpty()) {
+                    // group to tabulate ready
+                    _group = group;
+                    for (Iterator its = sets.iterator(); its.hasNext();) {
+                        DataSet set = new DataSet();
+                        set.appendCorrespondenceSet((String) its.next());
+                        _dataSets.add(set);
+                    }
+                    return;
+                }
+            }
+        }
+
         // Persistent methods
         public String checkValidation() throws DatabaseException {
             return null;
@@ -446,111 +498,47 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             // check data
             if (!isDataComplete())
                 return;
-                
-            // process each correspondence set
-            int i = 1;
-            dataSetLoop : for (Iterator it = _dataSets.iterator(); it.hasNext();) {
-                DataSet set = (DataSet) it.next();
-                Integer pos = new Integer(i++);
-
-                // process clusters with same environment
-                List clusters =
-                    set.getProtosegment().getEnvironmentClusters(set.getEnvironment());
-                if (!clusters.isEmpty()) {
-                    clusterLoop : for (Iterator itc = clusters.iterator(); itc.hasNext();) {
-                        Cluster cluster = (Cluster) itc.next();
-                        List correspondenceSets = cluster.getCorrespondenceSets();
-                        if (correspondenceSets.isEmpty()) {
-                            // delete bad cluster
-                            cluster.delete();
-                            continue clusterLoop;
-                        } else {
-                            // process correspondence sets
-                            boolean conformable = false;
-                            for (Iterator its = correspondenceSets.iterator(); its.hasNext();) {
-                                CorrespondenceSet cset = (CorrespondenceSet) its.next();
-                                // check for identical set (include ignores)
-                                if (set.getCorrespondenceSet().equals(cset.getSet())) {
-                                    try {
-                                        // append remarks
-                                        cset.appendRemarks(set.getCorrespondenceSetRemarks());
-                                        cset.save();
-                                        // add citation
-                                        Citation citation = cset.makeCitation(_group);
-                                        citation.setPosition(pos);
-                                        citation.save();
-                                    } catch (DatabaseException e) {
-                                        e.printStackTrace();
-                                        return;
-                                    }
-                                    continue dataSetLoop;
-                                    // check for nonconformable set (exclude ignores)
-                                } else if (!cset.isConformable(set.getCorrespondenceSet())) {
-                                	conformable = false;
-                                	break;
-                                }
-                                conformable = true;
-                            }
-                            // process conformable if identical not found
-                            if (conformable) {
-                                try {
-                                    addCorrespondenceSetAndCitationToCluster(cluster, set, pos);
-                                } catch (DatabaseException e) {
-                                    e.printStackTrace();
-                                    return;
-                                }
-                                continue dataSetLoop;
-                            }
-                        }
-                    }
-                }
 
-                // create new cluster if no matches found
-                Cluster cluster = set.getProtosegment().makeCluster();
-                cluster.setEnvironment(set.getEnvironment());
-                cluster.setOrder(
-                    new Integer(set.getProtosegment().getMaxClusterOrder() + 1));
+            // tabulate the group as one unit of work
+            Database db = _view.getDatabase();
+            try {
+                db.beginBatch();
                 try {
-                    cluster.save();
-                    set.getProtosegment().reorderClusterOrder();
-                    addCorrespondenceSetAndCitationToCluster(cluster, set, pos);
-                } catch (DatabaseException e) {
-                    e.printStackTrace();
-                    return;
+                    tabulate();
+                    db.commitBatch();
+                } finally {
+                    db.rollbackBatch();
                 }
-            }
-
-            // set group as done
-            try {
-                _group.setDone(true);
-                _group.save();
             } catch (DatabaseException e) {
                 e.printStackTrace();
+                if (_prefetcher != null)
+                    _prefetcher.invalidate();
                 return;
             }
 // Note: Removed Protosegment Cleanup since Protosegments will be deleted in Refine.            
 //            _view.deleteUnusedProtosegments();
+            if (_prefetcher != null)
+                _prefetcher.invalidate(_entry);
 
             // setup next group
             _panel.refresh();
         }
 
-        private void addCorrespondenceSetAndCitationToCluster(
-            Cluster cluster,
-            DataSet set,
-            Integer pos)
-            throws DatabaseException {
-            // create correspondence set
-            CorrespondenceSet correspondenceSet = cluster.makeCorrespondenceSet();
-            correspondenceSet.setOrder(pos);
-            correspondenceSet.setSet(set.getCorrespondenceSet());
-            correspondenceSet.setRemarks(set.getCorrespondenceSetRemarks());
-            correspondenceSet.save();
-
-            // create citation
-            Citation citation = correspondenceSet.makeCitation(_group);
-            citation.setPosition(pos);
-            citation.save();
+        /**
+         * Tabulate the group's correspondence sets under the chosen
+         * protosegments and environments.
+         **/
+        private void tabulate() throws DatabaseException {
+            GroupTabulation tabulation = new GroupTabulation(_view, _group);
+            for (Iterator it = _dataSets.iterator(); it.hasNext();) {
+                DataSet set = (DataSet) it.next();
+                tabulation.addSet(
+                    set.getCorrespondenceSet(),
+                    set.getCorrespondenceSetRemarks(),
+                    set.getProtosegment(),
+                    set.getEnvironment());
+            }
+            tabulation.tabulate();
         }
 
         public void delete() throws DatabaseException {
@@ -562,6 +550,14 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
             setDataSets(true);
         }
 
+        /**
+         * Check whether the alignments and correspondence sets have been
+         * read.
+         **/
+        boolean isDataSetsSet() {
+            return _isDataSetsSet;
+        }
+
         public boolean isDirty() {
             return _dirty;
         }
@@ -583,6 +579,7 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
         private final Entry _entry;
         private final View _view;
         private AddEditDeletePanel _panel;
+        private final EntryPrefetcher _prefetcher;
         private Group _group;
         private List _alignments;
         private List _dataSets;
@@ -590,6 +587,84 @@ class TabulatePane extends JPanel implements Refreshable, Initializable {
         private String _message = "";
     }
 
+    /**
+     * Task to tabulate the entries of a view in a batch, showing its
+     * progress.
+     **/
+    static final class TabulateAllTask implements ProgressTask, TabulationMonitor {
+
+        TabulateAllTask(View view, boolean retabulate) {
+            _view = view;
+            _retabulate = retabulate;
+        }
+
+        /**
+         * Run task.
+         * Return true to close dialog, false to keep open.
+         **/
+        public boolean run() {
+            try {
+                _tabulator = _view.tabulateAll(_retabulate, this);
+            } catch (DatabaseException e) {
+                e.printStackTrace();
+                _error = e;
+            }
+            return true;
+        }
+
+        public synchronized void progress(int phase, int done, int count) {
+            _progress = done;
+            _progressMaximum = count;
+            _progressMessage =
+                AppPrefs.getInstance().getMessages().getCompoundMessage(
+                    (phase == PREPARING) ? "cmpTabulateAllPreparing" : "cmpTabulateAllTabulating",
+                    new Object[] { new Integer(done), new Integer(count)});
+        }
+
+        public synchronized int getProgress() {
+            return _progress;
+        }
+
+        public synchronized int getProgressMaximum() {
+            return _progressMaximum;
+        }
+
+        public synchronized String getProgressMessage() {
+            return _progressMessage;
+        }
+
+        public void cancel() {
+            _cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return _cancelled;
+        }
+
+        /**
+         * Get the error that stopped the task, or null if there was none.
+         **/
+        public DatabaseException getError() {
+            return _error;
+        }
+
+        /**
+         * Get the tabulator that ran, or null if it failed.
+         **/
+        public ViewTabulator getTabulator() {
+            return _tabulator;
+        }
+
+        private final View _view;
+        private final boolean _retabulate;
+        private ViewTabulator _tabulator;
+        private volatile boolean _cancelled = false;
+        private DatabaseException _error;
+        private int _progress = 0;
+        private int _progressMaximum = 0;
+        private String _progressMessage;
+    }
+
     /**
      * Input Row for alignment data.
      **/
@@ -15,6 +15,7 @@ import org.wordcorr.db.Group;
 import org.wordcorr.db.WordCollection;
 import org.wordcorr.db.Setting;
 import org.wordcorr.db.View;
+import org.wordcorr.db.ViewGraphLoader;
 import org.wordcorr.gui.input.InputRow;
 import org.wordcorr.gui.action.WordCorrAction;
 import org.wordcorr.gui.input.AliasTextRow;
@@ -470,13 +471,14 @@ class ViewsPane extends AddEditDeletePanel {
             // loop through entries
             Map groups = new HashMap();
             List entries = collection.getEntries();
+            ViewGraphLoader graph = new ViewGraphLoader(original, entries);
             for (Iterator it = entries.iterator(); it.hasNext();) {
                 // groups are unique to each entry
                 groups.clear();
                 Entry entry = (Entry) it.next();
 
                 // loop through alignments
-                List alignments = original.getAlignments(entry);
+                List alignments = graph.getAlignments(entry);
                 for (Iterator it2 = alignments.iterator(); it2.hasNext();) {
                     Alignment alignment = (Alignment) it2.next();
                     Group group = (copy) ? alignment.getGroup() : null;
@@ -1,6 +1,8 @@
 package org.wordcorr.gui;
 
+import java.awt.event.ActionEvent;
 import javax.swing.*;
+import org.wordcorr.db.RoundTripTrace;
 
 /**
  * JButton subclass to fix the annoying MNEMONIC_KEY bug in JDK 1.3.
@@ -23,4 +25,16 @@ public class WButton extends JButton {
             }
         }
     }
+
+    /**
+     * Notify the listeners inside a round trip trace for this button.
+     **/
+    protected void fireActionPerformed(ActionEvent event) {
+        RoundTripTrace trace = RoundTripTrace.begin("button " + getActionCommand());
+        try {
+            super.fireActionPerformed(event);
+        } finally {
+            trace.end();
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package org.wordcorr.gui;
 
+import java.awt.event.ActionEvent;
 import javax.swing.*;
+import org.wordcorr.db.RoundTripTrace;
 
 /**
  * JMenuItem subclass to fix the annoying ACCELERATOR_KEY bug in JDK
@@ -25,4 +27,16 @@ class WMenuItem extends JMenuItem {
             }
         }
     }
+
+    /**
+     * Notify the listeners inside a round trip trace for this menu item.
+     **/
+    protected void fireActionPerformed(ActionEvent event) {
+        RoundTripTrace trace = RoundTripTrace.begin("menu item " + getActionCommand());
+        try {
+            super.fireActionPerformed(event);
+        } finally {
+            trace.end();
+        }
+    }
 }
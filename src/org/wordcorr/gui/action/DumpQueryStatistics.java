@@ -0,0 +1,48 @@
+package org.wordcorr.gui.action;
+
+import java.awt.event.ActionEvent;
+import javax.swing.Action;
+import javax.swing.JFileChooser;
+import org.wordcorr.db.Database;
+import org.wordcorr.gui.AppPrefs;
+import org.wordcorr.gui.MainFrame;
+
+/**
+ * Action to write the query statistics of the current database to a file.
+ **/
+public final class DumpQueryStatistics extends GenericAction {
+
+    private static final Action _instance = new DumpQueryStatistics();
+
+    public static Action getInstance() {
+        return _instance;
+    }
+
+    /**
+     * Constructor.
+     **/
+    private DumpQueryStatistics() {
+        super("mnuDumpQueryStatistics", "accDumpQueryStatistics");
+    }
+
+    /**
+     * Dump statistics.
+     **/
+    public void performAction(ActionEvent evt) throws Exception {
+        MainFrame mf = MainFrame.getInstance();
+        Database db = mf.getDatabase();
+        if (db == null)
+            return;
+
+        JFileChooser fc =
+            new JFileChooser(
+                AppPrefs.getInstance().getProperty(
+                    AppPrefs.LAST_DIR,
+                    System.getProperty("user.home")));
+        if (fc.showSaveDialog(mf) == JFileChooser.APPROVE_OPTION) {
+            String filename = fc.getSelectedFile().getAbsolutePath();
+            db.getQueryStatistics().dump(filename);
+            AppPrefs.getInstance().setProperty(AppPrefs.LAST_DIR, filename);
+        }
+    }
+}
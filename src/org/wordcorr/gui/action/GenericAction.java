@@ -2,6 +2,7 @@ package org.wordcorr.gui.action;
 
 import java.awt.event.ActionEvent;
 import javax.swing.Action;
+import org.wordcorr.db.RoundTripTrace;
 import org.wordcorr.gui.AppPrefs;
 import org.wordcorr.gui.Dialogs;
 import org.wordcorr.gui.MainFrame;
@@ -32,12 +33,14 @@ public abstract class GenericAction extends WordCorrAction {
      **/
     public final void actionPerformed(ActionEvent evt) {
         Dialogs.showWaitCursor(MainFrame.getInstance());
+        RoundTripTrace trace = RoundTripTrace.begin("action " + getValue(NAME));
         try {
             performAction(evt);
         } catch (Exception e) {
             e.printStackTrace();
             Dialogs.genericError(e);
         } finally {
+            trace.end();
             Dialogs.showDefaultCursor(MainFrame.getInstance());
         }
     }
@@ -12,6 +12,7 @@ import javax.swing.text.Document;
 import javax.swing.text.JTextComponent;
 import javax.swing.text.PlainDocument;
 import org.wordcorr.db.Alignment;
+import org.wordcorr.db.AlignmentVector;
 import org.wordcorr.gui.AppPrefs;
 import org.wordcorr.gui.Dialogs;
 import org.wordcorr.gui.Messages;
@@ -272,27 +273,12 @@ public class AlignmentVectorTextField extends JTextField {
         public String set(String text) {
             _clusters.clear();
 
-            int start = 0;
-            int adjust = 0;
-            StringBuffer buf = new StringBuffer();
-
-            for (int i = 0; i < text.length(); i++) {
-                switch (text.charAt(i)) {
-                    case Alignment.GRAPHEME_CLUSTER_START :
-                        start = i - adjust;
-                        ++adjust;
-                        break;
-                    case Alignment.GRAPHEME_CLUSTER_END :
-                        // add grapheme cluster
-                        add(start, i - adjust);
-                        ++adjust;
-                        break;
-                    default :
-                        buf.append(text.charAt(i));
-                        break;
-                }
+            // add grapheme clusters
+            AlignmentVector vector = AlignmentVector.valueOf(text);
+            for (int i = 0; i < vector.getGraphemeClusterCount(); i++) {
+                add(vector.getGraphemeClusterStart(i), vector.getGraphemeClusterEnd(i));
             }
-            return buf.toString();
+            return vector.getUnbracketedVector();
         }
 
         public boolean isEmpty() {